@@ -2,9 +2,10 @@ package core;
 
 import java.util.ArrayList;
 
-import core.Simulation;
+import loggers.CellLogger;
 import sim.engine.Schedule;
 import sim.engine.Steppable;
+import sim.engine.Stoppable;
 import sim.util.Bag;
 import sim.util.Double3D;
 
@@ -27,58 +28,148 @@ import sim.util.Double3D;
  */
 public abstract class Cell implements Steppable
 {
-	// the location of the center of the hair follicle. The Z coordinate should be ignored, as the follicle occupies
-	// a vertical cylinder along the z-axis. 
-	protected Double3D location;
+	private static final long serialVersionUID = 1L;
+
+	// the simulation run this cell belongs to. 
+	protected final Simulation sim;
 	
 	private int id;
 	
-	private static int id_counter = 0;
+	// index of the bucket this cell is filed under in the compartment's broad phase grid. -1 when not filed. 
+	int gridBucket = -1;
+	// the cell's location, as last asked of Compartment3D.getCellLocation. Moves only write the cell's coordinates in 
+	// the compartment's CellStore, so this is null once the cell has moved, until asked for again. 
+	Double3D fieldLocation = null;
+	// the cell's slot in the compartment's CellStore, which holds its coordinates. -1 when not in the compartment.
+	int slot = -1;
+	// Verlet neighbour list of a moving cell, see NeighbourLists: the cells listed, and where this cell was when listed.
+	Cell[] neighbours = null;
+	int neighbourCount = 0;
+	double listedX, listedY, listedZ;
+	// the cell's index in its population's live list, -1 when not in it. See enlist and delist.
+	int liveIndex = -1;
 	
-	public Cell(){
-		this.id = id_counter;
-		id_counter++;
+	// handle on this cell's repeating entry in the schedule, used to stop it being stepped once it is retired. 
+	private Stoppable stopper = null;
+	// stands in for the schedule entry of an immobile cell, which is never stepped.
+	private static final Stoppable UNSTEPPED = new Stoppable() {
+		private static final long serialVersionUID = 1L;
 
+		public void stop() {}
+	};
+	
+	/** Appends the cell to a population's live list. */
+	static <C extends Cell> void enlist(ArrayList<C> live, C cell)
+	{
+		cell.liveIndex = live.size();
+		live.add(cell);
 	}
-	public Cell(Schedule sched)
+	
+	/** 
+	 * Removes the cell from a population's live list in constant time, moving the last cell of the list into its place.
+	 * The order of the list thus depends only on the order in which cells joined and left it, which is fixed by the
+	 * seed, so the MotionPlanner's chunks remain reproducible. 
+	 */
+	static <C extends Cell> void delist(ArrayList<C> live, C cell)
+	{
+		int index = cell.liveIndex;
+		if (index < 0)
+			return;
+		C last = live.remove(live.size() - 1);
+		if (last != cell)
+		{
+			live.set(index, last);
+			last.liveIndex = index;
+		}
+		cell.liveIndex = -1;
+	}
+	
+	/** Creates a cell that is not placed on the schedule. Used as a template, eg. by the count loggers. */
+	public Cell(Simulation sim)
+	{
+		this.sim = sim;
+		this.id = sim.nextCellID();
+	}
+	
+	public Cell(Simulation sim, Schedule sched)
+	{
+		this.sim = sim;
+		scheduleCell(sched);
+	}
+	
+	/**
+	 * Gives the cell a fresh identity and schedules it to be stepped from the current time onwards. Called on 
+	 * construction, and again when a retired cell is recycled. 
+	 */
+	protected final void scheduleCell(Schedule sched)
 	{
-		this.id = id_counter;
-		id_counter++;
+		this.id = sim.nextCellID();
+		if (isImmobile())
+		{
+			stopper = UNSTEPPED;
+			return;
+		}
 		// start time at which the new neutrophil will be scheduled.
 		double startTime = sched.getTime();
 		if (sched.getTime() < Schedule.EPOCH)	// time is -1.0 when simulation has not been started yet. 
 			startTime = Schedule.EPOCH;		
-		sched.scheduleRepeating(startTime, Simulation.cellOrdering, this, Simulation.timeSlice);
+		stopper = sched.scheduleRepeating(startTime, Simulation.cellOrdering, this, sim.timeSlice);
 	}
+	
+	/**
+	 * Takes the cell out of the simulation: removes it from space, and stops both it and its logger from being 
+	 * stepped. Removing a cell from space alone leaves it (and its logger) on the schedule for the rest of the run. 
+	 */
+	public void retire()
+	{
+		sim.space.removeCellFromField(this);
+		if (stopper != null)
+		{
+			stopper.stop();
+			stopper = null;
+		}
+		if (getLogger() != null)
+			getLogger().stop();
+	}
+	
+	/**
+	 * True if the cell never moves. Immobile cells are not stepped, and the compartment holds them among its static 
+	 * obstacles rather than testing them as movers. 
+	 */
+	public boolean isImmobile()
+	{	return false;	}
+	
+	/** True if the cell is in the compartment. Cheaper than asking the cellField. */
+	public boolean isPlaced()
+	{	return slot >= 0;	}
+	
+	/** True if the cell is currently scheduled, i.e. has not been retired. */
+	public boolean isActive()
+	{	return stopper != null;	}
+
+	public Simulation getSimulation()
+	{	return sim;	}
 
 	public abstract double getDiameter();
 	public abstract double getRadius();
 	
+	/** Where the cell is, null if it is not in the compartment. */
 	public Double3D getCurrentLocation()
-	{	
-		if(location != null)
-			return location;
-		else
-			return Simulation.space.getCellLocation(this);
-	}
+	{	return sim.space.getCellLocation(this);	}
 	
 	public int getID()
 	{
 		return this.id;
 	}
 	
-	public int getIDCounter()
-	{
-		return id_counter;
-	}
-	
 	public abstract void removeCell();
 	
-	public void reduceCount() {
-		id_counter--;
-	}
-	
-	public abstract String getType();
+	/** Name of the cell's type in the output files. */
+	public String getType()
+	{	return CellTypes.label(typeIndex());	}
+	/** Code of the cell's type, see CellTypes. */
+	public abstract int typeIndex();
+	public abstract CellLogger.Track getLogger();
 	public abstract int getCount();
 	public abstract int getRemovedCount();
 	public abstract double getSpeed();
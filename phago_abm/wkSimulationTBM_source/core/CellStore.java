@@ -0,0 +1,98 @@
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The positions and radii of the cells placed in the compartment, held in parallel arrays indexed by a dense slot, so
+ * that collision detection reads them from contiguous memory rather than from a Double3D per cell found through the
+ * cellField's hash maps. The store is where a cell's position is kept: moving a cell overwrites its coordinates in
+ * place, so that a move allocates nothing.
+ *
+ * A cell placed is given the next slot, and a cell removed has its slot filled by the cell in the last one, exactly as
+ * MASON's fields fill the hole in allObjects. Collision detection visits candidates in slot order, which is therefore
+ * the order a scan over the cellField's allObjects would visit them in. Compartment3D keeps the store up to date in
+ * moveCell and removeCellFromField.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class CellStore implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private Cell[] cells = new Cell[256];
+	double[] x = new double[256];
+	double[] y = new double[256];
+	double[] z = new double[256];
+	double[] radius = new double[256];
+	private int size = 0;
+
+	/** Gives a cell newly placed at (x, y, z) the next slot. */
+	void add(Cell cell, double x, double y, double z)
+	{
+		if (size == cells.length)
+		{
+			int capacity = size * 2;
+			cells = Arrays.copyOf(cells, capacity);
+			this.x = Arrays.copyOf(this.x, capacity);
+			this.y = Arrays.copyOf(this.y, capacity);
+			this.z = Arrays.copyOf(this.z, capacity);
+			radius = Arrays.copyOf(radius, capacity);
+		}
+		cell.slot = size;
+		cells[size] = cell;
+		radius[size] = cell.getRadius();
+		size++;
+		move(cell.slot, x, y, z);
+	}
+
+	void move(int slot, double x, double y, double z)
+	{
+		this.x[slot] = x;
+		this.y[slot] = y;
+		this.z[slot] = z;
+	}
+
+	/** Frees the cell's slot, moving the cell in the last slot into it. */
+	void remove(Cell cell)
+	{
+		int slot = cell.slot;
+		if (slot < 0)
+			return;
+		int last = --size;
+		if (slot != last)
+		{
+			Cell moved = cells[last];
+			cells[slot] = moved;
+			x[slot] = x[last];
+			y[slot] = y[last];
+			z[slot] = z[last];
+			radius[slot] = radius[last];
+			moved.slot = slot;
+		}
+		cells[last] = null;
+		cell.slot = -1;
+	}
+
+	/** The cell in the given slot. */
+	Cell cell(int slot)
+	{	return cells[slot];	}
+
+	/** Number of cells placed. */
+	public int size()
+	{	return size;	}
+}
@@ -0,0 +1,60 @@
+package core;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The registry of cell types. Each type is given a dense code, returned by Cell.typeIndex(), and what the simulation
+ * needs to know of a type is held in tables indexed by that code, so that cells are told apart by an array lookup
+ * rather than by comparing type names. A new type is added by giving it the next code and a column in each table.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public final class CellTypes
+{
+	public static final int FRAGMENT = 0;
+	public static final int MACROPHAGE = 1;
+
+	/** Number of cell types. */
+	public static final int COUNT = 2;
+
+	// names of the types in the parameters, as in /params/Simulation/[name].
+	private static final String[] NAMES = {"Fragment", "Macrophage"};
+	// names of the types in the output files.
+	private static final String[] LABELS = {"Fragment-LogNorm", "Macrophage"};
+	// whether a cell of the type that leaves the compartment, or loses track of where it started, is replaced by a new
+	// one placed at random rather than being moved back.
+	private static final boolean[] RESPAWNS = {true, false};
+	// CONSUMED_BY[a][b]: whether a cell of type a is phagocytosed on touching one of type b.
+	private static final boolean[][] CONSUMED_BY = {
+			{false, true},
+			{false, false}};
+
+	private CellTypes() {}
+
+	/** Name of the type in the parameters. */
+	public static String name(int type)
+	{	return NAMES[type];	}
+
+	/** Name of the type in the output files. */
+	public static String label(int type)
+	{	return LABELS[type];	}
+
+	public static boolean respawns(int type)
+	{	return RESPAWNS[type];	}
+
+	/** Whether a cell of type a is phagocytosed on touching one of type b. */
+	public static boolean consumedBy(int a, int b)
+	{	return CONSUMED_BY[a][b];	}
+}
@@ -1,11 +1,13 @@
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
 
+import ec.util.MersenneTwisterFast;
 import filesystem.FileSystemIO;
 import sim.engine.SimState;
 import sim.engine.Steppable;
@@ -14,7 +16,10 @@ import sim.field.grid.IntGrid3D;
 import sim.util.Bag;
 import sim.util.Double3D;
 import sim.util.IntBag;
+import sim.util.MutableDouble3D;
 import utils.Utils;
+import core.SimulationParameters.Interactions;
+import core.SimulationParameters.Interactions.Interaction;
 
 /**
  * 
@@ -43,16 +48,66 @@ public class Compartment3D implements Steppable {
 	 * Note that these fields are deliberately public - they have to be for the GUI
 	 * to latch onto them for portrayal.
 	 */
-	public Continuous3D cellField; // stores cells in a continuous space
-	public IntGrid3D restrictedField; // stores restrictions on cell movement. 0 = no restriction, 1 = blocked.
-	final Double3D center = new Double3D((double) Simulation.tissueRadius, (double) Simulation.tissueRadius, (double) Simulation.tissueRadius);
-
-	public Compartment3D() {
+	public Continuous3D cellField; // stores cells in a continuous space, for display. See display().
+	// whether cellField is kept up to date. MASON's fields take an immutable Double3D per move, and discretize it into 
+	// a new Int3D, so the field is only kept while a display portrays it; the CellStore holds positions otherwise.
+	private boolean displayed = false;
+	public IntGrid3D restrictedField; // voxel occupancy of immobile cells, see StaticObstacles. 0 = none nearby.
+	// broad phase for collision detection, kept up to date by moveCell and removeCellFromField. Moving cells are 
+	// filed in the grid, immobile ones frozen into the obstacles. 
+	private UniformGrid cellGrid;
+	private final StaticObstacles obstacles;
+	// positions and radii of every placed cell. Read by the narrow phase.
+	final CellStore store = new CellStore();
+	// used by moveCellCollisionDetection in place of the grid when the parameters set a neighbourSkin, else null.
+	private final NeighbourLists lists;
+	// how each pair of cell types interact, and for each type, the mask of types it does not ignore.
+	private final Interactions interactions;
+	private final int[] noticed;
+	// scratch space for broad phase queries, reused across moves to avoid allocation.
+	private final Bag gridCandidates = new Bag();
+	private final IntBag candidateIndices = new IntBag();
+	private final ArrayList<Cell> candidates = new ArrayList<Cell>();
+	// outcome of the latest move, reused by every move.
+	private final MoveResults results = new MoveResults();
+	private final Bag placementCandidates = new Bag();
+	// cells placed into the compartment since the MotionPlanner's broad phase, which its candidate lists lack. 
+	private final ArrayList<Cell> newcomers = new ArrayList<Cell>();
+	private boolean trackNewcomers = false;
+	// the simulation run this compartment belongs to.
+	private final Simulation sim;
+	// stream from which cell placements are drawn.
+	private final MersenneTwisterFast rng;
+	// locations tried for a cell before placeCellRandomlyInSphere gives up.
+	static final int MAX_PLACEMENT_ATTEMPTS = 100000;
+	// fraction of space that random sequential addition of equal spheres fills when no more will fit.
+	static final double JAMMING_FRACTION = 0.38;
+	// fraction of JAMMING_FRACTION beyond which checkSphereCapacity refuses to place cells.
+	static final double MAX_FULLNESS = 0.8;
+	// total volume of the cells placed in the compartment, in cubic microns.
+	private double placedVolume = 0.0;
+	final Double3D center;
+
+	public Compartment3D(Simulation sim) {
+		this.sim = sim;
+		this.rng = sim.newStream("placement");
+		center = new Double3D((double) sim.tissueRadius, (double) sim.tissueRadius, (double) sim.tissueRadius);
 		cellField = new Continuous3D(1.0, // discretization, dividing space into regions for maintaining a map of
 											// objects' locations.
-				Simulation.tissueWidth, Simulation.tissueHeight, Simulation.tissueDepth);
+				sim.tissueWidth, sim.tissueHeight, sim.tissueDepth);
 		cellField.clear();
-		restrictedField = new IntGrid3D(Simulation.tissueWidth, Simulation.tissueHeight, Simulation.tissueDepth, 0);
+		restrictedField = new IntGrid3D(sim.tissueWidth, sim.tissueHeight, sim.tissueDepth, 0);
+		// buckets are as wide as the largest cell, so a query rarely needs more than the neighbouring buckets.
+		double bucketSize = Math.max(1.0, Math.max(sim.config.macrophage.diameter, sim.config.fragment.diameter));
+		cellGrid = new UniformGrid(sim.tissueWidth, sim.tissueHeight, sim.tissueDepth, bucketSize, 
+				CellTypes.COUNT);
+		obstacles = new StaticObstacles(restrictedField);
+		interactions = sim.config.interactions;
+		noticed = new int[CellTypes.COUNT];
+		for (int t = 0; t < noticed.length; t++)
+			noticed[t] = interactions.noticedBy(t);
+		lists = sim.config.neighbourSkin > 0.0 
+				? new NeighbourLists(sim.config.neighbourSkin, cellGrid, noticed) : null;
 
 		//createHairFollicles();
 	}
@@ -68,53 +123,98 @@ public class Compartment3D implements Steppable {
 	public void placeCellRandomly(Cell cell) {
 		Double3D loc; // will try to find a location for the neutrophil.
 		// local copies of parameter values, to make equations below more readable.
-		final double w = Simulation.tissueWidth;
-		final double h = Simulation.tissueHeight;
-		final double d = Simulation.tissueDepth;
-		final double bf = Simulation.bufferSize;
+		final double w = sim.tissueWidth;
+		final double h = sim.tissueHeight;
+		final double d = sim.tissueDepth;
+		final double bf = sim.bufferSize;
 		do {
 			// select a random location.
 			// neutrophils can be placed in the tissue volume, and similar sized volumes all
 			// around it (except
 			// above it, because that breaches the skin).
-			final double lw = (Simulation.rng.nextDouble() * (w + (2.0 * w * bf))) - (w * bf);
-			final double lh = (Simulation.rng.nextDouble() * (h + (2.0 * h * bf))) - (h * bf);
-			final double ld = Simulation.rng.nextDouble() * (d + (d * bf));
+			final double lw = (rng.nextDouble() * (w + (2.0 * w * bf))) - (w * bf);
+			final double lh = (rng.nextDouble() * (h + (2.0 * h * bf))) - (h * bf);
+			final double ld = rng.nextDouble() * (d + (d * bf));
 
 			loc = new Double3D(lw, lh, ld);
 		} while (!isOccupiableSpace(loc, cell));
-		this.cellField.setObjectLocation(cell, loc);
+		moveCell(cell, loc);
 	}
 	
 
 	
+	/**
+	 * Places the cell at a random location in the sphere, drawn uniformly over its volume, that it can occupy without
+	 * touching another cell. Locations are drawn until one is free, up to MAX_PLACEMENT_ATTEMPTS; a RuntimeException
+	 * reporting how full the sphere is results if none is found, as the sphere is then too crowded for the cell.
+	 */
 	public void placeCellRandomlyInSphere(Cell cell, boolean spawn) {
-		Double3D loc; // will try to find a location
-		// local copies of parameter values, to make equations below more readable.
-		final double R = Simulation.tissueRadius;
-		do {
-			// select a random location in spherical coords
-			
-			double theta = Simulation.rng.nextDouble() * 2 * Math.PI;
-			double phi = Simulation.rng.nextDouble() * 1 * Math.PI;
-			double r = Simulation.rng.nextDouble() * R;
-			
-			double x = r * Math.cos(theta) * Math.sin(phi) + R; // translate because origin is not the center of simulation, but the topleft corner..
-			double y = r * Math.sin(theta) * Math.sin(phi) + R;
-			double z = r * Math.cos(phi) + R;
-			
-
-
-			loc = new Double3D(x, y, z);
-		} while (!isOccupiableSpace(loc, cell));
-		this.cellField.setObjectLocation(cell, loc);
+		Double3D loc = null;
+		for (int attempt = 0; loc == null; attempt++) {
+			if (attempt == MAX_PLACEMENT_ATTEMPTS)
+				throw new RuntimeException("No free location found for a " + cell.getClass().getSimpleName()
+						+ " after " + MAX_PLACEMENT_ATTEMPTS + " attempts; cells fill " + percent(sphereFullness())
+						+ " of the sphere. Consider reducing the number of cells.");
+			Double3D candidate = randomLocationInSphere();
+			if (isOccupiableSpace(candidate, cell))
+				loc = candidate;
+		}
+		moveCell(cell, loc);
 		
 		if (spawn) {
 			cell.setStartLoc(loc);
 		}
+	}
 
+	/**
+	 * A location drawn uniformly from the volume of the sphere. The radius is the cube root of a uniform draw, as the
+	 * volume within radius r grows with r cubed; drawing the radius itself uniformly crowds locations to the centre. 
+	 */
+	private Double3D randomLocationInSphere() {
+		final double R = sim.tissueRadius;
+		double r = R * Math.cbrt(rng.nextDouble());
+		double cosPhi = 2.0 * rng.nextDouble() - 1.0;
+		double sinPhi = Math.sqrt(1.0 - cosPhi * cosPhi);
+		double theta = rng.nextDouble() * 2 * Math.PI;
+		// translate because origin is not the center of simulation, but the topleft corner.
+		return new Double3D(center.x + r * Math.cos(theta) * sinPhi,
+				center.y + r * Math.sin(theta) * sinPhi,
+				center.z + r * cosPhi);
+	}
+
+	/**
+	 * Checks that `count` more cells of the given radius can be placed in the sphere, ahead of placing them. Cells are
+	 * placed one after another, each at a random free location, which cannot pack them more densely than random
+	 * sequential addition can: about JAMMING_FRACTION of the volume their centres may occupy. Placement slows sharply
+	 * well before then, so a RuntimeException results if the cells would take the sphere beyond MAX_FULLNESS of that
+	 * limit, rather than the placement hanging.
+	 * 
+	 * Returns the fraction of the sphere's volume that cells would then fill. 
+	 */
+	public double checkSphereCapacity(int count, double radius) {
+		double fullness = sphereFullness() + count * sphereVolume(radius) / sphereVolume(sim.tissueRadius);
+		// centres lie within the sphere, but cells may reach a radius beyond it.
+		double limit = MAX_FULLNESS * JAMMING_FRACTION
+				* Math.pow((sim.tissueRadius + radius) / sim.tissueRadius, 3);
+		if (fullness > limit)
+			throw new RuntimeException("Placing " + count + " more cells of radius " + radius + " would fill "
+					+ percent(fullness) + " of the sphere, beyond the " + percent(limit)
+					+ " to which random placement is limited. Consider reducing the number of cells.");
+		return fullness;
+	}
+
+	/** Fraction of the sphere's volume filled by the cells placed in the compartment. */
+	public double sphereFullness() {
+		return placedVolume / sphereVolume(sim.tissueRadius);
+	}
+
+	private static double sphereVolume(double radius) {
+		return 4.0 / 3.0 * Math.PI * radius * radius * radius;
+	}
+
+	private static String percent(double fraction) {
+		return String.format("%.1f%%", 100.0 * fraction);
 	}
-	
 
 	/**
 	 * Checks whether the particular cell would collide with any others, were it to
@@ -125,29 +225,29 @@ public class Compartment3D implements Steppable {
 	 * @return True if there is a collision.
 	 */
 	private boolean cellularCollisions(Double3D cellLoc, Cell cell) {
-		// this is a conservative estimate, true as long as the biggest cell's diameter
-		// isn't more than
-		// twice the diameter as the smallest.
-		double distance = 2 * cell.getDiameter();
-		boolean collision = false; // the default case, we will look for the exception below.
-		Bag neighbours = cellField.getNeighborsExactlyWithinDistance(cellLoc, distance, false, true, true, null);
-		// remove `cell` if it is already placed in the tissue space (clearly it will
-		// collide with itself).
-		neighbours.remove(cell);
-		for (Object other : neighbours) {
-			double minDistance = ((Cell) other).getRadius() + cell.getRadius();
-			// minimum distance at which there is no collision.
-			Double3D otherLoc = cellField.getObjectLocation(other);
-			// actual distance between the two cells.
-			distance = Math.sqrt(((cellLoc.x - otherLoc.x) * (cellLoc.x - otherLoc.x))
-					+ ((cellLoc.y - otherLoc.y) * (cellLoc.y - otherLoc.y))
-					+ ((cellLoc.z - otherLoc.z) * (cellLoc.z - otherLoc.z)));
-			if (distance <= minDistance) {
-				collision = true;
-				break;
-			}
-		}
-		return collision;
+		// a cell whose centre is further than the two radii from cellLoc cannot collide.
+		double r = cell.getRadius();
+		placementCandidates.clear();
+		cellGrid.candidates(cellLoc, r + cellGrid.getMaxRadius(), placementCandidates);
+		for (int i = 0; i < placementCandidates.numObjs; i++)
+			if (touches(cellLoc, r, (Cell) placementCandidates.objs[i], cell))
+				return true;
+		for (Cell other : obstacles.near(cellLoc.x, cellLoc.y, cellLoc.z, Double.POSITIVE_INFINITY))
+			if (touches(cellLoc, r, other, cell))
+				return true;
+		return false;
+	}
+
+	/** True if `other`, which is not `cell`, lies within radius r of touching cellLoc. */
+	private boolean touches(Double3D cellLoc, double r, Cell other, Cell cell) {
+		if (other == cell)
+			return false;
+		int o = other.slot;
+		double minDistance = other.getRadius() + r;	// minimum distance at which there is no collision.
+		double dx = cellLoc.x - store.x[o];
+		double dy = cellLoc.y - store.y[o];
+		double dz = cellLoc.z - store.z[o];
+		return dx * dx + dy * dy + dz * dz <= minDistance * minDistance;
 	}
 
 	/**
@@ -169,7 +269,101 @@ public class Compartment3D implements Steppable {
 	 * another, and hence the cell will make very small bounces between the two,
 	 * rather than hitting both simultaneously.
 	 */
-	public MoveResults moveCellCollisionDetection(Cell cell, Double3D move) {
+	public MoveResults moveCellCollisionDetection(Cell cell, MutableDouble3D move) {
+		if (lists != null && move.x * move.x + move.y * move.y + move.z * move.z <= lists.range() * lists.range())
+			listedCandidates(cell, move, candidateIndices, candidates);
+		else
+			gatherCandidates(cell, move, 0.0, gridCandidates, candidateIndices, candidates);
+		return resolveMove(cell, move, candidates, Collections.<Cell>emptyList());
+	}
+
+	/**
+	 * As above, but the cells that the move could collide with have already been found, by the MotionPlanner's broad 
+	 * phase at the start of the time step. Cells placed since then are considered too, and those removed since are 
+	 * skipped. 
+	 */
+	MoveResults moveCellCollisionDetection(Cell cell, MutableDouble3D move, List<Cell> plannedCandidates) {
+		return resolveMove(cell, move, plannedCandidates, newcomers);
+	}
+
+	/**
+	 * Broad phase: fills `result` with every cell other than `cell` that `move`, made from where `cell` is, could touch, 
+	 * in slot order. `slack` extends the search, to catch neighbours that may yet move this far towards 
+	 * `cell` before it moves. Changes nothing but the supplied scratch space, so may be called concurrently by 
+	 * different threads while the compartment is not being changed. 
+	 */
+	void gatherCandidates(Cell cell, MutableDouble3D move, double slack, Bag scratch, IntBag indices,
+			List<Cell> result) {
+		int c = cell.slot;
+		double Cx = store.x[c], Cy = store.y[c], Cz = store.z[c];
+		// find cells other cells that the length of 'move' could bring 'cell' to
+		// collide with (omnidirectional).
+		double reach = reach(cell, move, slack);
+		scratch.clear();
+		cellGrid.candidates(Cx, Cy, Cz, reach, noticed[cell.typeIndex()], scratch);
+		for (Cell still : obstacles.near(Cx, Cy, Cz, reach - cellGrid.getMaxRadius()))
+			if (!ignores(cell, still))
+				scratch.add(still);
+		/*
+		 * Resolving one collision shortens the move, so the outcome depends on the order in which potential colliders
+		 * are considered. Visit them in slot order, the order in which a scan over the cellField's allObjects would 
+		 * visit them.
+		 */
+		indices.clear();
+		for (int i = 0; i < scratch.numObjs; i++)
+			indices.add(((Cell) scratch.objs[i]).slot);
+		inSlotOrder(cell, indices, result);
+	}
+
+	/** As gatherCandidates, but taking the moving cells from the cell's neighbour list. */
+	private void listedCandidates(Cell cell, MutableDouble3D move, IntBag indices, List<Cell> result) {
+		int c = cell.slot;
+		indices.clear();
+		lists.candidates(cell, indices);
+		double reach = reach(cell, move, 0.0) - cellGrid.getMaxRadius();
+		for (Cell still : obstacles.near(store.x[c], store.y[c], store.z[c], reach))
+			if (!ignores(cell, still))
+				indices.add(still.slot);
+		inSlotOrder(cell, indices, result);
+	}
+
+	private boolean ignores(Cell cell, Cell other) {
+		return interactions.between(cell.typeIndex(), other.typeIndex()) == Interaction.IGNORE;
+	}
+
+	/** Fills `result` with the cells in the given slots, other than `cell`, in slot order. */
+	private void inSlotOrder(Cell cell, IntBag indices, List<Cell> result) {
+		indices.sort();
+		result.clear();
+		for (int i = 0; i < indices.numObjs; i++) {
+			Cell other = store.cell(indices.objs[i]);
+			if (other != cell) // cell can't collide with itself.
+				result.add(other);
+		}
+	}
+
+	/** Half-width of the broad phase search for `move`, extended by `slack`. */
+	double reach(Cell cell, MutableDouble3D move, double slack) {
+		return Math.sqrt(move.x * move.x + move.y * move.y + move.z * move.z) + cell.getRadius()
+				+ cellGrid.getMaxRadius() + slack;
+	}
+
+	/** Longest distance sphericalBoundary may move the cell back towards the centre of the sphere. */
+	double boundaryStep(Cell cell) {
+		return CellTypes.respawns(cell.typeIndex()) ? 0.0 : Math.abs(cell.getSpeed());
+	}
+
+	/** Starts recording cells placed into the compartment, for planned moves to consider. */
+	void startTrackingNewcomers() {
+		newcomers.clear();
+		trackNewcomers = true;
+	}
+
+	/**
+	 * Narrow phase: moves `cell` by as much of `move` as it can make before touching any of the candidates, visited in 
+	 * order (first `first`, then `second`). Candidates no longer in the compartment are skipped.
+	 */
+	private MoveResults resolveMove(Cell cell, MutableDouble3D move, List<Cell> first, List<Cell> second) {
 		/*
 		 * This algorithm is based on that found in
 		 * http://www.gamasutra.com/view/feature/131424/pool_hall_lessons_fast_accurate_
@@ -204,160 +398,192 @@ public class Compartment3D implements Steppable {
 		double CSx = move.x;
 		double CSy = move.y;
 		double CSz = move.z;
+		// C, where 'cell' starts.
+		double Cx = store.x[cell.slot];
+		double Cy = store.y[cell.slot];
+		double Cz = store.z[cell.slot];
 
-		Double3D C = cellField.getObjectLocation(cell);
-		// find cells other cells that the length of 'move' could bring 'cell' to
-		// collide with (omnidirectional).
-		Bag potentialColliders = cellField.allObjects;
 		// record the cells with which there was an actual collision.
-		ArrayList<Cell> colliders = new ArrayList<Cell>();
-		for (Object o : potentialColliders) {
-			Cell other = (Cell) o;
-			if (!(o == cell)) // cell can't collide with itself.
-			{
-				Double3D O = cellField.getObjectLocation(other);
-				// dealing with hair follicles. This effectively places a sphere representing
-				// the follicle at the exact
-				// same z-coordinate as the 'cell'.
+		ArrayList<Cell> colliders = results.colliders;
+		colliders.clear();
+		double[] Ox = store.x, Oy = store.y, Oz = store.z, radius = store.radius;
+		double cellRadius = radius[cell.slot];
+		int type = cell.typeIndex();
+		// CS only changes when a collision shortens the move.
+		double CS = Math.sqrt(CSx * CSx + CSy * CSy + CSz * CSz);
+		// capture only candidates met, which are checked once the move is known.
+		int captures = 0;
+		int total = first.size() + second.size();
+		for (int i = 0; i < total; i++) {
+			Cell other = i < first.size() ? first.get(i) : second.get(i - first.size());
+			int o = other.slot;
+			if (other == cell || o < 0) // cell can't collide with itself, nor removed cells.
+				continue;
+			Interaction interaction = interactions.between(type, other.typeIndex());
+			if (interaction == Interaction.IGNORE)
+				continue;
+			if (interaction == Interaction.CAPTURE) {
+				captures++;
+				continue;
+			}
+			// dealing with hair follicles. This effectively places a sphere representing
+			// the follicle at the exact
+			// same z-coordinate as the 'cell'.
+			/*
+			 * check if current movement will bring 'cell' within touching range of 'other',
+			 * ignoring direction.
+			 */
+
+			// if true, 'other' is within touching distance of 'cell'. This is simply
+			// whether they are within range,
+			// not accounting for directon.
+			double COx = Ox[o] - Cx;
+			double COy = Oy[o] - Cy;
+			double COz = Oz[o] - Cz;
+			double touchRadii = cellRadius + radius[o];
+			double CO2 = COx * COx + COy * COy + COz * COz; // CO squared.
+			if (CS > (Math.sqrt(CO2) - touchRadii)) {
+				double touchRadii2 = touchRadii * touchRadii;
 				/*
-				 * check if current movement will bring 'cell' within touching range of 'other',
-				 * ignoring direction.
+				 * check if the movement vector is in the direction of the 'other' cell. Ignore
+				 * if it is not. (it might be moving away from 'other', rather than towards it).
 				 */
-
-				double COx = O.x - C.x;
-				double COy = O.y - C.y;
-				double COz = O.z - C.z;
-				double touchRadii = cell.getRadius() + other.getRadius();
-				double touchRadii2 = touchRadii * touchRadii;
-				double CO2 = COx * COx + COy * COy + COz * COz; // CO squared.
-				double CO = Math.sqrt(COx * COx + COy * COy + COz * COz);
-				double CS = Math.sqrt(CSx * CSx + CSy * CSy + CSz * CSz);
-
-				// if true, 'other' is within touching distance of 'cell'. This is simply
-				// whether they are within range,
-				// not accounting for directon.
-				if (CS > (CO - touchRadii)) {
+				double dotP = COx * CSx + COy * CSy + COz * CSz; // dot product.
+				if (dotP > 0.0) // if true, 'cell' is moving towards 'other'.
+				{
 					/*
-					 * check if the movement vector is in the direction of the 'other' cell. Ignore
-					 * if it is not. (it might be moving away from 'other', rather than towards it).
+					 * check whether the CS vector will actually bring 'cell' within touching
+					 * distance of 'other'. Is it here that point R must be calculated.
 					 */
-					double dotP = COx * CSx + COy * CSy + COz * CSz; // dot product.
-					if (dotP > 0.0) // if true, 'cell' is moving towards 'other'.
+					double CSunitx = CSx / CS;
+					double CSunity = CSy / CS;
+					double CSunitz = CSz / CS;
+					// The geometry here is a right angle triangle, between C, O and R. The
+					// rightangle is CRO.
+					// we have three equations - note that dp means dot product:
+					// 1. cos(a) = adjacent / hypotenuse. Angle a is RCO.
+					// 2. dp(v,w) = |v|*|w|*cos(a).
+					// 3. dp(v,w) = vx*wx + vy*wy + vz*wz
+					//
+					// combining 1 and 2 gives:
+					// 4. dp(v,w) = |v|*|w|* (|adj| / |hyp|)
+					//
+					// plug some variables into 4. Construct a right angle triangle. Hyp = CO, Adj =
+					// CR (what we are
+					// trying to find). Opposite = RO, though we don't use it in this calculation.
+					// dp(CS,CO) = |CS| * |CO| * |CR| / |CO| the COs cancel each other out
+					// dp(CS,CO) = |CS| * |CR|
+					//
+					// We can use the unit vector of CS, which has the same direction as CS, but
+					// length 1. Hence,
+					// dp(CSunit,CO) = |CR|
+					//
+					// Hence, dot product of CS unit and CO gives the distance along 'CS' closest to
+					// O (i.e., CR).
+					double CR = COx * CSunitx + COy * CSunity + COz * CSunitz; // this is the dot product, gives
+																				// opposite.
+					double CR2 = CR * CR; // gives opposite squared.
+					double RO2 = CO2 - CR2;
+					// if true, then cells get within contact range of one another.
+					if (RO2 <= touchRadii2) // square minSeparation to avoid square roots.
 					{
-						/*
-						 * check whether the CS vector will actually bring 'cell' within touching
-						 * distance of 'other'. Is it here that point R must be calculated.
-						 */
-						double CSunitx = CSx / CS;
-						double CSunity = CSy / CS;
-						double CSunitz = CSz / CS;
-						// The geometry here is a right angle triangle, between C, O and R. The
-						// rightangle is CRO.
-						// we have three equations - note that dp means dot product:
-						// 1. cos(a) = adjacent / hypotenuse. Angle a is RCO.
-						// 2. dp(v,w) = |v|*|w|*cos(a).
-						// 3. dp(v,w) = vx*wx + vy*wy + vz*wz
-						//
-						// combining 1 and 2 gives:
-						// 4. dp(v,w) = |v|*|w|* (|adj| / |hyp|)
-						//
-						// plug some variables into 4. Construct a right angle triangle. Hyp = CO, Adj =
-						// CR (what we are
-						// trying to find). Opposite = RO, though we don't use it in this calculation.
-						// dp(CS,CO) = |CS| * |CO| * |CR| / |CO| the COs cancel each other out
-						// dp(CS,CO) = |CS| * |CR|
-						//
-						// We can use the unit vector of CS, which has the same direction as CS, but
-						// length 1. Hence,
-						// dp(CSunit,CO) = |CR|
-						//
-						// Hence, dot product of CS unit and CO gives the distance along 'CS' closest to
-						// O (i.e., CR).
-						double CR = COx * CSunitx + COy * CSunity + COz * CSunitz; // this is the dot product, gives
-																					// opposite.
-						double CR2 = CR * CR; // gives opposite squared.
-						double RO2 = CO2 - CR2;
-						// if true, then cells get within contact range of one another.
-						if (RO2 <= touchRadii2) // square minSeparation to avoid square roots.
-						{
-							/* The cells will collide, here we find point T, and vector CT. */
-							colliders.add(other);
-							// This is also done using a right angle triangle, between O, R and T. Right
-							// angle is ORT.
-							// hyp = TO. The other two sides are TR and OR. We wish to find TR.
-							double TO2 = touchRadii2;
-							double TR2 = TO2 - RO2;
-							double TR = Math.sqrt(TR2);
-							double CT = CR - TR;
-							double shrinkFactor = CT / CS;
-							double CTx = CSx * shrinkFactor;
-							double CTy = CSy * shrinkFactor;
-							double CTz = CSz * shrinkFactor;
-							// set point S to point T, ready for consideration of other potentially
-							// colliding cells.
-							CSx = CTx;
-							CSy = CTy;
-							CSz = CTz;
-							// calculate vector OT, since this is the normal to the contact between 'cell'
-							// and 'other'.
-							// This can be used to create a 'bounce' vector, which can be used to have cells
-							// slide over
-							// one another.
-							double Tx = C.x + CTx; // these are coordinates, not magnitudes.
-							double Ty = C.y + CTy;
-							double Tz = C.z + CTz;
-							// these are directional vector components. They constitute the normal of the
-							// contact between
-							// 'cell' and 'other'. Unit vectors so that multiple bounces count equally.
-							double bx = Tx - O.x;
-							double by = Ty - O.y;
-							double bz = Tz - O.z;
-							double blen = Math.sqrt(bx * bx + by * by + bz * bz);
-							bouncex += bx / blen;
-							bouncey += by / blen;
-							bouncez += bz / blen;
-						}
+						/* The cells will collide, here we find point T, and vector CT. */
+						colliders.add(other);
+						// This is also done using a right angle triangle, between O, R and T. Right
+						// angle is ORT.
+						// hyp = TO. The other two sides are TR and OR. We wish to find TR.
+						double TO2 = touchRadii2;
+						double TR2 = TO2 - RO2;
+						double TR = Math.sqrt(TR2);
+						double CT = CR - TR;
+						double shrinkFactor = CT / CS;
+						double CTx = CSx * shrinkFactor;
+						double CTy = CSy * shrinkFactor;
+						double CTz = CSz * shrinkFactor;
+						// set point S to point T, ready for consideration of other potentially
+						// colliding cells.
+						CSx = CTx;
+						CSy = CTy;
+						CSz = CTz;
+						CS = Math.sqrt(CSx * CSx + CSy * CSy + CSz * CSz);
+						// calculate vector OT, since this is the normal to the contact between 'cell'
+						// and 'other'.
+						// This can be used to create a 'bounce' vector, which can be used to have cells
+						// slide over
+						// one another.
+						double Tx = Cx + CTx; // these are coordinates, not magnitudes.
+						double Ty = Cy + CTy;
+						double Tz = Cz + CTz;
+						// these are directional vector components. They constitute the normal of the
+						// contact between
+						// 'cell' and 'other'. Unit vectors so that multiple bounces count equally.
+						double bx = Tx - Ox[o];
+						double by = Ty - Oy[o];
+						double bz = Tz - Oz[o];
+						double blen = Math.sqrt(bx * bx + by * by + bz * bz);
+						bouncex += bx / blen;
+						bouncey += by / blen;
+						bouncez += bz / blen;
 					}
 				}
 			}
 		}
-	
-
-		Double3D bounce = new Double3D(bouncex, bouncey, bouncez);
-		if (bounce.lengthSq() > 0.0)
-			bounce = Utils.unitVector(bounce);
-		// If cell moves outside spherical volume, reposition it randomly
-		Double3D newLoc;
-		
-
-		newLoc = new Double3D(C.x + CSx, C.y + CSy, C.z + CSz);
-		cellField.setObjectLocation(cell, newLoc);
+		// capture only candidates are told of contact along the move as made, found as above, but do not stop it.
+		for (int i = 0; i < total && captures > 0; i++) {
+			Cell other = i < first.size() ? first.get(i) : second.get(i - first.size());
+			int o = other.slot;
+			if (other == cell || o < 0 || interactions.between(type, other.typeIndex()) != Interaction.CAPTURE)
+				continue;
+			captures--;
+			double COx = Ox[o] - Cx;
+			double COy = Oy[o] - Cy;
+			double COz = Oz[o] - Cz;
+			double touchRadii = cellRadius + radius[o];
+			double CO2 = COx * COx + COy * COy + COz * COz;
+			if (CS > (Math.sqrt(CO2) - touchRadii)) {
+				double dotP = COx * CSx + COy * CSy + COz * CSz;
+				if (dotP > 0.0) {
+					double CR = dotP / CS;
+					double RO2 = CO2 - CR * CR;
+					if (RO2 <= touchRadii * touchRadii)
+						colliders.add(other);
+				}
+			}
+		}
 
-		return new MoveResults(newLoc, bounce, colliders); // return information.
+		// the bounce is a unit vector, unless there was no collision.
+		double bounceLen2 = bouncex * bouncex + bouncey * bouncey + bouncez * bouncez;
+		if (bounceLen2 > 0.0) {
+			double bounceLen = Math.sqrt(bounceLen2);
+			results.bounce.setTo(bouncex / bounceLen, bouncey / bounceLen, bouncez / bounceLen);
+		} else
+			results.bounce.setTo(bouncex, bouncey, bouncez);
+		moveCell(cell, Cx + CSx, Cy + CSy, Cz + CSz);
+		return results; // return information.
 	}
 	
 	public void sphericalBoundary(Cell cell, boolean randomly_reposition) {
 		if (outsideSphericalVolume(cell)) {
-			if (randomly_reposition && cell.getType() == "Fragment-LogNorm") {
+			if (randomly_reposition && CellTypes.respawns(cell.typeIndex())) {
 				
-				Simulation.space.cellField.remove(cell);
-				Fragment bcell = new Fragment(Simulation.instance.schedule);
-				Simulation.space.placeCellRandomlyInSphere(bcell, true);
-				SimulationTBM.fragsln.add(bcell);
+				cell.retire();
+				Fragment.spawn(sim);
 			} else {
 				// move towards the center of the sphere. 
-				Double3D C = cellField.getObjectLocation(cell);
-
-				double CCenx = center.x - C.x ;
-				double CCeny = center.y - C.y;
-				double CCenz = center.z - C.z;
+				int c = cell.slot;
+				double Cx = store.x[c], Cy = store.y[c], Cz = store.z[c];
+				if (cell instanceof MigratoryCell)
+					((MigratoryCell) cell).nudging(Cx, Cy, Cz);
+
+				double CCenx = center.x - Cx ;
+				double CCeny = center.y - Cy;
+				double CCenz = center.z - Cz;
 				double CCen = Math.sqrt(CCenx*CCenx+ CCeny*CCeny + CCenz*CCenz);
 				
 				double CSx = cell.getSpeed() * CCenx / CCen;
 				double CSy = cell.getSpeed() * CCeny / CCen;
 				double CSz = cell.getSpeed() * CCenz / CCen;
-				Double3D newLoc = new Double3D(C.x + CSx, C.y + CSy, C.z + CSz);
-				cellField.setObjectLocation(cell, newLoc);
+				moveCell(cell, Cx + CSx, Cy + CSy, Cz + CSz);
 			}
 		}
 	}
@@ -365,18 +591,15 @@ public class Compartment3D implements Steppable {
 
 	/**
 	 * Used solely for grouping together information passed back to cell following
-	 * an attempted move in space
+	 * an attempted move in space. The compartment reuses one for every move, so its 
+	 * contents are only valid until the next move. Where the cell ended up is had from
+	 * the cell itself.
 	 */
-	public static class MoveResults {
-		public Double3D newLocation;
-		public Double3D bounce;
-		public ArrayList<Cell> colliders;
-
-		public MoveResults(Double3D newLoc, Double3D bounce, ArrayList<Cell> colliders) {
-			this.newLocation = newLoc;
-			this.bounce = bounce;
-			this.colliders = colliders;
-		}
+	public static class MoveResults implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		public final MutableDouble3D bounce = new MutableDouble3D();
+		public final ArrayList<Cell> colliders = new ArrayList<Cell>();
 	}
 
 	/**
@@ -404,10 +627,9 @@ public class Compartment3D implements Steppable {
 	 * Returns true if the supplied location resides within a cell.
 	 */
 	public boolean insideCell(Double3D location) {
-		for (Object obj : cellField.getAllObjects()) {
-			Cell c = (Cell) obj;
-			Double3D nLoc = c.getCurrentLocation();
-			if (Utils.displacement(nLoc, location) < c.getRadius())
+		for (int i = 0; i < store.size(); i++) {
+			Cell c = store.cell(i);
+			if (Utils.displacement(getCellLocation(c), location) < c.getRadius())
 				return true;
 		}
 		return false;
@@ -471,19 +693,88 @@ public class Compartment3D implements Steppable {
 			}
 	}
 
+	/**
+	 * Places or moves a cell in the compartment. All changes to a cell's location should go through here (rather than
+	 * cellField directly), so that the collision detection broad phase and the cell store stay up to date.
+	 */
 	public void moveCell(Cell cell, Double3D newLocation) {
-		cellField.setObjectLocation(cell, newLocation);
+		moveCell(cell, newLocation.x, newLocation.y, newLocation.z);
+		cell.fieldLocation = newLocation;
+	}
+
+	/** As above, but without building a Double3D, as moves are made every time step. */
+	void moveCell(Cell cell, double x, double y, double z) {
+		boolean placed = !cell.isPlaced();
+		if (trackNewcomers && placed)
+			newcomers.add(cell);
+		if (placed)
+			placedVolume += sphereVolume(cell.getRadius());
+		if (placed)
+			store.add(cell, x, y, z);
+		else
+			store.move(cell.slot, x, y, z);
+		cell.fieldLocation = null;
+		if (displayed)
+			cellField.setObjectLocation(cell, getCellLocation(cell));
+		if (cell.isImmobile()) {
+			if (!placed)
+				obstacles.remove(cell);
+			obstacles.add(cell, getCellLocation(cell));
+		} else {
+			cellGrid.update(cell, x, y, z);
+			if (lists != null && placed)
+				lists.placed(cell, x, y, z);
+			else if (lists != null)
+				lists.moved(cell, x, y, z);
+		}
+	}
+
+	/**
+	 * Keeps the cellField up to date from now on, for a display to portray the cells, starting with every cell already 
+	 * placed. Cells are entered in slot order, so that the field's allObjects orders them as the store does.
+	 */
+	public void display() {
+		if (displayed)
+			return;
+		displayed = true;
+		cellField.clear();
+		for (int i = 0; i < store.size(); i++)
+			cellField.setObjectLocation(store.cell(i), getCellLocation(store.cell(i)));
 	}
 
+	/** Removes a cell from the compartment, the counterpart of moveCell. */
+	public void removeCellFromField(Cell cell) {
+		if (cell.isPlaced())
+			placedVolume -= sphereVolume(cell.getRadius());
+		if (displayed)
+			cellField.remove(cell);
+		store.remove(cell);
+		if (cell.isImmobile())
+			obstacles.remove(cell);
+		else {
+			cellGrid.remove(cell);
+			if (lists != null)
+				lists.removed(cell);
+		}
+		cell.fieldLocation = null;
+	}
+
+	/** 
+	 * Where the cell is in the compartment, null if it is not placed. The Double3D is built from the cell store the 
+	 * first time it is asked for after a move, and kept until the cell next moves.
+	 */
 	public Double3D getCellLocation(Cell cell) {
-		return cellField.getObjectLocation(cell);
+		int c = cell.slot;
+		if (cell.fieldLocation == null && c >= 0)
+			cell.fieldLocation = new Double3D(store.x[c], store.y[c], store.z[c]);
+		return cell.fieldLocation;
 	}
 
 	public boolean outsideSphericalVolume(Cell cell) {
-		Double3D loc = cellField.getObjectLocation(cell);
-		double r = Simulation.tissueRadius;
-		Double3D co = new Double3D(r,r,r); //sphere Center
-		double dist2 = Math.pow(loc.x - co.x,2) + Math.pow(loc.y - co.y, 2) + Math.pow(loc.z - co.z, 2);
+		int c = cell.slot;
+		double r = sim.tissueRadius;
+		Double3D co = center; //sphere Center
+		double dist2 = Math.pow(store.x[c] - co.x,2) + Math.pow(store.y[c] - co.y, 2) + Math.pow(store.z[c] - co.z, 2);
 		double boundedRadius2 = r * r;
 		if (dist2 > boundedRadius2)
 			return true;
@@ -492,18 +783,18 @@ public class Compartment3D implements Steppable {
 
 	
 	public boolean insideImagingVolume(Object o) {
-		Double3D loc = cellField.getObjectLocation(o);
+		Double3D loc = getCellLocation((Cell) o);
 		if (loc.x < 0)
 			return false;
-		if (loc.x > Simulation.tissueWidth)
+		if (loc.x > sim.tissueWidth)
 			return false;
 		if (loc.y < 0)
 			return false;
-		if (loc.y > Simulation.tissueHeight)
+		if (loc.y > sim.tissueHeight)
 			return false;
 		if (loc.z < 0)
 			return false;
-		if (loc.z > Simulation.tissueDepth)
+		if (loc.z > sim.tissueDepth)
 			return false;
 
 		return true;
@@ -512,15 +803,15 @@ public class Compartment3D implements Steppable {
 	public boolean insideImagingVolume(double x, double y, double z) {
 		if (x < 0)
 			return false;
-		if (x > Simulation.tissueWidth)
+		if (x > sim.tissueWidth)
 			return false;
 		if (y < 0)
 			return false;
-		if (y > Simulation.tissueHeight)
+		if (y > sim.tissueHeight)
 			return false;
 		if (z < 0)
 			return false;
-		if (z > Simulation.tissueDepth)
+		if (z > sim.tissueDepth)
 			return false;
 
 		return true;
@@ -535,9 +826,17 @@ public class Compartment3D implements Steppable {
 	 * The specified cell is not included in the Bag.
 	 */
 	public Bag cellsInLocale(Cell cell, double radius) {
-		Double3D loc = cellField.getObjectLocation(cell);
-		Bag neighbours = cellField.getNeighborsExactlyWithinDistance(loc, radius);
-		neighbours.remove(cell);
+		Double3D loc = getCellLocation(cell);
+		Bag found = new Bag();
+		cellGrid.candidates(loc, radius, found);
+		for (Cell still : obstacles.near(loc.x, loc.y, loc.z, Double.POSITIVE_INFINITY))
+			found.add(still);
+		Bag neighbours = new Bag();
+		for (int i = 0; i < found.numObjs; i++) {
+			Cell other = (Cell) found.objs[i];
+			if (other != cell && Utils.displacement(getCellLocation(other), loc) <= radius)
+				neighbours.add(other);
+		}
 		return neighbours;
 	}
 
@@ -1,15 +1,12 @@
 package core;
 
+import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import java.util.Arrays;
 
 import core.Compartment3D.MoveResults;
+import ec.util.MersenneTwisterFast;
 import loggers.CellLogger;
 import movement.Brownian;
 import movement.BrownianMeander;
@@ -19,6 +16,7 @@ import movement.Translation;
 import sim.engine.Schedule;
 import sim.engine.SimState;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 /**
  * This program is free software: you can redistribute it and/or modify
     it under the terms of the GNU General Public License as published by
@@ -39,95 +37,223 @@ import sim.util.Double3D;
 
 public class Fragment extends MigratoryCell 
 {
-	public static double diameter;	// in microns. 
-	private double speed;
-	Document parameters = Simulation.parameters;	
+	private static final long serialVersionUID = 1L;
 
+	// this fragment's index into its population's per fragment arrays. -1 for a template.
+	private final int member;
 
 	private CellLogger.Track logger;
 	private Double3D startLoc;
-	private double meanderChance;
-	private int meanderCount = 0;
 
-	private static int removedCount=0;	
-	private static int cellCount = 0;
-	private static double meanderMeanParam;
-	private static double meanderStDParam;
-	
-	private static double speedM_Mean;
-	private static double speedM_StD;
-	private static double speedS_Mean;
-	private static double speedS_StD;
+	private ArrayList<Double> turnData = new ArrayList<Double>(8);
+
+	// simulation time at which this fragment was retired. 
+	private double retiredAt;
 	
-	public static TranslationParadigm translationParadigm;
-	public static OrientationParadigm orientationParadigm;
-	protected static Translation translationActuator;
-	protected static Orientation orientationActuator;
+	/**
+	 * State shared by all fragments of one simulation run: their parameters, movement actuators, counts and the pool 
+	 * of retired fragments awaiting recycling. Built once when the simulation is started; fragments created (or 
+	 * recycled) thereafter do no parameter parsing of their own. 
+	 */
+	public static class Population implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
 
-	private static ArrayList<Double> turnParam = new ArrayList<Double>(8);
-	private ArrayList<Double> turnData = new ArrayList<Double>(8);
-	private static ArrayList<Double> betaDistrParams = new ArrayList<Double>(3);
+		private final Simulation sim;
+		private final SimulationParameters.CellParameters params;
+		private final ArrayList<Double> betaDistrParams;
+		// every random draw made for fragments, their movement included, comes from this stream.
+		private final MersenneTwisterFast rng;
+		
+		public final TranslationParadigm translationParadigm;
+		public final OrientationParadigm orientationParadigm;
+		// slot 0 moves fragments stepped one at a time; slot w + 1 serves worker w of the MotionPlanner, drawing from 
+		// a stream of its own, so that workers never share a generator or an actuator's working state. 
+		private final Translation[] translationActuators;
+		private final Orientation[] orientationActuators;
 
+		private int removedCount = 0;	
+		private int cellCount = 0;
+		
+		// motility of each fragment, in parallel arrays indexed by member rather than held by the fragments, so that 
+		// loops over the population read contiguous memory. A fragment keeps its member index when recycled.
+		private double[] speed = new double[256];
+		private double[] meanderChance = new double[256];
+		private int[] meanderCount = new int[256];
+		private int members = 0;
+		
+		// fragments currently in the simulation.
+		public final ArrayList<Fragment> live = new ArrayList<Fragment>();
+		// retired fragments, oldest first, waiting to be recycled by spawn.
+		private final ArrayDeque<Fragment> recycled = new ArrayDeque<Fragment>();
+		
+		public Population(Simulation sim, SimulationParameters.CellParameters params)
+		{
+			this.sim = sim;
+			this.params = params;
+			rng = sim.newStream("fragment");
+			betaDistrParams = params.getBetaDistrParams();
+			
+			String selection = params.orientationParadigm;
+			if (selection.equals("Brownian"))
+			{
+				translationParadigm = TranslationParadigm.BROWNIAN;
+				orientationParadigm = OrientationParadigm.BROWNIAN;
+			}
+			else if (selection.equals("BrownianMeander"))
+			{
+				translationParadigm = TranslationParadigm.BROWNIAN_MEANDER;
+				orientationParadigm = OrientationParadigm.BROWNIAN_MEANDER;
+			}
+			else if (selection.equals("HeterogeneousBetaMeander"))
+			{
+				translationParadigm = TranslationParadigm.HETEROGENOUS_BETA_MEANDER;
+				orientationParadigm = OrientationParadigm.HETEROGENOUS_BETA_MEANDER;
+			}
+			else
+				throw new RuntimeException("Unsupported fragment orientation paradigm: " + selection);
+			
+			int slots = sim.threads > 1 ? sim.threads + 1 : 1;
+			translationActuators = new Translation[slots];
+			orientationActuators = new Orientation[slots];
+			for (int s = 0; s < slots; s++)
+				createActuators(s, s == 0 ? rng : sim.newStream("fragment/" + (s - 1)));
+		}
+		
+		private void createActuators(int slot, MersenneTwisterFast stream)
+		{
+			switch (orientationParadigm)
+			{
+				case BROWNIAN:
+					Brownian b = new Brownian(sim, stream, sim.config.brownianSpeedStD);
+					orientationActuators[slot] = b;
+					translationActuators[slot] = b;
+					break;
+				case BROWNIAN_MEANDER:
+					BrownianMeander bm = new BrownianMeander(sim, stream);
+					orientationActuators[slot] = bm;
+					translationActuators[slot] = bm;
+					break;
+				default:
+					HeterogeneousBetaMeander hbm = new HeterogeneousBetaMeander(sim, stream, params.betaDistr_alpha, 
+							params.betaDistr_beta, params.betaDistr_scaleFactor);
+					orientationActuators[slot] = hbm;
+					translationActuators[slot] = hbm;
+			}
+		}
+		
+		/** Gives a newly built fragment a member index of its own. */
+		private int join()
+		{
+			if (members == speed.length)
+			{
+				int capacity = members * 2;
+				speed = Arrays.copyOf(speed, capacity);
+				meanderChance = Arrays.copyOf(meanderChance, capacity);
+				meanderCount = Arrays.copyOf(meanderCount, capacity);
+			}
+			return members++;
+		}
+		
+		public int getCellCount()
+		{	return cellCount;	}
+		
+		public int getRemovedCount()
+		{	return removedCount;	}
+	}
+	
+	/** Creates a fragment that is not placed on the schedule. Used as a template, eg. by the count loggers. */
+	public Fragment(Simulation sim)
+	{
+		super(sim);
+		member = -1;
+	}
 	
-	public Fragment()
-	{		try {
-		Fragment.loadParameters(parameters);
-	} catch (XPathExpressionException e) {
-		// TODO Auto-generated catch block
-		e.printStackTrace();
-	}	}
+	public Fragment(Simulation sim, Schedule sched)
+	{
+		super(sim, sched);
+		member = sim.fragments.join();
+		initialise();
+	}
 	
-	public Fragment(Schedule sched)
+	/** Sets up the state unique to a new fragment. Shared by construction and recycling. */
+	private void initialise()
 	{
-		super(sched);
-		if (Simulation.trackCells)
+		Population pop = sim.fragments;
+		if (sim.output.tracks())
 			logger = new CellLogger.Track(this);
-		Fragment.cellCount++;
-		try {
-			Fragment.loadParameters(parameters);
-		} catch (XPathExpressionException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		pop.cellCount++;
+		pop.meanderCount[member] = 0;
+		turnData.clear();
 
 		// Set up motility distribution unique for this cell.
-		this.setSpeed(Math.exp((Simulation.rng.nextGaussian() * speedS_Mean) + speedM_Mean)); // convert gaussian to lognormal distribution
+		this.setSpeed(Math.exp((pop.rng.nextGaussian() * pop.params.speedS_Mean) + pop.params.speedM_Mean)); // convert gaussian to lognormal distribution
 		
 		// Set up confinement measure unique for this cell.;
 		double meanderChance = 1;
 		do {
-			meanderChance = Math.exp(Simulation.rng.nextGaussian() * meanderStDParam + meanderMeanParam); //lognorm distr
+			meanderChance = Math.exp(pop.rng.nextGaussian() * pop.params.meanderStD + pop.params.meanderMean); //lognorm distr
 		} while (meanderChance > 0.99)
 ;
 		this.setMeanderChance(meanderChance);
+	}
+	
+	/**
+	 * Brings a fragment into the simulation at a random location in the sphere, recycling a retired fragment where
+	 * possible rather than building a new one. 
+	 */
+	public static Fragment spawn(Simulation sim)
+	{
+		Population pop = sim.fragments;
+		Schedule sched = sim.schedule;
+		Fragment frag = pop.recycled.peek();
+		// a fragment retired during the current time step may still be referenced further down the stack (it may be
+		// the very fragment being stepped), so only recycle those retired in earlier time steps.
+		if (frag != null && frag.retiredAt < sched.getTime())
+		{
+			pop.recycled.poll();
+			frag.scheduleCell(sched);
+			frag.resetMotility();
+			frag.initialise();
 		}
+		else
+			frag = new Fragment(sim, sched);
+		sim.space.placeCellRandomlyInSphere(frag, true);
+		enlist(pop.live, frag);
+		return frag;
+	}
+	
+	@Override
+	public void retire()
+	{
+		if (!isActive())
+			return;
+		super.retire();
+		delist(sim.fragments.live, this);
+		retiredAt = sim.schedule.getTime();
+		sim.fragments.recycled.add(this);
+	}
 
 	@Override
 	public void step(SimState state)
 	{
-		if (Simulation.space.cellField.exists(this) == true) // check if the cell exists. This is required because if a frag gets phagocytosed, moveCellCollisionsDetection will try to access it's location and get nullpointerException.
+		Compartment3D space = sim.space;
+		if (isPlaced()) // check if the cell exists. This is required because if a frag gets phagocytosed, moveCellCollisionsDetection will try to access it's location and get nullpointerException.
 		{
-			location = Simulation.space.getCellLocation(this);
-			if (bounce.lengthSq() == 0.0)
+			MutableDouble3D move = nextMove();
+			if (move == null)
 			{
-
-				//orientation = orientationActuator.newOrientation(orientation, pitchData);
-				orientation = orientationActuator.newOrientation(orientation, this);	
+				// lost track of its start location, replace it.
+				retire();
+				Fragment.spawn(sim);
+				return;
 			}
 
-			// Detect collision
-			bounce();
-			Double3D move = null;
-
-			move = translationActuator.move(orientation, this);
-
-
 			//System.out.println("currspeed" + this.getSpeed() );
-			Double3D oldloc = location;
-			MoveResults mr = Simulation.space.moveCellCollisionDetection(this, move);
-			location = mr.newLocation;
-			bounce = mr.bounce;			// bounce off other cells that may have been contacted.
-			collidedCells = mr.colliders;
+			CellStore store = space.store;
+			double oldx = store.x[slot], oldy = store.y[slot], oldz = store.z[slot];
+			MoveResults mr = collisionMove(move);
+			moved(mr);
 		
 
 			int numCollisions = collidedCells.size();
@@ -135,150 +261,60 @@ public class Fragment extends MigratoryCell
 			{
 				for (int i = 0; i<numCollisions; i++) 
 				{
-					String colliderCell = ((Cell) collidedCells.get(i)).getType(); // needs the (Cell) cast because collidedCells is an arrayList, not a <Cell> object.
-					if (colliderCell == "Macrophage") // is the encountered cell a macrophage?
+					if (CellTypes.consumedBy(CellTypes.FRAGMENT, collidedCells.get(i).typeIndex())) // eg. a macrophage
 					{
 						removeCell();
 						// rebirth on phagocytosis to keep cell numbers constant.
-						Fragment frag = new Fragment(Simulation.instance.schedule);
-						Simulation.space.placeCellRandomlyInSphere(frag, true);
-						SimulationTBM.fragsln.add(frag);
+						Fragment.spawn(sim);
 					} 
 				}
 			}
 			
-			if (Simulation.space.cellField.exists(this) == true) { // may have been phagocytosed
-				Simulation.space.sphericalBoundary(this, true);
+			if (isPlaced()) { // may have been phagocytosed
+				space.sphericalBoundary(this, true);
 			} 
 			
 			
 			// rare bug: (<1% ) get 'stuck' during a bounce. Reason unsure. In this case, delete and create new.
-			if (Simulation.space.cellField.exists(this) == true) { 
-				Double3D diff = oldloc.subtract(location);
-				if ((diff.x + diff.y + diff.z) == 0.0) {
-					Simulation.space.cellField.remove(this);
-					Fragment frag = new Fragment(Simulation.instance.schedule);
-					Simulation.space.placeCellRandomlyInSphere(frag, true);
-					SimulationTBM.fragsln.add(frag);
+			if (isPlaced()) { 
+				if (((oldx - store.x[slot]) + (oldy - store.y[slot]) + (oldz - store.z[slot])) == 0.0) {
+					retire();
+					Fragment.spawn(sim);
 				}
 			}
 		}
 	}
 
-	
-	public static void loadParameters(Document params) throws XPathExpressionException
+
+	@Override
+	protected boolean proposeMove(int slot, MutableDouble3D move)
+	{
+		Population pop = sim.fragments;
+		if (bounce.lengthSq() == 0.0)
 		{
-			XPath xPath =  XPathFactory.newInstance().newXPath(); 
-			Node n;
-			n = (Node) xPath.compile("/params/Simulation/Fragment/speedM_Mean")
-					.evaluate(params, XPathConstants.NODE);
-			speedM_Mean = Double.parseDouble(n.getTextContent());
-			n = (Node) xPath.compile("/params/Simulation/Fragment/speedM_StD")
-					.evaluate(params, XPathConstants.NODE);
-			speedM_StD = Double.parseDouble(n.getTextContent());
-			n = (Node) xPath.compile("/params/Simulation/Fragment/speedS_Mean")
-					.evaluate(params, XPathConstants.NODE);
-			speedS_Mean = Double.parseDouble(n.getTextContent());
-			n = (Node) xPath.compile("/params/Simulation/Fragment/speedS_StD")
-					.evaluate(params, XPathConstants.NODE);
-			speedS_StD = Double.parseDouble(n.getTextContent());
-			
-			
-			Node pitchM_Mean = (Node) xPath.compile("/params/Simulation/Fragment/pitchM_Mean")
-					.evaluate(params, XPathConstants.NODE);
-			Node pitchM_StD = (Node) xPath.compile("/params/Simulation/Fragment/pitchM_StD")
-					.evaluate(params, XPathConstants.NODE);
-			Node pitchS_Mean = (Node) xPath.compile("/params/Simulation/Fragment/pitchS_Mean")
-					.evaluate(params, XPathConstants.NODE);
-			Node pitchS_StD = (Node) xPath.compile("/params/Simulation/Fragment/pitchS_StD")
-					.evaluate(params, XPathConstants.NODE);
-			Node rollM_Mean = (Node) xPath.compile("/params/Simulation/Fragment/rollM_Mean")
-					.evaluate(params, XPathConstants.NODE);
-			Node rollM_StD = (Node) xPath.compile("/params/Simulation/Fragment/rollM_StD")
-					.evaluate(params, XPathConstants.NODE);
-			Node rollS_Mean = (Node) xPath.compile("/params/Simulation/Fragment/rollS_Mean")
-					.evaluate(params, XPathConstants.NODE);
-			Node rollS_StD = (Node) xPath.compile("/params/Simulation/Fragment/rollS_StD")
-					.evaluate(params, XPathConstants.NODE);
-			
-			setTurnParams(Double.parseDouble(pitchM_Mean.getTextContent()),
-					Double.parseDouble(pitchM_StD.getTextContent()),
-					Double.parseDouble(pitchS_Mean.getTextContent()),
-					Double.parseDouble(pitchS_StD.getTextContent()),
-					Double.parseDouble(rollM_Mean.getTextContent()),
-					Double.parseDouble(rollM_StD.getTextContent()),
-					Double.parseDouble(rollS_Mean.getTextContent()),
-					Double.parseDouble(rollS_StD.getTextContent())
-					);
-			
-			n = (Node) xPath.compile("/params/Simulation/Fragment/meanderStD")
-					.evaluate(params, XPathConstants.NODE);
-			meanderStDParam =  Double.parseDouble(n.getTextContent());
-			n = (Node) xPath.compile("/params/Simulation/Fragment/meanderMean")
-					.evaluate(params, XPathConstants.NODE);
-			meanderMeanParam =  Double.parseDouble(n.getTextContent());
-			
-			Node alpha = (Node) xPath.compile("/params/Simulation/Fragment/betaDistr_alpha")
-					.evaluate(params, XPathConstants.NODE);
-			Node beta = (Node) xPath.compile("/params/Simulation/Fragment/betaDistr_beta")
-					.evaluate(params, XPathConstants.NODE);
-			Node scale = (Node) xPath.compile("/params/Simulation/Fragment/betaDistr_scaleFactor")
-					.evaluate(params, XPathConstants.NODE);
-			
-			setBetaDistrParams(Double.parseDouble(alpha.getTextContent()),
-								Double.parseDouble(beta.getTextContent()),
-								Double.parseDouble(scale.getTextContent()));
-			
-			n = (Node) xPath.compile("/params/Simulation/Fragment/diameter")
-					.evaluate(params, XPathConstants.NODE);
-			diameter = Double.parseDouble(n.getTextContent());
-			
-			n = (Node) xPath.compile("/params/Simulation/Fragment/translationParadigm")
-					.evaluate(params, XPathConstants.NODE);
-			String selection = n.getTextContent();
-			n = (Node) xPath.compile("/params/Simulation/Fragment/orientationParadigm")
-					.evaluate(params, XPathConstants.NODE);
-			selection = n.getTextContent();
-			if (selection.equals("Brownian"))
-			{
-				translationParadigm = TranslationParadigm.BROWNIAN;
-				orientationParadigm = OrientationParadigm.BROWNIAN;
-				orientationActuator = Brownian.instance;
-				translationActuator = Brownian.instance;	
-				Brownian.loadParameters(params);
-			}
-			else if (selection.equals("BrownianMeander"))
-			{
-				translationParadigm = TranslationParadigm.BROWNIAN_MEANDER;
-				orientationParadigm = OrientationParadigm.BROWNIAN_MEANDER;
-				orientationActuator = BrownianMeander.instance;
-				translationActuator = BrownianMeander.instance;	
-			}
-			else if (selection.equals("HeterogeneousBetaMeander"))
-			{
-				translationParadigm = TranslationParadigm.HETEROGENOUS_BETA_MEANDER;
-				orientationParadigm = OrientationParadigm.HETEROGENOUS_BETA_MEANDER;
-				orientationActuator = HeterogeneousBetaMeander.instance;
-				translationActuator = HeterogeneousBetaMeander.instance;
-			}
+			//orientation = orientationActuator.newOrientation(orientation, pitchData);
+			orientation = pop.orientationActuators[slot].newOrientation(orientation, this);	
 		}
 
-
+		// Detect collision
+		bounce();
+		return pop.translationActuators[slot].move(orientation, this, move);
+	}
 	
 	private void setMeanderChance(double meanderChance) {
-		this.meanderChance = meanderChance;
+		sim.fragments.meanderChance[member] = meanderChance;
 	}
 	
 	public double getMeanderChance() {
-		return(this.meanderChance);
+		return(sim.fragments.meanderChance[member]);
 	}
 	
 	public void addMeanderCount() {
-		this.meanderCount = this.meanderCount + 1;
+		sim.fragments.meanderCount[member]++;
 	}
 	
 	public int getMeanderCount() {
-		return(this.meanderCount);
+		return(sim.fragments.meanderCount[member]);
 	}
 	
 	public void setStartLoc(Double3D location) {
@@ -289,72 +325,50 @@ public class Fragment extends MigratoryCell
 	}
 	
 	private void setSpeed(double speed) {
-		this.speed = speed;
+		sim.fragments.speed[member] = speed;
 	}
 	public double getSpeed() {
-		return(this.speed);
+		return(sim.fragments.speed[member]);
 	}
 	
 	public ArrayList<Double> getBetaDistrParams() {
-		return(Fragment.betaDistrParams);
-	}
-	
-	public static void setBetaDistrParams(Double alpha, Double beta, Double scaleFactor) {
-		Fragment.betaDistrParams.add(0, alpha);
-		Fragment.betaDistrParams.add(1, beta);
-		Fragment.betaDistrParams.add(2, scaleFactor);
+		return(sim.fragments.betaDistrParams);
 	}
 	
 	public ArrayList<Double> getTurnData() {
 		return(this.turnData);
 	}
-	private static void setTurnParams(double pitchM_Mean, double pitchM_StD, double pitchS_Mean, double pitchS_StD, 
-			double rollM_Mean, double rollM_StD, double rollS_Mean, double rollS_StD) {
-		//pitch
-		Fragment.turnParam.add(0, pitchM_Mean);
-		Fragment.turnParam.add(1, pitchM_Mean);
-		Fragment.turnParam.add(2, pitchS_Mean);
-		Fragment.turnParam.add(3, pitchS_StD);
-		Fragment.turnParam.add(4, rollM_Mean);
-		Fragment.turnParam.add(5, rollM_StD);
-		Fragment.turnParam.add(6, rollS_Mean);
-		Fragment.turnParam.add(7, rollS_StD);
-	}
-	
+
+	protected MersenneTwisterFast getRandom()
+	{	return sim.fragments.rng;	}
 	
 	public double getDiameter()
-	{ 	return diameter;	}
+	{ 	return sim.config.fragment.diameter;	}
 	
 	public double getRadius()
-	{	return diameter / 2.0;	}
-	
-	public Double3D getCurrentLocation()
-	{	
-		if(location != null)
-			return location;
-		else
-			return Simulation.space.getCellLocation(this);
-	}
+	{	return sim.config.fragment.getRadius();	}
 	
 	public int getCount()
-	{	return Fragment.cellCount; }
+	{	return sim.fragments.cellCount; }
 	
 	public void removeCell()
 	{
-		Simulation.space.cellField.remove(this);
-		Fragment.removedCount++;
-		Fragment.cellCount--;
+		retire();
+		sim.fragments.removedCount++;
+		sim.fragments.cellCount--;
+		if (sim.cellLogger != null)
+			sim.cellLogger.captured(this);
 	}
 	
 	@Override
 	public int getRemovedCount() {
-		return Fragment.removedCount;
+		return sim.fragments.removedCount;
 	}
 	public CellLogger.Track getLogger()
 	{ 	return logger;	}
 	
-	public String getType()
-	{	return "Fragment-LogNorm";	}
+	public int typeIndex()
+	{	return CellTypes.FRAGMENT;	}
 
 	@Override
 	public ArrayList<Double> getTurnParams() {
@@ -1,15 +1,10 @@
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import core.Compartment3D.MoveResults;
+import ec.util.MersenneTwisterFast;
 import loggers.CellLogger;
 import movement.Brownian;
 import movement.BrownianMeander;
@@ -21,6 +16,7 @@ import movement.Translation;
 import sim.engine.Schedule;
 import sim.engine.SimState;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 
 /**
  * This program is free software: you can redistribute it and/or modify
@@ -44,157 +40,157 @@ import sim.util.Double3D;
 public class Macrophage extends MigratoryCell 
 {
 	
-	private static double speedM_Mean;
-	private static double speedM_StD;
-	private static double speedS_Mean;
-	private static double speedS_StD;
-	private static ArrayList<Double> turnParams = new ArrayList<Double>(8);
-	Document parameters = Simulation.parameters;	
-	
-	public static TranslationParadigm translationParadigm;
-	public static OrientationParadigm orientationParadigm;
-	protected static Translation translationActuator;
-	protected static Orientation orientationActuator;
-
-	public static double diameter;		// in microns. 
-	public static String cellType = "Macrophage";
-	
 	private CellLogger.Track logger;
 
-	private static int cellCount = 0;
+	/**
+	 * State shared by all macrophages of one simulation run: their parameters, movement actuators and count. Built 
+	 * once when the simulation is started. 
+	 */
+	public static class Population implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
 
-	
-	public Macrophage() {
-		try {
-			Macrophage.loadParameters(parameters);
-		} catch (XPathExpressionException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		private final Simulation sim;
+		private final SimulationParameters.CellParameters params;
+		private final ArrayList<Double> turnParams;
+		// every random draw made for macrophages, their movement included, comes from this stream.
+		private final MersenneTwisterFast rng;
+		
+		public final TranslationParadigm translationParadigm;
+		public final OrientationParadigm orientationParadigm;
+		// slot 0 moves macrophages stepped one at a time; slot w + 1 serves worker w of the MotionPlanner.
+		private final Translation[] translationActuators;
+		private final Orientation[] orientationActuators;
+
+		// true if macrophages never move: no paradigm but Brownian (which has speeds of its own) can move them when
+		// every speed parameter is zero.
+		public final boolean immobile;
+		private int cellCount = 0;
+		
+		// macrophages currently in the simulation.
+		public final ArrayList<Macrophage> live = new ArrayList<Macrophage>();
+		
+		public Population(Simulation sim, SimulationParameters.CellParameters params)
+		{
+			this.sim = sim;
+			this.params = params;
+			rng = sim.newStream("macrophage");
+			turnParams = params.getTurnParams();
+			
+			/* set up orientation paradigm */
+			String selection = params.orientationParadigm;
+			if (selection.equals("Brownian"))
+			{
+				translationParadigm = TranslationParadigm.BROWNIAN;
+				orientationParadigm = OrientationParadigm.BROWNIAN;
+			}
+			else if (selection.equals("BrownianMeander"))
+			{
+				translationParadigm = TranslationParadigm.BROWNIAN_MEANDER;
+				orientationParadigm = OrientationParadigm.BROWNIAN_MEANDER;
+			}
+			else if (selection.equals("HeterogeneousBetaMeander"))
+			{
+				translationParadigm = TranslationParadigm.HETEROGENOUS_BETA_MEANDER;
+				orientationParadigm = OrientationParadigm.HETEROGENOUS_BETA_MEANDER;
+			}
+			else if (selection.equals("HeterogeneousCRW"))
+			{
+				translationParadigm = TranslationParadigm.HETERO_CRW;
+				orientationParadigm = OrientationParadigm.HETERO_CRW;
+			}
+			else
+				throw new RuntimeException("Unsupported macrophage orientation paradigm: " + selection);
+			
+			immobile = orientationParadigm != OrientationParadigm.BROWNIAN && params.speedM_Mean == 0.0 
+					&& params.speedM_StD == 0.0 && params.speedS_Mean == 0.0 && params.speedS_StD == 0.0;
+			
+			int slots = sim.threads > 1 ? sim.threads + 1 : 1;
+			translationActuators = new Translation[slots];
+			orientationActuators = new Orientation[slots];
+			for (int s = 0; s < slots; s++)
+				createActuators(s, s == 0 ? rng : sim.newStream("macrophage/" + (s - 1)));
 		}
+		
+		private void createActuators(int slot, MersenneTwisterFast stream)
+		{
+			switch (orientationParadigm)
+			{
+				case BROWNIAN:
+					Brownian b = new Brownian(sim, stream, sim.config.brownianSpeedStD);
+					orientationActuators[slot] = b;
+					translationActuators[slot] = b;
+					break;
+				case BROWNIAN_MEANDER:
+					BrownianMeander bm = new BrownianMeander(sim, stream);
+					orientationActuators[slot] = bm;
+					translationActuators[slot] = bm;
+					break;
+				case HETEROGENOUS_BETA_MEANDER:
+					HeterogeneousBetaMeander hbm = new HeterogeneousBetaMeander(sim, stream, params.betaDistr_alpha, 
+							params.betaDistr_beta, params.betaDistr_scaleFactor);
+					orientationActuators[slot] = hbm;
+					translationActuators[slot] = hbm;
+					break;
+				default:
+					translationActuators[slot] = new HeterogeneousCRW_Translation(sim, stream);
+					orientationActuators[slot] = new HeterogeneousCRW_Orientation(sim, stream);
+			}
+		}
+		
+		public int getCellCount()
+		{	return cellCount;	}
+	}
+	
+	/** Creates a macrophage that is not placed on the schedule. Used as a template, eg. by the count loggers. */
+	public Macrophage(Simulation sim) 
+	{
+		super(sim);
 	}
 	
-	public Macrophage(Schedule sched)
+	public Macrophage(Simulation sim, Schedule sched)
 	{
-		super(sched);
-		if (Simulation.trackCells)
+		super(sim, sched);
+		if (sim.output.tracks())
 			logger = new CellLogger.Track(this);
-		Macrophage.cellCount++;
-		try {
-			Macrophage.loadParameters(parameters);
-		} catch (XPathExpressionException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		sim.macrophages.cellCount++;
+		enlist(sim.macrophages.live, this);
 	}
 	
-	@SuppressWarnings("null")
+	@Override
+	public void retire()
+	{
+		if (!isActive())
+			return;
+		super.retire();
+		delist(sim.macrophages.live, this);
+	}
+	
+	@Override
+	public boolean isImmobile()
+	{	return sim.macrophages.immobile;	}
+	
 	@Override
 	// TBM's are motile. If they collide with another TBM, they keep going (no contact repulsion)
 	public void step(SimState state) 
 	{
-		location = Simulation.space.getCellLocation(this);
-			// no change in state perform random walk.
-
-		orientation = orientationActuator.newOrientation(orientation, this);
-		bounce();
-		Double3D move = null;
-		move = translationActuator.move(orientation, speedM_Mean, speedM_StD, speedS_Mean, speedS_StD);
-
-		MoveResults mr = Simulation.space.moveCellCollisionDetection(this, move);
-		location = mr.newLocation;
-		bounce = mr.bounce;			// bounce off other cells that may have been contacted.
-		collidedCells = mr.colliders;
+		MoveResults mr = collisionMove(nextMove());
+		moved(mr);
 
-		Simulation.space.sphericalBoundary(this, false);
+		sim.space.sphericalBoundary(this, false);
 	}
-	
 
-	
-	public static void loadParameters(Document params) throws XPathExpressionException
+	@Override
+	protected boolean proposeMove(int slot, MutableDouble3D move)
 	{
-		XPath xPath =  XPathFactory.newInstance().newXPath(); 
-		Node n;
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/speedM_Mean")
-				.evaluate(params, XPathConstants.NODE);
-		speedM_Mean = Double.parseDouble(n.getTextContent());
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/speedM_StD")
-				.evaluate(params, XPathConstants.NODE);
-		speedM_StD = Double.parseDouble(n.getTextContent());
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/speedS_Mean")
-				.evaluate(params, XPathConstants.NODE);
-		speedS_Mean = Double.parseDouble(n.getTextContent());
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/speedS_StD")
-				.evaluate(params, XPathConstants.NODE);
-		speedS_StD = Double.parseDouble(n.getTextContent());
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/speedM_Mean")
-				.evaluate(params, XPathConstants.NODE);
-		
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/pitchM_Mean")
-				.evaluate(params, XPathConstants.NODE);
-		turnParams.add(0, Double.parseDouble(n.getTextContent()));
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/pitchM_StD")
-				.evaluate(params, XPathConstants.NODE);
-		turnParams.add(1, Double.parseDouble(n.getTextContent()));
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/pitchS_Mean")
-				.evaluate(params, XPathConstants.NODE);
-		turnParams.add(2, Double.parseDouble(n.getTextContent()));
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/pitchS_StD")
-				.evaluate(params, XPathConstants.NODE);
-		turnParams.add(3, Double.parseDouble(n.getTextContent()));
-		
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/rollM_Mean")
-				.evaluate(params, XPathConstants.NODE);
-		turnParams.add(4, Double.parseDouble(n.getTextContent()));
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/rollM_StD")
-				.evaluate(params, XPathConstants.NODE);
-		turnParams.add(5, Double.parseDouble(n.getTextContent()));
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/rollS_Mean")
-				.evaluate(params, XPathConstants.NODE);
-		turnParams.add(6, Double.parseDouble(n.getTextContent()));
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/rollS_StD")
-				.evaluate(params, XPathConstants.NODE);
-		turnParams.add(7, Double.parseDouble(n.getTextContent()));
-		
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/diameter")
-				.evaluate(params, XPathConstants.NODE);
-		diameter = Double.parseDouble(n.getTextContent());
-		
-		/* set up orientation paradigm */
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/translationParadigm")
-				.evaluate(params, XPathConstants.NODE);
-		String selection = n.getTextContent();
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/orientationParadigm")
-				.evaluate(params, XPathConstants.NODE);
-		selection = n.getTextContent();
-		if (selection.equals("Brownian"))
-		{
-			translationParadigm = TranslationParadigm.BROWNIAN;
-			orientationParadigm = OrientationParadigm.BROWNIAN;
-			orientationActuator = Brownian.instance;
-			translationActuator = Brownian.instance;	
-			Brownian.loadParameters(params);
-		}
-		else if (selection.equals("BrownianMeander"))
-		{
-			translationParadigm = TranslationParadigm.BROWNIAN_MEANDER;
-			orientationParadigm = OrientationParadigm.BROWNIAN_MEANDER;
-			orientationActuator = BrownianMeander.instance;
-			translationActuator = BrownianMeander.instance;	
-		}
-		else if (selection.equals("HeterogeneousBetaMeander"))
-		{
-			translationParadigm = TranslationParadigm.HETEROGENOUS_BETA_MEANDER;
-			orientationParadigm = OrientationParadigm.HETEROGENOUS_BETA_MEANDER;
-			orientationActuator = HeterogeneousBetaMeander.instance;
-			translationActuator = HeterogeneousBetaMeander.instance;
-		}
-		else if (selection.equals("HeterogeneousCRW"))
-		{
-			translationParadigm = TranslationParadigm.HETERO_CRW;
-			orientationParadigm = OrientationParadigm.HETERO_CRW;
-			translationActuator = new HeterogeneousCRW_Translation();
-			orientationActuator = new HeterogeneousCRW_Orientation();
-		}
+		Population pop = sim.macrophages;
+			// no change in state perform random walk.
+
+		orientation = pop.orientationActuators[slot].newOrientation(orientation, this);
+		bounce();
+		pop.translationActuators[slot].move(orientation, pop.params.speedM_Mean, pop.params.speedM_StD, 
+				pop.params.speedS_Mean, pop.params.speedS_StD, move);
+		return true;
 	}
 
 	@Override
@@ -205,7 +201,7 @@ public class Macrophage extends MigratoryCell
 
 	@Override
 	public double getSpeed() {
-		return Macrophage.speedM_Mean;
+		return sim.macrophages.params.speedM_Mean;
 	}
 
 	@Override
@@ -222,7 +218,7 @@ public class Macrophage extends MigratoryCell
 
 	@Override
 	public ArrayList<Double> getTurnParams() {
-		return turnParams;
+		return sim.macrophages.turnParams;
 	}
 
 	@Override
@@ -249,33 +245,28 @@ public class Macrophage extends MigratoryCell
 		return null;
 	}
 	
+	protected MersenneTwisterFast getRandom()
+	{	return sim.macrophages.rng;	}
+	
 	public double getDiameter()
-	{ 	return diameter;	}
+	{ 	return sim.config.macrophage.diameter;	}
 	
 	public double getRadius()
-	{	return diameter / 2.0;	}
-	
-	public Double3D getCurrentLocation()
-	{	
-		if(location != null)
-			return location;
-		else
-			return Simulation.space.getCellLocation(this);
-	}
+	{	return sim.config.macrophage.getRadius();	}
 	
 	public CellLogger.Track getLogger()
 	{ 	return logger;	}
 	
 	public void removeCell()
 	{
-		Simulation.space.cellField.remove(this);
+		retire();
 	}
 	
-	public String getType()
-	{	return "Macrophage";	}
+	public int typeIndex()
+	{	return CellTypes.MACROPHAGE;	}
 
 	public int getCount() {
-		return Macrophage.cellCount;
+		return sim.macrophages.cellCount;
 	}
 
 	@Override
@@ -3,27 +3,11 @@ package core;
 
 import java.util.ArrayList;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-
-import movement.Ballistic;
-import movement.Brownian;
-import movement.BrownianMeander;
-import movement.HeterogeneousBetaMeander;
-import movement.HeterogeneousCRW_Orientation;
-import movement.HeterogeneousCRW_Translation;
-import movement.HomogeneousCRW_Orientation;
-import movement.HomogeneousCRW_Translation;
-import movement.LevyFlight;
-import movement.Orientation;
-import movement.Translation;
+import core.Compartment3D.MoveResults;
+import ec.util.MersenneTwisterFast;
 import sim.engine.Schedule;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 import utils.Quaternion;
 import utils.Utils;
 
@@ -49,6 +33,8 @@ import utils.Utils;
  */
 public abstract class MigratoryCell extends Cell
 {
+	private static final long serialVersionUID = 1L;
+
 	public enum TranslationParadigm 
 	{
 		BALLISTIC,
@@ -74,25 +60,11 @@ public abstract class MigratoryCell extends Cell
 		HETERO_CRW,
 		INDIVIDUALCORRELATED,
 	}
-	public static TranslationParadigm translationParadigm;
-	public static OrientationParadigm orientationParadigm;
-	
-	public static double speedM_Mean;
-	public static double speedM_StD;
-	public static double speedS_Mean;
-	public static double speedS_StD;
 	
-	protected String cellType;
-	
-	// These are used by concrete subclasses to provide random walk movements. 
-	protected static Translation translationActuator;
-	protected static Orientation orientationActuator;
-	
-		
 	// vector of movement resulting from knocking into other cells. Used to allow cells to slide over one another. 
-	protected Double3D bounce;
+	protected final MutableDouble3D bounce = new MutableDouble3D();
 	// Record of other cells that this cell is currently in contact with. 
-	protected ArrayList<Cell> collidedCells = new ArrayList<Cell>();	 
+	protected final ArrayList<Cell> collidedCells = new ArrayList<Cell>();	 
 		
 	/* `orientation` represents the cell's current orientation in space, compared to where it started from. This 
 	 * variable is updated every time the cell changes its orientation. Hence, it provides a conversion between space
@@ -103,6 +75,22 @@ public abstract class MigratoryCell extends Cell
 	 * 
 	 * The inverse can be used to convert coordinates relative to the cell back into absolute space. */
 	protected Quaternion orientation = Quaternion.identity();	 	
+	
+	/* The move this cell makes this time step, and whether it can make one at all. Overwritten every time step, 
+	 * rather than a new vector being made. */
+	private final MutableDouble3D move = new MutableDouble3D();
+	private boolean movable;
+	// scratch space for bounce(). Each cell has its own, as cells are planned concurrently.
+	private final MutableDouble3D facing = new MutableDouble3D();
+	
+	/* Movement planned ahead of this cell's step by the MotionPlanner, when cells are stepped in parallel: the cells 
+	 * the move could collide with, and the time step the plan was made for (NaN if none). */
+	final ArrayList<Cell> plannedCandidates = new ArrayList<Cell>();
+	private double plannedFor = Double.NaN;
+	/* Where the cell is reported to be once sphericalBoundary has moved it back towards the centre of the sphere: 
+	 * where its own move took it, as the loggers have always recorded it, until it next proposes a move. */
+	private boolean nudged = false;
+	private double movedX, movedY, movedZ;
 	public static final Double3D x_axis = new Double3D(1, 0, 0);			
 	public static final Double3D y_axis = new Double3D(0, 1, 0);
 	public static final Double3D z_axis = new Double3D(0, 0, 1);	
@@ -117,52 +105,28 @@ public abstract class MigratoryCell extends Cell
 	final static Quaternion rotUp 		= Quaternion.representRotation((90 * Math.PI/180), 0, -1, 0);
 	final static Quaternion rotDown 	= Quaternion.representRotation((90 * Math.PI/180), 0, 1, 0);
 	
-	public MigratoryCell()
-	{}
+	public MigratoryCell(Simulation sim)
+	{
+		super(sim);
+	}
 
-	public MigratoryCell(Schedule sched)
+	public MigratoryCell(Simulation sim, Schedule sched)
 	{
-		super(sched);
-		
-		bounce = new Double3D(0.0,0.0,0.0);		
+		super(sim, sched);
+		resetMotility();
+	}
+	
+	/** 
+	 * Puts the cell's motility state back to that of a newly created cell. Called on construction, and again when a
+	 * retired cell is recycled.
+	 */
+	protected final void resetMotility()
+	{
+		bounce.zero();		
+		collidedCells.clear();
+		nudged = false;
 		// assign a random orientation.		
-		orientation = Quaternion.randomUniform();		
-		
-		if (translationParadigm == TranslationParadigm.HOMO_CRW)
-			translationActuator = HomogeneousCRW_Translation.instance;
-		else if (translationParadigm == TranslationParadigm.HETERO_CRW)
-			translationActuator = new HeterogeneousCRW_Translation();
-		
-		if (orientationParadigm == OrientationParadigm.HOMO_CRW)
-			orientationActuator = HomogeneousCRW_Orientation.instance;
-		else if (orientationParadigm == OrientationParadigm.HETERO_CRW)
-			orientationActuator = new HeterogeneousCRW_Orientation();
-		else if (orientationParadigm == OrientationParadigm.LEVY_VPL)
-		{
-			LevyFlight lf = new LevyFlight();
-			orientationActuator = lf;
-			translationActuator = lf;
-		}
-		else if (orientationParadigm == OrientationParadigm.BROWNIAN)
-		{			
-			orientationActuator = Brownian.instance;
-			translationActuator = Brownian.instance;
-		}
-		else if (orientationParadigm == OrientationParadigm.BROWNIAN_MEANDER)
-		{			
-			orientationActuator = BrownianMeander.instance;
-			translationActuator = BrownianMeander.instance;
-		}
-		else if (orientationParadigm == OrientationParadigm.HETEROGENOUS_BETA_MEANDER)
-		{			
-			orientationActuator = HeterogeneousBetaMeander.instance;
-			translationActuator = HeterogeneousBetaMeander.instance;
-		}
-		else if (orientationParadigm == OrientationParadigm.BALLISTIC)
-		{
-			orientationActuator = Ballistic.instance;
-			translationActuator = Ballistic.instance;
-		}
+		orientation.setRandomUniform(getRandom());		
 	}
 	
 	/** Apply some rotation to the cell's current orientation in response to it having collided.
@@ -180,100 +144,111 @@ public abstract class MigratoryCell extends Cell
 		 * is applied around the normal of the two vectors. */
 		if (bounce.lengthSq() != 0.0)		
 		{		 				
-			Double3D facing = orientation.transform(x_axis);
+			orientation.transform(x_axis, facing);
 			// the normal is perpendicular to the plane on which bounce and facing vectors lie. 
-			Double3D normal = Utils.crossProduct(facing, bounce);		
+			double normalX = facing.y*bounce.z - facing.z*bounce.y;
+			double normalY = facing.z*bounce.x - facing.x*bounce.z;
+			double normalZ = facing.x*bounce.y - facing.y*bounce.x;
 			// this calculation takes vector direction into account. Ie, because facing points into the object that			
 			// bounce points out of, 90 <= angle <= 180 (eqivalen in radians)
-			double angle = Utils.angleBetweenVectors(facing, bounce);	// in radians.
+			double angle = Utils.angleBetweenVectors(facing.x, facing.y, facing.z, 
+					bounce.x, bounce.y, bounce.z);	// in radians.
 			// want to slide along the object, so subtract a little less than 90 degrees. 90 exactly still results in
 			// some collision, and cells grind along their obstacles more slowly. This is a balance between the two. 
 			angle -= Math.PI * 0.4;			 			
-			// rotation applied to orientation to represent the cell bouncing off a collision.
-			Quaternion bounceRot = Quaternion.representRotation(angle, normal.x, normal.y, normal.z);			
-			/* apply the rotation. Note the reverse order of mutliplication. Mutliply orientation by the bounce
-			 * rotation. This is because the bounce rotation is calculated in absolute space, rather than relative to 
-			 * the cell. The bounce resulting from collision is given in absolute space, and the cell's heading
-			 * in absolute space must be calculated before the rotation can be derived.  */ 
-			orientation = bounceRot.multiply(orientation);	 
+			/* apply the rotation representing the cell bouncing off a collision. Note the reverse order of 
+			 * mutliplication: the bounce rotation goes before orientation. This is because the bounce rotation is 
+			 * calculated in absolute space, rather than relative to the cell. The bounce resulting from collision is 
+			 * given in absolute space, and the cell's heading in absolute space must be calculated before the 
+			 * rotation can be derived.  */ 
+			orientation.preRotate(angle, normalX, normalY, normalZ);	 
 		} 		
 	}	
 	
 	public double[] eulersAngles()
 	{	return orientation.toEulerAngles();		}
 	
-	public static void loadParameters(Document params) throws XPathExpressionException
-	{	
-		XPath xPath =  XPathFactory.newInstance().newXPath(); 
-		Node n;
-		/* set up translation paradigm */
-		n = (Node) xPath.compile("/params/Movement/translationParadigm")
-				.evaluate(params, XPathConstants.NODE);
-		String selection = n.getTextContent();
-		if (selection.equals("HomogeneousCRW"))
-		{
-			translationParadigm = TranslationParadigm.HOMO_CRW;
-			HomogeneousCRW_Translation.loadParameters(params);
-		}
-		else if (selection.equals("HeterogeneousCRW"))
-		{
-			translationParadigm = TranslationParadigm.HETERO_CRW;
-		}
-		else if (selection.equals("LevyFlight"))
-		{
-			translationParadigm = TranslationParadigm.LEVY_VPL;
-			LevyFlight.loadParameters(params);			
-		}
-		else if (selection.equals("InverseHeterogeneousCRW"))
-		{ /* handled below */ }
-		else if (selection.equals("InverseHomogeneousCRW"))
-		{ /* handled below */ }
-		else if (selection.equals("Brownian"))
-		{ /* handled below */ }
-		else if (selection.equals("BrownianMeander"))
-		{ /* handled below */ }
-		else if (selection.equals("Ballistic"))
-		{ /* handled below */ }
-		else throw new RuntimeException("Must select an appropriate translation paradigm.");
-		
-		/* set up orientation paradigm */
-		n = (Node) xPath.compile("/params/Movement/orientationParadigm")
-				.evaluate(params, XPathConstants.NODE);
-		selection = n.getTextContent();
-		if (selection.equals("HomogeneousCRW"))
-		{
-			orientationParadigm = OrientationParadigm.HOMO_CRW;
-			HomogeneousCRW_Orientation.loadParameters(params);
-		}
-		else if (selection.equals("HeterogeneousCRW"))
-		{
-			orientationParadigm = OrientationParadigm.HETERO_CRW;
-		}
-		else if (selection.equals("LevyFlight"))
-		{
-			orientationParadigm = OrientationParadigm.LEVY_VPL;
-			LevyFlight.loadParameters(params);
-		}
-		else if (selection.equals("Brownian"))
+	public abstract int getCount();
+	
+	/**
+	 * Updates the cell's orientation, and writes the move it would like to make this time step into `move`, using 
+	 * the movement actuators of the given slot of its population (0 when stepped serially, worker + 1 when planned by
+	 * the MotionPlanner). Must change nothing but the cell's own state, since cells are planned concurrently. Returns 
+	 * false if the cell cannot move and should be replaced. 
+	 */
+	protected abstract boolean proposeMove(int slot, MutableDouble3D move);
+	
+	/** Called by the MotionPlanner ahead of this time step's cell steps, possibly concurrently with other cells. */
+	final MutableDouble3D plan(int slot)
+	{
+		movable = proposeMove(slot, move);
+		nudged = false;
+		plannedCandidates.clear();
+		plannedFor = sim.schedule.getTime();
+		return movable ? move : null;
+	}
+	
+	private boolean isPlanned()
+	{	return plannedFor == sim.schedule.getTime();	}
+	
+	/** 
+	 * The move this cell makes this time step: as planned if the MotionPlanner has done so, else proposed now. Null
+	 * if the cell cannot move and should be replaced. 
+	 */
+	protected final MutableDouble3D nextMove()
+	{
+		if (!isPlanned())
 		{
-			translationParadigm = TranslationParadigm.BROWNIAN;
-			orientationParadigm = OrientationParadigm.BROWNIAN;
-			Brownian.loadParameters(params);
+			movable = proposeMove(0, move);
+			nudged = false;
 		}
-		else if (selection.equals("BrownianMeander"))
+		return movable ? move : null;
+	}
+	
+	/**
+	 * Makes the move in space, avoiding collisions. When planned, only the cells found by the planner's broad phase 
+	 * (and any placed since) are considered, as these are all the move could reach. 
+	 */
+	protected final MoveResults collisionMove(MutableDouble3D move)
+	{
+		if (isPlanned())
 		{
-			translationParadigm = TranslationParadigm.BROWNIAN_MEANDER;
-			orientationParadigm = OrientationParadigm.BROWNIAN_MEANDER;
+			plannedFor = Double.NaN;
+			return sim.space.moveCellCollisionDetection(this, move, plannedCandidates);
 		}
-		else if (selection.equals("Ballistic"))
+		return sim.space.moveCellCollisionDetection(this, move);
+	}
+	
+	/** Takes up the outcome of a move: how the cell bounced, and what it collided with. */
+	protected final void moved(MoveResults mr)
+	{
+		bounce.setTo(mr.bounce);		// bounce off other cells that may have been contacted.
+		collidedCells.clear();
+		for (int i = 0; i < mr.colliders.size(); i++)
+			collidedCells.add(mr.colliders.get(i));
+	}
+	
+	/** Called by Compartment3D before moving the cell back towards the centre of the sphere from (x, y, z). */
+	final void nudging(double x, double y, double z)
+	{
+		if (!nudged)
 		{
-			translationParadigm = TranslationParadigm.BALLISTIC;
-			orientationParadigm = OrientationParadigm.BALLISTIC;
-			Ballistic.loadParameters(params);			
+			nudged = true;
+			movedX = x;
+			movedY = y;
+			movedZ = z;
 		}
-		else throw new RuntimeException("Must select an appropriate orientation paradigm.");
 	}
-
-	public abstract int getCount();
+	
+	@Override
+	public Double3D getCurrentLocation()
+	{
+		if (nudged)
+			return new Double3D(movedX, movedY, movedZ);
+		return super.getCurrentLocation();
+	}
+	
+	/** The random number stream of this cell's population. */
+	protected abstract MersenneTwisterFast getRandom();
 
 }
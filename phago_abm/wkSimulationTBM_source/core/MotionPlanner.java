@@ -0,0 +1,184 @@
+package core;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import sim.engine.SimState;
+import sim.engine.Steppable;
+import sim.util.Bag;
+import sim.util.MutableDouble3D;
+import sim.util.IntBag;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Steps cells in parallel, in two phases. Scheduled just before the cells each time step, the planner does in
+ * parallel all the work of a cell's step that depends only on the cell itself and the positions of cells at the start
+ * of the step:
+ *
+ *  1. every cell updates its orientation and proposes a move;
+ *  2. the collision detection broad phase finds, for every cell, all the cells its move could touch. Neighbours may
+ *     themselves move before the cell does, so the search is widened by the furthest any cell can travel this step.
+ *
+ * The cells are then stepped by the schedule as usual, one at a time and in the schedule's (seeded) order. Each
+ * makes its planned move, resolving collisions against its planned candidates and any cells placed since, and
+ * handles phagocytosis and respawning. Anything that changes the simulation beyond the cell itself happens here.
+ *
+ * Cells are divided into as many contiguous chunks as there are threads, and the cells of chunk w draw from the
+ * random number streams of worker w, one per cell population. Results are therefore reproducible for a given seed and
+ * number of threads, however the chunks happen to be scheduled onto threads, but differ between thread counts.
+ *
+ * The second phase, with the collision detection narrow phase, remains serial. It is about a fifth of a step with
+ * 5000 fragments, which caps the speed-up near 1 / (0.2 + 0.8 / 16) = 4 on 16 threads, however many cores there are.
+ * Resolving in parallel the moves that cannot touch one another would lift the cap, but is not done.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class MotionPlanner implements Steppable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final Simulation sim;
+	private final int workers;
+	// not checkpointed; a planner restored from a checkpoint starts a pool of its own.
+	private transient ForkJoinPool pool;
+
+	// cells being planned this time step, in chunk order.
+	private final ArrayList<MigratoryCell> cells = new ArrayList<MigratoryCell>();
+	// broad phase scratch space, one per worker.
+	private final Bag[] scratch;
+	private final IntBag[] indices;
+	// furthest distance any cell of a chunk can travel this time step.
+	private final double[] travel;
+
+	public MotionPlanner(Simulation sim, int workers)
+	{
+		this.sim = sim;
+		this.workers = workers;
+		pool = new ForkJoinPool(workers);
+		scratch = new Bag[workers];
+		indices = new IntBag[workers];
+		for (int w = 0; w < workers; w++)
+		{
+			scratch[w] = new Bag();
+			indices[w] = new IntBag();
+		}
+		travel = new double[workers];
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		pool = new ForkJoinPool(workers);
+	}
+
+	@Override
+	public void step(SimState state)
+	{
+		cells.clear();
+		cells.addAll(sim.fragments.live);
+		if (!sim.macrophages.immobile)
+			cells.addAll(sim.macrophages.live);
+		final Compartment3D space = sim.space;
+		space.startTrackingNewcomers();
+
+		// phase 1: orientations and proposed moves.
+		runChunks(new Chunk() {
+			public void run(int w, int from, int to)
+			{
+				double furthest = 0.0;
+				for (int i = from; i < to; i++)
+				{
+					MigratoryCell cell = cells.get(i);
+					MutableDouble3D move = cell.plan(w + 1);
+					if (move != null)
+						furthest = Math.max(furthest, move.length() + space.boundaryStep(cell));
+				}
+				travel[w] = furthest;
+			}
+		});
+		double furthest = 0.0;
+		for (double t : travel)
+			furthest = Math.max(furthest, t);
+		final double slack = furthest;
+
+		// phase 2: broad phase against the positions at the start of the time step.
+		runChunks(new Chunk() {
+			public void run(int w, int from, int to)
+			{
+				for (int i = from; i < to; i++)
+				{
+					MigratoryCell cell = cells.get(i);
+					MutableDouble3D move = cell.nextMove();
+					if (move != null)
+						space.gatherCandidates(cell, move, slack, scratch[w], indices[w], cell.plannedCandidates);
+				}
+			}
+		});
+	}
+
+	private interface Chunk
+	{
+		void run(int worker, int from, int to);
+	}
+
+	/** Runs `chunk` over contiguous ranges of `cells`, one per worker, and waits for all to complete. */
+	private void runChunks(final Chunk chunk)
+	{
+		final int n = cells.size();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workers);
+		for (int w = 0; w < workers; w++)
+		{
+			final int worker = w;
+			final int from = (int) ((long) n * w / workers);
+			final int to = (int) ((long) n * (w + 1) / workers);
+			tasks.add(new Callable<Void>() {
+				public Void call()
+				{
+					chunk.run(worker, from, to);
+					return null;
+				}
+			});
+		}
+		for (Future<Void> f : pool.invokeAll(tasks))
+		{
+			try
+			{
+				f.get();
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw new RuntimeException("Parallel cell planning failed: " + e.getCause(), e.getCause());
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while planning cell movement.", e);
+			}
+		}
+	}
+
+	/** Releases the worker threads. */
+	public void shutdown()
+	{	pool.shutdown();	}
+}
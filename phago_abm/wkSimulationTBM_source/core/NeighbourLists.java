@@ -0,0 +1,156 @@
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import sim.util.Bag;
+import sim.util.IntBag;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Verlet neighbour lists, used in place of querying the UniformGrid for every move when the parameters set a
+ * neighbourSkin. Cells move a fraction of a micron per time step, so the cells a mover could touch hardly change from
+ * one step to the next. Each moving cell is listed from a reference point, the place it was last listed, and its list
+ * holds the moving cells whose reference points lie within the two radii plus twice the skin of its own. Lists are
+ * symmetric: if a lists b, b lists a.
+ *
+ * While every cell lies within half the skin of its reference point, two cells' separation is at most a skin less than
+ * that of their reference points, so a move of length up to the skin can only touch listed cells. A cell that strays
+ * further is relisted from where it now is, which needs one UniformGrid query; a newly placed cell is listed the same
+ * way. Lists are thus kept valid one cell at a time, rather than all being rebuilt once any cell strays. Longer moves
+ * are given the grid's candidates instead.
+ *
+ * Immobile cells are not listed, being held by the StaticObstacles, nor are cells of types that the cell ignores.
+ *
+ * The skin trades relisting against list length. With the calibration parameters a skin of 2 microns serves best;
+ * smaller skins relist too often and larger ones list too many cells, so that by 4 microns runs are slower than with
+ * the grid alone.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class NeighbourLists implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final Cell[] NONE = new Cell[0];
+
+	// in microns.
+	private final double skin;
+	private final UniformGrid grid;
+	// for each cell type, the mask of types it does not ignore.
+	private final int[] noticed;
+	// scratch space for grid queries.
+	private final Bag scratch = new Bag();
+
+	NeighbourLists(double skin, UniformGrid grid, int[] noticed)
+	{
+		this.skin = skin;
+		this.grid = grid;
+		this.noticed = noticed;
+	}
+
+	/** Longest move the lists can serve, in microns. */
+	double range()
+	{	return skin;	}
+
+	/** Called as a moving cell is placed at (x, y, z), after it has been filed in the grid. */
+	void placed(Cell cell, double x, double y, double z)
+	{	list(cell, x, y, z);	}
+
+	/** Called after a moving cell already in the compartment, and in the grid, has moved to (x, y, z). */
+	void moved(Cell cell, double x, double y, double z)
+	{
+		double dx = x - cell.listedX;
+		double dy = y - cell.listedY;
+		double dz = z - cell.listedZ;
+		if (dx * dx + dy * dy + dz * dz > 0.25 * skin * skin)
+		{
+			unlist(cell);
+			list(cell, x, y, z);
+		}
+	}
+
+	/** Called as a moving cell is removed from the compartment. */
+	void removed(Cell cell)
+	{	unlist(cell);	}
+
+	/** Adds to `slots` the slot of every cell that a move by `cell`, of length up to range(), could touch, amongst others. */
+	void candidates(Cell cell, IntBag slots)
+	{
+		Cell[] neighbours = cell.neighbours;
+		for (int k = 0; k < cell.neighbourCount; k++)
+			slots.add(neighbours[k].slot);
+	}
+
+	/** Lists the cell, which has no list, from reference point (x, y, z). */
+	private void list(Cell cell, double x, double y, double z)
+	{
+		cell.listedX = x;
+		cell.listedY = y;
+		cell.listedZ = z;
+		// other cells lie up to half the skin from their reference points.
+		scratch.clear();
+		double reach = cell.getRadius() + grid.getMaxRadius() + 2.5 * skin;
+		grid.candidates(x, y, z, reach, noticed[cell.typeIndex()], scratch);
+		for (int i = 0; i < scratch.numObjs; i++)
+		{
+			Cell other = (Cell) scratch.objs[i];
+			if (other != cell && near(cell, other, cell.getRadius() + other.getRadius()))
+			{
+				add(cell, other);
+				add(other, cell);
+			}
+		}
+	}
+
+	/** Empties the cell's list, and removes it from the lists of its neighbours. */
+	private static void unlist(Cell cell)
+	{
+		for (int k = 0; k < cell.neighbourCount; k++)
+		{
+			Cell other = cell.neighbours[k];
+			Cell[] theirs = other.neighbours;
+			for (int j = 0; j < other.neighbourCount; j++)
+				if (theirs[j] == cell)
+				{
+					theirs[j] = theirs[--other.neighbourCount];
+					theirs[other.neighbourCount] = null;
+					break;
+				}
+			cell.neighbours[k] = null;
+		}
+		cell.neighbourCount = 0;
+	}
+
+	/** True if the reference points of a and b lie within the radii plus twice the skin of each other. */
+	private boolean near(Cell a, Cell b, double radii)
+	{
+		double dx = a.listedX - b.listedX;
+		double dy = a.listedY - b.listedY;
+		double dz = a.listedZ - b.listedZ;
+		double range = radii + 2.0 * skin;
+		return dx * dx + dy * dy + dz * dz <= range * range;
+	}
+
+	private static void add(Cell cell, Cell neighbour)
+	{
+		if (cell.neighbours == null)
+			cell.neighbours = NONE;
+		if (cell.neighbourCount == cell.neighbours.length)
+			cell.neighbours = Arrays.copyOf(cell.neighbours, Math.max(8, 2 * cell.neighbourCount));
+		cell.neighbours[cell.neighbourCount++] = neighbour;
+	}
+}
@@ -1,17 +1,24 @@
 package core;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
-import javax.xml.xpath.XPathExpressionException;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
+import sim.engine.Schedule;
 import sim.engine.SimState;
 import sim.engine.Steppable;
 import ec.util.MersenneTwisterFast;
 import filesystem.FileSystemIO;
+import loggers.CellLogger;
+import utils.RandomStreams;
 
 /**
  * This program is free software: you can redistribute it and/or modify
@@ -30,6 +37,13 @@ import filesystem.FileSystemIO;
  * 
  * This is the simulation driver, it is the top level organising entity of a simulation execution. 
  * 
+ * A run can be checkpointed every so many simulated minutes (-checkpoint), and resumed from its last checkpoint 
+ * (-resume) should it be cut short, eg. by a cluster's walltime limit. The checkpoint is the whole run serialized 
+ * through MASON's SimState checkpointing: cells, compartment, random number streams, schedule and loggers, bar their 
+ * open files and threads, which are started afresh on resuming. Output files are cut back to where they stood when the 
+ * checkpoint was taken and continued from there, so a resumed run writes exactly what it would have done had it not
+ * been interrupted.
+ * 
  * @author Mark N. Read and Wunna Kyaw
  *
  */
@@ -37,65 +51,126 @@ import filesystem.FileSystemIO;
 public abstract class Simulation extends SimState
 {
 	// java representation of the XML document holding parameters.
-	public static String parametersPath = null;
-	public static String outputPath = SimulationTBM.getDefaultOutputDir();
+	public String parametersPath = null;
+	public String outputPath = SimulationTBM.getDefaultOutputDir();
 
-	public static Document parameters = null;	
+	// not checkpointed; a resumed run reads the copy written to its output directory.
+	public transient Document parameters = null;	
+	// true if the parameters were handed over in memory rather than read from parametersPath.
+	private boolean parametersInMemory = false;
+	// typed view of `parameters`, parsed once at construction.
+	public SimulationParameters config = null;
 	
-	public static long seed = -1;	
+	// every random draw of a run derives from this seed, through the streams handed out by newStream. 
+	public long seed = -1;	
 	
-	public static MersenneTwisterFast rng = new MersenneTwisterFast();
-	public static Compartment3D space;
+	public Compartment3D space;
 		
-	public static double endTime;		// when to terminate the simulation. 
-	public static double timeSlice;  		// duration covered by a stimulation time-step. In minutes.
+	public double endTime;		// when to terminate the simulation. 
+	public double timeSlice;  		// duration covered by a stimulation time-step. In minutes.
 	// times at which simulation state is sampled and recorded. Should match in vivo work.
-	public static double sampleTimeSlice = 0.5; 
+	public double sampleTimeSlice = 0.5; 
 	// how many iterations the simulation has been through. Starts at 1 to be consistent with IMARIS. 
 	public long timeIter = 1;
-	public static boolean position_macs_randomly;
+	public boolean position_macs_randomly;
  
-	public static boolean trackCells = true;
-	public static boolean trackPositions;
+	// number of threads cells are stepped on. Above one, the MotionPlanner prepares cell moves in parallel. 
+	public int threads = 1;
+	private MotionPlanner planner = null;
+	
+	// which output files are written, and so which loggers are run. 
+	public SimulationParameters.OutputPlan output;
+
+	// simulated minutes between checkpoints, 0 for none; and the simulated time of the next. 
+	public double checkpointInterval = 0.0;
+	private double nextCheckpoint = Double.POSITIVE_INFINITY;
+	// name of the checkpoint file, written to the output directory. 
+	public static final String checkpointFile = "checkpoint.gz";
 
 	
 	// cells reside outside the imaging volume, and enter it. Hence, simulation can be set up with cells
 	// occupying this space (buffer), at similar density to those in the imaging volume (at launch time). This parameter
 	// specifies the size of the buffer as a proportion of the imaging volume's size in each dimension. Hence, a value
 	// of 0.0 has no buffer; a value of 1.0 has an entire imaging volume's worth of buffer in each dimension.  	
-	public static double bufferSize = 0.0;	// must be >= 0.0. 
+	public double bufferSize = 0.0;	// must be >= 0.0. 
  				
 					// in micrometers.
-	public static int tissueRadius = 81;
-	public static int tissueWidth = 2*Simulation.tissueRadius;						// in micrometers.	
-	public static int tissueHeight = 2*Simulation.tissueRadius;  	// in micrometers.
-	public static int tissueDepth = 2*Simulation.tissueRadius;	
+	public int tissueRadius = 81;
+	public int tissueWidth = 2*tissueRadius;						// in micrometers.	
+	public int tissueHeight = 2*tissueRadius;  	// in micrometers.
+	public int tissueDepth = 2*tissueRadius;	
 
-	public static double volumeSimulated;		// total volume, including imaging volume and buffer zone. 
-	public static double volumeImaged;			// volume of the imaging volume. 
+	public double volumeSimulated;		// total volume, including imaging volume and buffer zone. 
+	public double volumeImaged;			// volume of the imaging volume. 
 	
-	// will only have one simulation running at a time, so this instance can be used by other classes. 
-	public static Simulation instance;
-	public static int phagoCount;
-	public static int numFrags;
+	public int phagoCount;
+	public int numFrags;
 
+	// state shared by all cells of a type within this run. Rebuilt every time the simulation is started. 
+	public Fragment.Population fragments;
+	public Macrophage.Population macrophages;
+	public CellLogger cellLogger = null; 
+	
+	// source of cell IDs, unique within this run.
+	private int cellIDCounter = 0;
 
 	
 	// ordering for simulation components added to the schedule. 
 	public static final int blastOrdering = 0;			// laser blast happens before everything else. 
 	public static final int compartmentOrdering = 1;	// compartments are always stepped before cells.
-	public static final int cellOrdering = 2;			// the order for cells to be stepped by the schedule.
-	public static final int loggerOrdering = 3;			// logger stepping order, comes after cells.  
+	public static final int planOrdering = 2;			// parallel planning of cell moves, just before the cells.
+	public static final int cellOrdering = 3;			// the order for cells to be stepped by the schedule.
+	public static final int loggerOrdering = 4;			// logger stepping order, comes after cells.  
 	public static final int timeIterOrdering = 10;		// increments the iteration count of simulation time steps. 
 	
-	public Simulation()
+	/**
+	 * Command line options for a single simulation run. Defaults apply to anything not supplied. 
+	 */
+	public static class Arguments
 	{
-		super(seed);
-		instance = this;			
+		public String parametersPath = null;		// null indicates the simulation's default parameters file.
+		public String outputPath = SimulationTBM.getDefaultOutputDir();
+		public long seed = System.currentTimeMillis();
+		public double endTime = Double.NaN;			// NaN indicates the end time in the parameters file is used.
+		public int threads = 1;						// threads to step cells on. 
+		public double checkpointInterval = 0.0;		// simulated minutes between checkpoints, 0 for none.
+		public String resumePath = null;			// checkpoint to resume, null to start a new run.
+		// parameters already held in memory, eg. edited by a parameter sweep. Used in place of reading 
+		// parametersPath when supplied. 
+		public Document parameters = null;
+	}
+	
+	public Simulation(Arguments args)
+	{
+		super(args.seed);
+		seed = args.seed;
+		threads = args.threads;
+		if (threads < 1)
+			throw new RuntimeException("The number of threads must be at least 1, not " + threads);
+		parametersPath = args.parametersPath;
+		outputPath = args.outputPath;
 		if(parametersPath == null)
 			// means this has not been set by user. 
 			parametersPath = getDefaulParametersPath();
-		parameters = FileSystemIO.openXMLFile(parametersPath);
+		parametersInMemory = args.parameters != null;
+		if (parametersInMemory)
+			parameters = args.parameters;
+		else
+			parameters = FileSystemIO.openXMLFile(parametersPath);
+		config = SimulationParameters.parse(parameters);
+		loadParameters(config);
+		if (config.neighbourSkin > 0.0 && threads > 1)
+			throw new RuntimeException("Neighbour lists serve runs on one thread, set neighbourSkin to 0");
+		if (!Double.isNaN(args.endTime))
+			endTime = args.endTime;
+		setCheckpointInterval(args.checkpointInterval);
+	}
+	
+	private void setCheckpointInterval(double interval)
+	{
+		if (!(interval >= 0.0))
+			throw new RuntimeException("The checkpoint interval must not be negative, not " + interval);
+		checkpointInterval = interval;
 	}
 	
 	public abstract String getDefaulParametersPath();
@@ -105,13 +180,37 @@ public abstract class Simulation extends SimState
 	 * Subclasses can override this if a different compartment is needed. 
 	 */
 	public Compartment3D initializeCompartment()
-	{	return new Compartment3D();	}
+	{	return new Compartment3D(this);	}
+	
+	/** 
+	 * Returns a new random number stream for the named component of this run (eg. "placement"). Each component 
+	 * draws only from its own stream, so a run is reproduced exactly from its seed, and the draws of one component 
+	 * are not shifted by changes to another. 
+	 */
+	public MersenneTwisterFast newStream(String component)
+	{	return RandomStreams.stream(seed, component);	}
+	
+	/** Keeps the full 64 bit seed alongside MASON's, eg. when the GUI console sets the seed of the next run. */
+	@Override
+	public void setSeed(long seed)
+	{
+		super.setSeed(seed);
+		this.seed = seed;
+	}
+	
+	/** Returns a new cell ID, unique within this simulation run. */
+	public int nextCellID()
+	{	return cellIDCounter++;	}
 	
 	/** Sets up the simulation. */
 	public void start()
 	{
+		setSeed(seed);		// restarting replays the same run; the schedule shuffles cells with `random`. 
 		super.start();		
-		Simulation.setupSimulationParameters();
+		timeIter = 1;
+		cellIDCounter = 0;
+		nextCheckpoint = checkpointInterval > 0.0 ? checkpointInterval : Double.POSITIVE_INFINITY;
+		setupSimulationParameters();
 		
 		// ensure the experimental directory has been set up. 
 		File dir = new File(outputPath);
@@ -121,7 +220,14 @@ public abstract class Simulation extends SimState
 			boolean result = dir.mkdirs();			
 			if (!result)	System.out.println("ERROR: could not create directory " + outputPath);
 		}
-		FileSystemIO.copyFile(parametersPath, outputPath + "/parameters.xml");
+		if (parametersInMemory)
+		{
+			// record exactly the parameters this run used. 
+			new File(outputPath + "/parameters.xml").delete();
+			FileSystemIO.writeXMLFile(parameters, outputPath, "parameters.xml");
+		}
+		else
+			FileSystemIO.copyFile(parametersPath, outputPath + "/parameters.xml");
 
 		// Anonymouse inner class to increment the time iteration count. 
 		Steppable tih = new Steppable() {
@@ -131,7 +237,7 @@ public abstract class Simulation extends SimState
 				((Simulation)state).timeIter ++;
 			}
 		};
-		schedule.scheduleRepeating(schedule.EPOCH, timeIterOrdering, tih, sampleTimeSlice);
+		schedule.scheduleRepeating(Schedule.EPOCH, timeIterOrdering, tih, sampleTimeSlice);
 		
 		// calculate the total number of neutrophils required, based on the size of the buffer zone, and density of 
 		// neutrophils in the imaging volume. 
@@ -143,72 +249,57 @@ public abstract class Simulation extends SimState
 		
 		space = initializeCompartment();		
 		System.out.println("3D Compartment initialized with dimensions = " + tissueWidth + " by " + tissueHeight + " by " +  tissueDepth);
-		schedule.scheduleRepeating(schedule.EPOCH, Simulation.compartmentOrdering, space, timeSlice);
+		schedule.scheduleRepeating(Schedule.EPOCH, Simulation.compartmentOrdering, space, timeSlice);
 		
 		populateCellsInSphere(position_macs_randomly);
+		if (planner != null)
+			planner.shutdown();
+		planner = null;
+		if (threads > 1)
+		{
+			planner = new MotionPlanner(this, threads);
+			schedule.scheduleRepeating(Schedule.EPOCH, planOrdering, planner, timeSlice);
+		}
 		timeIter += 1;		// must increment this too, else two records for iteration 1 are generated. 
 	}
 	
     /**
-     * Loads the parameters.xml config file and loads the default parameters for all classes in the simulation. Should be the first thing that is done when
-     * running the simulation, with GUI or without. Abstract classes must be called before concrete classes. 
+     * Sets up the per-run state of each cell type from the parameters.xml file. Called every time the simulation is 
+     * started, with GUI or without, so that nothing carries over from a previous run. 
      *
      */
-    public static void setupSimulationParameters()
+    public void setupSimulationParameters()
     {
-    	try
-    	{
-    		/* read in the default parameters for the various classes in the simulation */
-            loadParameters(parameters);
-            // MigratoryCell.loadParameters(parameters); // Fragments and Macs have different motility parameters.
-            Fragment.loadParameters(parameters);
-            Macrophage.loadParameters(parameters);
-
-
-    	}
-    	catch(XPathExpressionException e) 
-    	{
-			System.out.println("ERROR reading in parameters: " + e.toString());
-		}
+        fragments = new Fragment.Population(this, config.fragment);
+        macrophages = new Macrophage.Population(this, config.macrophage);
     }
     
     /**
-     * Given the parameters.xml file (represented as a 'Document') this method loads the relevant default values for the top level simulation.
+     * Given the parsed parameters.xml file this method loads the relevant default values for the top level simulation.
      * @param params
      */
-	private static void loadParameters(Document params)
+	private void loadParameters(SimulationParameters params)
 	{
-		System.out.println("params = " + params);
-		Element pE = (Element) params.getElementsByTagName("Simulation").item(0);			// collect those items under 'Simulation'
-									
-		tissueWidth = Integer.parseInt(pE.getElementsByTagName("tissueWidth").item(0).getTextContent());
+		tissueWidth = params.tissueWidth;
 		tissueHeight = tissueWidth;
-		tissueDepth = Integer.parseInt(pE.getElementsByTagName("tissueDepth").item(0).getTextContent());
+		tissueDepth = params.tissueDepth;
 				
-		bufferSize = Double.parseDouble(pE.getElementsByTagName("bufferSize").item(0).getTextContent());
-		position_macs_randomly = Boolean.parseBoolean(pE.getElementsByTagName("position_macs_randomly").item(0).getTextContent());
-		trackPositions = Boolean.parseBoolean(pE.getElementsByTagName("trackPositions").item(0).getTextContent());
-
+		bufferSize = params.bufferSize;
+		position_macs_randomly = params.positionMacsRandomly;
+		output = params.output;
 
-		endTime = Double.parseDouble(pE.getElementsByTagName("endTime").item(0).getTextContent());
-		timeSlice = Double.parseDouble(pE.getElementsByTagName("timeSlice").item(0).getTextContent());
+		endTime = params.endTime;
+		timeSlice = params.timeSlice;
 		
-		Element bE = (Element) pE.getElementsByTagName("Fragment").item(0);
-		numFrags = Integer.parseInt(bE.getElementsByTagName("numFrags").item(0).getTextContent());
-		
-		sampleTimeSlice = timeSlice;	// default case.
-		NodeList nl = pE.getElementsByTagName("sampleTimeSlice");
-		if(nl.getLength() > 0)
-		{
-			sampleTimeSlice = Double.parseDouble(nl.item(0).getTextContent());
-		}
+		numFrags = params.fragment.count;
 		
+		sampleTimeSlice = params.sampleTimeSlice;
 	}	
 	
 	/** Read command line arguments */
-	public static void readArgs(String[] args)
+	public static Arguments readArgs(String[] args)
 	{
-		seed = -1;
+		Arguments a = new Arguments();
 		int i = 0;		
 		while (i < args.length)
 		{
@@ -216,44 +307,166 @@ public abstract class Simulation extends SimState
 			if (command.equals("-e"))		// the end time, as a double. If not supplied here, should be supplied
 			{								// with the parameter file. 
 				i++;	
-				endTime = Double.parseDouble(args[i]);
+				a.endTime = Double.parseDouble(args[i]);
 			}
 			else if (command.equals("-p"))	// location of the parameters file. 
 			{
 				i++;
-				parametersPath = args[i];
+				a.parametersPath = args[i];
 			}
 			else if (command.equals("-o")) 	// where the simulation output files are to be written. 
 			{
 				i++; 
-				outputPath = args[i];
+				a.outputPath = args[i];
 			}
 			else if (command.equals("-s"))	// seed
 			{
 				i++;
-				seed = Long.parseLong(args[i]);
+				a.seed = Long.parseLong(args[i]);
+			}
+			else if (command.equals("-t"))	// threads to step cells on. Above 1, neighbourSkin must be 0, as 
+			{								// neighbour lists serve runs on one thread only. 
+				i++;
+				a.threads = Integer.parseInt(args[i]);
+			}
+			else if (command.equals("-checkpoint"))	// simulated minutes between checkpoints. 
+			{
+				i++;
+				a.checkpointInterval = Double.parseDouble(args[i]);
+			}
+			else if (command.equals("-resume"))	// checkpoint file to resume the run from. 
+			{
+				i++;
+				a.resumePath = args[i];
 			}
 			i++;
 		}
-		if (seed == -1)
-			seed = System.currentTimeMillis();	
+		return a;
+	}
+	
+	@Override
+	public void finish()
+	{
+		super.finish();
+		if (planner != null)
+			planner.shutdown();
+		planner = null;
+	}
+	
+	@Override
+	public void preCheckpoint()
+	{
+		super.preCheckpoint();
+		if (cellLogger != null)
+			cellLogger.preCheckpoint();
+	}
+	
+	@Override
+	public void awakeFromCheckpoint()
+	{
+		super.awakeFromCheckpoint();
+		parameters = FileSystemIO.openXMLFile(outputPath + "/parameters.xml");
+		if (cellLogger != null)
+			cellLogger.awakeFromCheckpoint();
+	}
+	
+	/** 
+	 * Writes the state of the run to the checkpoint file in its output directory. The file is replaced only once the 
+	 * new checkpoint is complete, so a run killed while checkpointing can still resume from the previous one. 
+	 */
+	public void checkpoint()
+	{
+		File file = new File(outputPath, checkpointFile);
+		File partial = new File(outputPath, checkpointFile + ".partial");
+		try
+		{
+			OutputStream out = new FileOutputStream(partial);
+			try
+			{
+				writeToCheckpoint(out);
+			}
+			finally
+			{
+				out.close();
+			}
+			Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, 
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException("Could not write checkpoint " + file + ": " + ex.toString(), ex);
+		}
 	}
 	
-	/** Sets up and then executes the simulation. This is the primary driver loop. */
+	/** 
+	 * Restores a run from the checkpoint named by args.resumePath. The end time and checkpoint interval are taken 
+	 * from args where given there, the rest from the checkpoint. 
+	 */
+	public static Simulation resume(Arguments args)
+	{
+		Simulation state;
+		try
+		{
+			InputStream in = new FileInputStream(args.resumePath);
+			try
+			{
+				state = (Simulation) readFromCheckpoint(in);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch (IOException | ClassNotFoundException | ClassCastException ex)
+		{
+			throw new RuntimeException("Could not resume from checkpoint " + args.resumePath + ": " + ex.toString(), ex);
+		}
+		if (!Double.isNaN(args.endTime))
+			state.endTime = args.endTime;
+		if (args.checkpointInterval > 0.0)
+		{
+			state.setCheckpointInterval(args.checkpointInterval);
+			state.nextCheckpoint = state.schedule.getTime() + args.checkpointInterval;
+		}
+		System.out.println("Resuming the run in " + state.outputPath + " at simulated time " + state.schedule.getTime());
+		return state;
+	}
+	
+	/** 
+	 * Sets up and then executes the simulation. This is the primary driver loop. Returns once the simulation has 
+	 * finished, so that several simulations can be executed within the same JVM, one after another or concurrently.
+	 */
 	public static void execute(Simulation state)
 	{
 		state.start();
-		// this is the main driver loop. 
-		do 
+		proceed(state);
+	}
+	
+	/** Executes a simulation that has been set up, or resumed from a checkpoint, to its end. */
+	public static void proceed(Simulation state)
+	{
+		// this is the main driver loop. Output written so far is kept if the simulation fails part way. 
+		try
 		{
-			//System.out.println("simulated time = " + state.schedule.getTime());
-			if (!state.schedule.step(state))
-				break;
-			//if  (BCell.getRemovedCount() >= numBCells) 
-			//	break;
-		} while(state.schedule.getTime() < endTime);
-		state.finish();
-		
-		System.exit(0); 
+			while (state.schedule.getTime() < state.endTime) 
+			{
+				//System.out.println("simulated time = " + state.schedule.getTime());
+				if (!state.schedule.step(state))
+					break;
+				//if  (BCell.getRemovedCount() >= numBCells) 
+				//	break;
+				// checkpoints are taken between time steps, when no cell is part way through moving. 
+				if (state.schedule.getTime() >= state.nextCheckpoint && state.schedule.getTime() < state.endTime)
+				{
+					state.checkpoint();
+					while (state.nextCheckpoint <= state.schedule.getTime())
+						state.nextCheckpoint += state.checkpointInterval;
+				}
+			}
+		}
+		finally
+		{
+			state.finish();
+		}
 	}
 }
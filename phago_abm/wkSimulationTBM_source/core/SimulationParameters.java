@@ -0,0 +1,367 @@
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import filesystem.FileSystemIO;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Typed, immutable view of the /params/Simulation section of a parameters.xml file. The file is parsed once, when the
+ * simulation is set up, and cells read their parameters from here rather than from the XML document. Missing keys
+ * and values outside of their valid range are reported immediately, rather than surfacing as a NullPointerException
+ * part way through a run.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public final class SimulationParameters implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	public final double endTime;			// minutes.
+	public final double timeSlice;			// minutes.
+	public final double sampleTimeSlice;	// minutes.
+	public final int tissueWidth;			// micrometers.
+	public final int tissueDepth;			// micrometers.
+	public final double bufferSize;
+	public final boolean positionMacsRandomly;
+	// above zero, collision detection uses Verlet neighbour lists with this skin, in microns; see NeighbourLists.
+	public final double neighbourSkin;
+	public final OutputPlan output;
+	public final Interactions interactions;
+
+	public final CellParameters fragment;
+	public final CellParameters macrophage;
+	// standard deviation of the Brownian movement paradigm's speed, found under /params/Movement/Brownian/. Microns
+	// per minute; NaN if not supplied, in which case no cell type may move by the Brownian paradigm.
+	public final double brownianSpeedStD;
+
+	/**
+	 * The output files a run writes, and hence the loggers it needs. Cells are only tracked individually when their 
+	 * positions or motility are written; counts are logged once per cell type. Found under /params/Simulation/.
+	 */
+	public static final class OutputPlan implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		public final boolean positions;			// _Position.csv, from trackPositions.
+		// positions are written to _Position.traj in the binary trajectory format, not as CSV, if positionFormat is
+		// "binary" rather than "csv" (the default).
+		public final boolean binaryPositions;
+		public final boolean counts;			// CellTypeCount.csv, from trackCounts. Defaults to true.
+		public final boolean removedCounts;		// removeCount.csv, from trackRemovedCounts. Defaults to true.
+		public final boolean summary;			// summary.csv, from trackSummary. Defaults to true.
+		public final boolean motility;			// motility.csv, from trackMotility. Defaults to false.
+
+		public OutputPlan(boolean positions, boolean binaryPositions, boolean counts, boolean removedCounts, 
+				boolean summary, boolean motility)
+		{
+			this.positions = positions;
+			this.binaryPositions = binaryPositions;
+			this.counts = counts;
+			this.removedCounts = removedCounts;
+			this.summary = summary;
+			this.motility = motility;
+		}
+
+		/** True if the run writes any output beyond its parameters. */
+		public boolean any()
+		{	return positions || counts || removedCounts || summary || motility;	}
+
+		/** True if cells are tracked individually. */
+		public boolean tracks()
+		{	return positions || motility;	}
+
+		/** True if cell counts, of either kind, are logged. The run summary includes both. */
+		public boolean anyCounts()
+		{	return counts || removedCounts || summary;	}
+	}
+
+	/**
+	 * How each pair of cell types interact on meeting, found under /params/Simulation/interactions/ as an element per 
+	 * pair named for it, eg. Fragment-Macrophage. Pairs are unordered, and those not given are full:
+	 * 
+	 *  - full: a moving cell stops on touching the other, and is told of the contact;
+	 *  - capture: the moving cell is told of the contact, but does not stop. Fragments are phagocytosed on touching a 
+	 *    macrophage either way;
+	 *  - ignore: the cells pass through one another unnoticed. Collision detection skips the pair entirely.
+	 */
+	public static final class Interactions implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		public enum Interaction { FULL, CAPTURE, IGNORE }
+
+		private final Interaction[][] matrix = new Interaction[CellTypes.COUNT][CellTypes.COUNT];
+
+		private Interactions(XPath xPath, Document doc) throws XPathExpressionException
+		{
+			String base = "/params/Simulation/interactions/";
+			for (int a = 0; a < CellTypes.COUNT; a++)
+				for (int b = a; b < CellTypes.COUNT; b++)
+				{
+					// either order names the pair.
+					String name = CellTypes.name(a) + "-" + CellTypes.name(b);
+					String value = optionalString(xPath, doc, base + name, null);
+					if (value == null)
+					{
+						name = CellTypes.name(b) + "-" + CellTypes.name(a);
+						value = optionalString(xPath, doc, base + name, "full");
+					}
+					check(value.equals("full") || value.equals("capture") || value.equals("ignore"), 
+							base + name + " must be full, capture or ignore");
+					matrix[a][b] = matrix[b][a] = Interaction.valueOf(value.toUpperCase());
+				}
+		}
+
+		/** How cells of the two types, given by code, interact. */
+		public Interaction between(int a, int b)
+		{	return matrix[a][b];	}
+
+		/** Bit mask of the types, by code, that cells of type `a` do not ignore. */
+		public int noticedBy(int a)
+		{
+			int mask = 0;
+			for (int b = 0; b < CellTypes.COUNT; b++)
+				if (matrix[a][b] != Interaction.IGNORE)
+					mask |= 1 << b;
+			return mask;
+		}
+	}
+
+	/**
+	 * Parameters of a single cell type, found under /params/Simulation/[cell type].
+	 */
+	public static final class CellParameters implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		public final String translationParadigm;
+		public final String orientationParadigm;
+		public final int count;					// number of cells of this type in the simulation.
+		public final double diameter;			// microns.
+
+		public final double speedM_Mean;
+		public final double speedM_StD;
+		public final double speedS_Mean;
+		public final double speedS_StD;
+
+		public final double meanderMean;
+		public final double meanderStD;
+
+		// turn parameters, ordered pitchM_Mean, pitchM_StD, pitchS_Mean, pitchS_StD, rollM_Mean, rollM_StD,
+		// rollS_Mean, rollS_StD.
+		private final double[] turnParams;
+
+		// parameters of the beta distribution of turn rates. NaN if not supplied.
+		public final double betaDistr_alpha;
+		public final double betaDistr_beta;
+		public final double betaDistr_scaleFactor;
+
+		private CellParameters(XPath xPath, Document doc, String type, String countKey) throws XPathExpressionException
+		{
+			String base = "/params/Simulation/" + type + "/";
+			translationParadigm = required(xPath, doc, base + "translationParadigm");
+			orientationParadigm = required(xPath, doc, base + "orientationParadigm");
+			count = parseInt(xPath, doc, base + countKey);
+			diameter = parseDouble(xPath, doc, base + "diameter");
+
+			speedM_Mean = parseDouble(xPath, doc, base + "speedM_Mean");
+			speedM_StD = parseDouble(xPath, doc, base + "speedM_StD");
+			speedS_Mean = parseDouble(xPath, doc, base + "speedS_Mean");
+			speedS_StD = parseDouble(xPath, doc, base + "speedS_StD");
+
+			meanderMean = optionalDouble(xPath, doc, base + "meanderMean", 0.0);
+			meanderStD = optionalDouble(xPath, doc, base + "meanderStD", 0.0);
+
+			String[] turnKeys = {"pitchM_Mean", "pitchM_StD", "pitchS_Mean", "pitchS_StD",
+					"rollM_Mean", "rollM_StD", "rollS_Mean", "rollS_StD"};
+			turnParams = new double[turnKeys.length];
+			for (int i = 0; i < turnKeys.length; i++)
+				turnParams[i] = parseDouble(xPath, doc, base + turnKeys[i]);
+
+			boolean betaRequired = orientationParadigm.equals("HeterogeneousBetaMeander");
+			betaDistr_alpha = betaRequired ? parseDouble(xPath, doc, base + "betaDistr_alpha")
+					: optionalDouble(xPath, doc, base + "betaDistr_alpha", Double.NaN);
+			betaDistr_beta = betaRequired ? parseDouble(xPath, doc, base + "betaDistr_beta")
+					: optionalDouble(xPath, doc, base + "betaDistr_beta", Double.NaN);
+			betaDistr_scaleFactor = betaRequired ? parseDouble(xPath, doc, base + "betaDistr_scaleFactor")
+					: optionalDouble(xPath, doc, base + "betaDistr_scaleFactor", Double.NaN);
+
+			check(count >= 0, base + countKey + " must not be negative");
+			check(diameter > 0.0, base + "diameter must be positive");
+			check(meanderStD >= 0.0, base + "meanderStD must not be negative");
+			if (betaRequired)
+			{
+				check(betaDistr_alpha > 0.0, base + "betaDistr_alpha must be positive");
+				check(betaDistr_beta > 0.0, base + "betaDistr_beta must be positive");
+			}
+		}
+
+		public double getRadius()
+		{	return diameter / 2.0;	}
+
+		/** Returns the turn parameters as a new list, in the order expected by the turn based movement actuators. */
+		public ArrayList<Double> getTurnParams()
+		{
+			ArrayList<Double> list = new ArrayList<Double>(turnParams.length);
+			for (double d : turnParams)
+				list.add(d);
+			return list;
+		}
+
+		/** Returns the beta distribution parameters as a new list: alpha, beta, scale factor. */
+		public ArrayList<Double> getBetaDistrParams()
+		{
+			ArrayList<Double> list = new ArrayList<Double>(3);
+			list.add(betaDistr_alpha);
+			list.add(betaDistr_beta);
+			list.add(betaDistr_scaleFactor);
+			return list;
+		}
+	}
+
+	private SimulationParameters(Document doc) throws XPathExpressionException
+	{
+		XPath xPath = XPathFactory.newInstance().newXPath();
+		String base = "/params/Simulation/";
+		endTime = parseDouble(xPath, doc, base + "endTime");
+		timeSlice = parseDouble(xPath, doc, base + "timeSlice");
+		sampleTimeSlice = optionalDouble(xPath, doc, base + "sampleTimeSlice", timeSlice);
+		tissueWidth = parseInt(xPath, doc, base + "tissueWidth");
+		tissueDepth = parseInt(xPath, doc, base + "tissueDepth");
+		bufferSize = parseDouble(xPath, doc, base + "bufferSize");
+		positionMacsRandomly = Boolean.parseBoolean(required(xPath, doc, base + "position_macs_randomly"));
+		neighbourSkin = optionalDouble(xPath, doc, base + "neighbourSkin", 0.0);
+		check(neighbourSkin >= 0.0, base + "neighbourSkin must not be negative");
+		String positionFormat = optionalString(xPath, doc, base + "positionFormat", "csv");
+		check(positionFormat.equals("csv") || positionFormat.equals("binary"), 
+				base + "positionFormat must be csv or binary");
+		output = new OutputPlan(Boolean.parseBoolean(required(xPath, doc, base + "trackPositions")),
+				positionFormat.equals("binary"),
+				optionalBoolean(xPath, doc, base + "trackCounts", true),
+				optionalBoolean(xPath, doc, base + "trackRemovedCounts", true),
+				optionalBoolean(xPath, doc, base + "trackSummary", true),
+				optionalBoolean(xPath, doc, base + "trackMotility", false));
+		interactions = new Interactions(xPath, doc);
+
+		check(timeSlice > 0.0, base + "timeSlice must be positive");
+		check(sampleTimeSlice > 0.0, base + "sampleTimeSlice must be positive");
+		check(tissueWidth > 0 && tissueDepth > 0, base + "tissueWidth and tissueDepth must be positive");
+		check(bufferSize >= 0.0, base + "bufferSize must not be negative");
+
+		fragment = new CellParameters(xPath, doc, "Fragment", "numFrags");
+		macrophage = new CellParameters(xPath, doc, "Macrophage", "numMacs");
+
+		brownianSpeedStD = optionalDouble(xPath, doc, "/params/Movement/Brownian/speedStD", Double.NaN);
+		if (fragment.orientationParadigm.equals("Brownian") || macrophage.orientationParadigm.equals("Brownian"))
+			check(brownianSpeedStD >= 0.0, "/params/Movement/Brownian/speedStD must be supplied, and not negative");
+	}
+
+	/** Parses an already loaded parameters document. */
+	public static SimulationParameters parse(Document doc)
+	{
+		if (doc == null)
+			throw new RuntimeException("No parameters document supplied.");
+		try
+		{
+			return new SimulationParameters(doc);
+		}
+		catch (XPathExpressionException e)
+		{
+			throw new RuntimeException("ERROR reading in parameters: " + e.toString(), e);
+		}
+	}
+
+	/** Loads and parses the parameters file at the given path. */
+	public static SimulationParameters load(String path)
+	{	return parse(FileSystemIO.openXMLFile(path));	}
+
+	private static String required(XPath xPath, Document doc, String path) throws XPathExpressionException
+	{
+		Node n = (Node) xPath.compile(path).evaluate(doc, XPathConstants.NODE);
+		if (n == null)
+			throw new RuntimeException("Missing required parameter " + path);
+		return n.getTextContent().trim();
+	}
+
+	private static double parseDouble(XPath xPath, Document doc, String path) throws XPathExpressionException
+	{
+		String value = required(xPath, doc, path);
+		try
+		{
+			return Double.parseDouble(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new RuntimeException("Parameter " + path + " is not a number: " + value);
+		}
+	}
+
+	private static int parseInt(XPath xPath, Document doc, String path) throws XPathExpressionException
+	{
+		String value = required(xPath, doc, path);
+		try
+		{
+			return Integer.parseInt(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new RuntimeException("Parameter " + path + " is not an integer: " + value);
+		}
+	}
+
+	private static double optionalDouble(XPath xPath, Document doc, String path, double fallback)
+			throws XPathExpressionException
+	{
+		Node n = (Node) xPath.compile(path).evaluate(doc, XPathConstants.NODE);
+		if (n == null)
+			return fallback;
+		return parseDouble(xPath, doc, path);
+	}
+
+	private static String optionalString(XPath xPath, Document doc, String path, String fallback)
+			throws XPathExpressionException
+	{
+		Node n = (Node) xPath.compile(path).evaluate(doc, XPathConstants.NODE);
+		if (n == null)
+			return fallback;
+		return n.getTextContent().trim();
+	}
+
+	private static boolean optionalBoolean(XPath xPath, Document doc, String path, boolean fallback)
+			throws XPathExpressionException
+	{
+		Node n = (Node) xPath.compile(path).evaluate(doc, XPathConstants.NODE);
+		if (n == null)
+			return fallback;
+		return Boolean.parseBoolean(n.getTextContent().trim());
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if (!condition)
+			throw new RuntimeException("Invalid parameter: " + message);
+	}
+}
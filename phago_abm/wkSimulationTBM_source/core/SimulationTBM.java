@@ -2,20 +2,13 @@ package core;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
-
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
 import filesystem.FileSystemIO;
 import loggers.CellLogger;
 import loggers.TimeLogger;
+import ec.util.MersenneTwisterFast;
 import sim.engine.SimState;
 import sim.util.Double3D;
 
@@ -39,6 +32,8 @@ import sim.util.Double3D;
 */
 public class SimulationTBM extends Simulation
 {
+	private static final long serialVersionUID = 1L;
+
 	public static String defaultParametersPath = "calibration-parameters.xml";
 	
 	
@@ -50,43 +45,47 @@ public class SimulationTBM extends Simulation
 	final static File randomMacDir = new File("macInitPos_random");
 	
 	
-	File[] macFiles = initMacDir.listFiles();
-	File[] macFiles_random = randomMacDir.listFiles();
+	// sorted, because the order of a directory listing is platform dependent and a file is picked at random. 
+	File[] macFiles = sortedFiles(initMacDir);
+	File[] macFiles_random = sortedFiles(randomMacDir);
 
-	Random rand = new Random();
-	File initMacPositionFile = macFiles[rand.nextInt(macFiles.length)]; 
-	File randMacPositionFile = macFiles_random[rand.nextInt(macFiles_random.length)]; 
+	// chosen from their own stream each time the simulation is started.
+	File initMacPositionFile; 
+	File randMacPositionFile; 
 
 	
-	public static ArrayList<Fragment> fragsln = new ArrayList<Fragment>();	
+	public ArrayList<Macrophage> macs = new ArrayList<Macrophage>();	
 
-	public static ArrayList<Macrophage> macs = new ArrayList<Macrophage>();	
-
-	public static CellLogger cellLogger = null; 
 	public CellLogger.CellType fragCountLogger;
 	public CellLogger.CellType macCountLogger; 
 	
-	public static int numFrags = 100;	//number of Frags in the imaging volume.
-	public static int numMacs = 18; // number of macs in the imaging volume.
-	public static int totalFrags; 			// calculated at launch. Includes cells outside the imaging volume, which is much larger than the imaging volume and can be approximated to be boundless.
-	public static int totalMacs;
+	public int numMacs = 18; // number of macs in the imaging volume.
+	public int totalFrags; 			// calculated at launch. Includes cells outside the imaging volume, which is much larger than the imaging volume and can be approximated to be boundless.
+	public int totalMacs;
 	
 
 	public SimulationTBM()
 	{	
-		super();		
-		try{
-			SimulationTBM.loadParameters(parameters);			
-		}
-		
-		catch(XPathExpressionException e) { 
-			System.out.println("ERROR reading in parameters: " + e.toString());
-		}
+		this(new Arguments());
+	}
+	
+	public SimulationTBM(Arguments args)
+	{	
+		super(args);		
+		loadParameters(config);			
 	}
 	
 	public String getDefaulParametersPath()
 	{	return defaultParametersPath;		}
 	
+	private static File[] sortedFiles(File dir)
+	{
+		File[] files = dir.listFiles();
+		if (files != null)
+			Arrays.sort(files);
+		return files;
+	}
+	
 	
 	/**
 	 * Populate the simulation's spatial environment with cells.
@@ -94,25 +93,33 @@ public class SimulationTBM extends Simulation
 	public void populateCellsInSphere(boolean position_macs_randomly )
 	{		
 		
-		if (trackCells)
-			cellLogger = new CellLogger();
-			fragCountLogger = new CellLogger.CellType(new Fragment());
-			macCountLogger = new CellLogger.CellType(new Macrophage());
+		macs.clear();
+		MersenneTwisterFast positionRng = newStream("macrophagePositions");
+		initMacPositionFile = macFiles[positionRng.nextInt(macFiles.length)]; 
+		randMacPositionFile = macFiles_random[positionRng.nextInt(macFiles_random.length)]; 
+		if (cellLogger != null)
+			cellLogger.close();		// a restarted simulation finishes with the previous run's files. 
+		cellLogger = null;
+		fragCountLogger = null;
+		macCountLogger = null;
+		if (output.any())
+			cellLogger = new CellLogger(this);
+		if (output.anyCounts())
+		{
+			fragCountLogger = new CellLogger.CellType(new Fragment(this));
+			macCountLogger = new CellLogger.CellType(new Macrophage(this));
+		}
 		
 		totalFrags = numFrags;
 		totalMacs = numMacs;
 
-		double totalCellVol = (4/3) * Math.PI * Math.pow((Fragment.diameter/2), 3);
-		if ( totalCellVol/volumeSimulated > 0.4) {
-			System.out.println("Total cell volume is " + totalCellVol + "while simulated box size is" + volumeSimulated + ". Program may get stuck as there may not be enough 3D space to populate cells. Consider reducing number of cells");
-		}
-		
-		System.out.println("Populating " + totalFrags + " fragments.");
+		// fails fast if the fragments cannot fit, rather than placement hanging.
+		double fullness = space.checkSphereCapacity(totalFrags, config.fragment.getRadius());
+		System.out.println("Populating " + totalFrags + " fragments, filling " 
+				+ String.format("%.2f%%", 100.0 * fullness) + " of the sphere.");
 		for(int n = 0; n < totalFrags; n++)
 			{
-				Fragment frag = new Fragment(Simulation.instance.schedule);
-				Simulation.space.placeCellRandomlyInSphere(frag, true);
-				fragsln.add(frag);		
+				Fragment.spawn(this);
 
 			}
 
@@ -121,15 +128,15 @@ public class SimulationTBM extends Simulation
 				
 				// random init are enclosed in a sphere at origin 0,0,0. But our simulation's sphere is centered at (r,r,r) (i..e no negative coords)
 				// So we need to translate.
-			Double3D newCenter = new Double3D(Simulation.tissueRadius, Simulation.tissueRadius,Simulation.tissueRadius);
+			Double3D newCenter = new Double3D(tissueRadius, tissueRadius, tissueRadius);
 			List<Double3D> recenteredPos = FileSystemIO.translatePositionData(positionData, newCenter);
 			System.out.println("Populating " + recenteredPos.size() + " macrophages from." + initMacPositionFile);
 
 			for (int n = 0; n < recenteredPos.size(); n++) 
 				{
-				Macrophage mac = new Macrophage(Simulation.instance.schedule);
+				Macrophage mac = new Macrophage(this, schedule);
 				Double3D loc = recenteredPos.get(n);
-				Simulation.space.cellField.setObjectLocation(mac, loc);
+				space.moveCell(mac, loc);
 				macs.add(mac);
 			}
 
@@ -140,21 +147,22 @@ public class SimulationTBM extends Simulation
 				// these are generated already pre-centered at location (r,r,r) no need to translate.
 			for (int n = 0; n < positionData.size(); n++) 
 					{
-				Macrophage mac = new Macrophage(Simulation.instance.schedule);
+				Macrophage mac = new Macrophage(this, schedule);
 				Double x = Double.valueOf(positionData.get(n).get(0));
 				Double y =  Double.valueOf(positionData.get(n).get(1));
 				Double z =  Double.valueOf(positionData.get(n).get(2));
 				Double3D loc = new Double3D (x, y, z);
-				Simulation.space.cellField.setObjectLocation(mac, loc);
+				space.moveCell(mac, loc);
 				macs.add(mac);
 			}
 				
 		}
 		
-		for (Fragment c : fragsln)
-			c.getLogger().step(this);	
+		if (output.tracks())
+			for (Fragment c : fragments.live)
+				c.getLogger().step(this);	
 
-		System.out.println("total number of fragments = " + fragsln.size() );
+		System.out.println("total number of fragments = " + fragments.live.size() );
 
 		System.out.println("total number of Macs = " + macs.size() );
 		
@@ -164,39 +172,30 @@ public class SimulationTBM extends Simulation
 	public void finish()
 	{
 		super.finish();
-		if (trackCells)
+		if (output.any())
 		{
 			System.out.println("Writing simulation output data to filesystem: " + outputPath);
-			if (Simulation.trackPositions == true) {
-				cellLogger.writeTrackData(outputPath, "_Position.csv");			
-			}
-			TimeLogger.writeTimeData(outputPath);
-			cellLogger.writeCountData(outputPath);		
-			cellLogger.writeRemovedCountData(outputPath);			
-
+			cellLogger.close();
+			TimeLogger.writeTimeData(outputPath, sampleTimeSlice);
 		}
 		System.out.println("Simulation completed, you may close any open windows now.");
 	}
 
 	
-	public static void loadParameters(Document params) throws XPathExpressionException
+	private void loadParameters(SimulationParameters params)
 	{
-		XPath xPath =  XPathFactory.newInstance().newXPath(); 
-		Node n;
-		n = (Node) xPath.compile("/params/Simulation/Fragment/numFrags")
-				.evaluate(params, XPathConstants.NODE);
-		numFrags = Integer.parseInt(n.getTextContent());
-		n = (Node) xPath.compile("/params/Simulation/Macrophage/numMacs")
-				.evaluate(params, XPathConstants.NODE);
-		numMacs = Integer.parseInt(n.getTextContent());
+		numFrags = params.fragment.count;
+		numMacs = params.macrophage.count;
 	}
 	
 	
 	public static void main(String[] args)
 	{
-		readArgs(args);
-		Simulation state = new SimulationTBM();
-		execute(state);
+		Arguments arguments = readArgs(args);
+		if (arguments.resumePath != null)
+			proceed(resume(arguments));
+		else
+			execute(new SimulationTBM(arguments));
 	}
 
 	public static String getDefaultOutputDir() {
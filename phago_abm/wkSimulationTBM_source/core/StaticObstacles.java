@@ -0,0 +1,147 @@
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import sim.field.grid.IntGrid3D;
+import sim.util.Double3D;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Broad phase for cells that never move (see Cell.isImmobile), eg. macrophages whose speeds are all zero. Such cells
+ * are kept out of the UniformGrid, so they neither widen the queries made for moving cells nor need re-filing, and
+ * are instead frozen into a voxel occupancy field: every voxel lying within PAD of a static cell's surface records
+ * that cell. A move of reach up to PAD (its length plus the mover's radius) can then only touch the static cells
+ * recorded in the voxel it starts from, found with a single lookup. Longer moves, and moves starting outside of the
+ * compartment, are given every static cell.
+ *
+ * Voxels are a micron wide, one per entry of the supplied field: 0 where no static cell is near, else one more than
+ * the index of the set of static cells near that voxel. Voxels near the same cells share a set.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class StaticObstacles implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	// distance beyond a static cell's surface within which voxels record it, in microns.
+	static final double PAD = 4.0;
+	private static final Cell[] NONE = new Cell[0];
+
+	private final IntGrid3D field;
+	private final int nx, ny, nz;
+	// the static cells, and the distinct sets of them that voxels record.
+	private final ArrayList<Cell> cells = new ArrayList<Cell>();
+	private Cell[] all = NONE;
+	private final ArrayList<Cell[]> sets = new ArrayList<Cell[]>();
+	// set that results from adding a cell to a set: (set << 32 | cell index) to set.
+	private final HashMap<Long, Integer> unions = new HashMap<Long, Integer>();
+
+	public StaticObstacles(IntGrid3D field)
+	{
+		this.field = field;
+		nx = field.getWidth();
+		ny = field.getHeight();
+		nz = field.getLength();
+	}
+
+	/** Freezes a cell, whose centre is at `loc`, into the field. */
+	public void add(Cell cell, Double3D loc)
+	{
+		int index = cells.size();
+		cells.add(cell);
+		all = cells.toArray(new Cell[cells.size()]);
+		double reach = cell.getRadius() + PAD;
+		int xMin = Math.max(0, (int) Math.floor(loc.x - reach)), xMax = Math.min(nx - 1, (int) Math.floor(loc.x + reach));
+		int yMin = Math.max(0, (int) Math.floor(loc.y - reach)), yMax = Math.min(ny - 1, (int) Math.floor(loc.y + reach));
+		int zMin = Math.max(0, (int) Math.floor(loc.z - reach)), zMax = Math.min(nz - 1, (int) Math.floor(loc.z + reach));
+		for (int x = xMin; x <= xMax; x++)
+		{
+			double dx = gap(loc.x, x);
+			for (int y = yMin; y <= yMax; y++)
+			{
+				double dy = gap(loc.y, y);
+				for (int z = zMin; z <= zMax; z++)
+				{
+					double dz = gap(loc.z, z);
+					// any point of the voxel within reach of the centre.
+					if (dx * dx + dy * dy + dz * dz <= reach * reach)
+						field.field[x][y][z] = union(field.field[x][y][z], index);
+				}
+			}
+		}
+	}
+
+	/** Distance along one axis from c to the nearest point of the voxel [v, v + 1). */
+	private static double gap(double c, int v)
+	{	return Math.max(0.0, Math.max(v - c, c - (v + 1)));	}
+
+	private int union(int set, int index)
+	{
+		Long key = ((long) set << 32) | index;
+		Integer result = unions.get(key);
+		if (result == null)
+		{
+			Cell[] members = set == 0 ? NONE : sets.get(set - 1);
+			Cell[] grown = new Cell[members.length + 1];
+			System.arraycopy(members, 0, grown, 0, members.length);
+			grown[members.length] = cells.get(index);
+			sets.add(grown);
+			result = sets.size();
+			unions.put(key, result);
+		}
+		return result;
+	}
+
+	/** Unfreezes a cell. The field is rebuilt from the remaining cells, so this is slow. */
+	public void remove(Cell cell)
+	{
+		if (!cells.remove(cell))
+			return;
+		ArrayList<Cell> remaining = new ArrayList<Cell>(cells);
+		clear();
+		for (Cell c : remaining)
+			add(c, c.getCurrentLocation());
+	}
+
+	public void clear()
+	{
+		cells.clear();
+		all = NONE;
+		sets.clear();
+		unions.clear();
+		field.setTo(0);
+	}
+
+	public boolean isEmpty()
+	{	return cells.isEmpty();	}
+
+	/**
+	 * The static cells that a move from (cx, cy, cz), of reach `reach`, could touch, and possibly others. The returned 
+	 * array must not be changed.
+	 */
+	public Cell[] near(double cx, double cy, double cz, double reach)
+	{
+		if (reach > PAD || all.length == 0)
+			return all;
+		int x = (int) Math.floor(cx), y = (int) Math.floor(cy), z = (int) Math.floor(cz);
+		if (x < 0 || x >= nx || y < 0 || y >= ny || z < 0 || z >= nz)
+			return all;
+		int set = field.field[x][y][z];
+		return set == 0 ? NONE : sets.get(set - 1);
+	}
+}
@@ -0,0 +1,143 @@
+package core;
+
+import java.io.Serializable;
+
+import sim.util.Bag;
+import sim.util.Double3D;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Broad phase for collision detection. Space is divided into cubic buckets whose side is the diameter of the largest
+ * cell in the simulation, and each cell is filed under the bucket holding its centre. A query returns every cell
+ * whose bucket overlaps the axis-aligned box around a point, which is a superset of the cells that a move of a given
+ * reach could touch. Each bucket is kept per cell type (see Cell.typeIndex), so that queries can skip types that the
+ * querying cell ignores.
+ *
+ * Locations outside of the compartment are clamped onto the edge buckets. This is safe because clamping preserves
+ * ordering, so any box containing such a location also contains its clamped bucket.
+ *
+ * The grid must be kept in step with the cellField; Compartment3D does this in moveCell and removeCellFromField.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class UniformGrid implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final double bucketSize;
+	private final int nx, ny, nz;
+	// the buckets of type t start at t * cellsPerType.
+	private final int cellsPerType;
+	private final Bag[] buckets;
+
+	// largest radius of any cell placed in the grid so far. Used to extend queries to catch large neighbours.
+	private double maxRadius = 0.0;
+
+	public UniformGrid(double width, double height, double depth, double bucketSize, int types)
+	{
+		this.bucketSize = bucketSize;
+		nx = Math.max(1, (int) Math.ceil(width / bucketSize));
+		ny = Math.max(1, (int) Math.ceil(height / bucketSize));
+		nz = Math.max(1, (int) Math.ceil(depth / bucketSize));
+		cellsPerType = nx * ny * nz;
+		buckets = new Bag[types * cellsPerType];
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] = new Bag();
+	}
+
+	private int bucketX(double x)
+	{	return clamp((int) Math.floor(x / bucketSize), nx);	}
+
+	private int bucketY(double y)
+	{	return clamp((int) Math.floor(y / bucketSize), ny);	}
+
+	private int bucketZ(double z)
+	{	return clamp((int) Math.floor(z / bucketSize), nz);	}
+
+	private static int clamp(int i, int n)
+	{
+		if (i < 0)			return 0;
+		if (i >= n)			return n - 1;
+		return i;
+	}
+
+	private int bucketIndex(double x, double y, double z)
+	{	return (bucketZ(z) * ny + bucketY(y)) * nx + bucketX(x);	}
+
+	/** Places the cell into (or moves it between) buckets, such that it is filed under (x, y, z). */
+	public void update(Cell cell, double x, double y, double z)
+	{
+		int b = cell.typeIndex() * cellsPerType + bucketIndex(x, y, z);
+		if (b == cell.gridBucket)
+			return;
+		if (cell.gridBucket >= 0)
+			buckets[cell.gridBucket].remove(cell);
+		buckets[b].add(cell);
+		cell.gridBucket = b;
+		maxRadius = Math.max(maxRadius, cell.getRadius());
+	}
+
+	public void remove(Cell cell)
+	{
+		if (cell.gridBucket < 0)
+			return;
+		buckets[cell.gridBucket].remove(cell);
+		cell.gridBucket = -1;
+	}
+
+	public void clear()
+	{
+		for (Bag b : buckets)
+		{
+			for (int i = 0; i < b.numObjs; i++)
+				((Cell) b.objs[i]).gridBucket = -1;
+			b.clear();
+		}
+	}
+
+	public double getMaxRadius()
+	{	return maxRadius;	}
+
+	/**
+	 * Adds to `result` every cell filed in a bucket that overlaps the cube of half-width `reach` centred on `loc`.
+	 * `result` is not cleared first.
+	 */
+	public void candidates(Double3D loc, double reach, Bag result)
+	{	candidates(loc.x, loc.y, loc.z, reach, ~0, result);	}
+
+	/** 
+	 * As above, centred on (cx, cy, cz), but only cells of the types whose bits are set in `types`, a mask by 
+	 * Cell.typeIndex(). 
+	 */
+	public void candidates(double cx, double cy, double cz, double reach, int types, Bag result)
+	{
+		int xMin = bucketX(cx - reach), xMax = bucketX(cx + reach);
+		int yMin = bucketY(cy - reach), yMax = bucketY(cy + reach);
+		int zMin = bucketZ(cz - reach), zMax = bucketZ(cz + reach);
+		for (int t = 0; t * cellsPerType < buckets.length; t++)
+		{
+			if ((types & (1 << t)) == 0)
+				continue;
+			for (int z = zMin; z <= zMax; z++)
+				for (int y = yMin; y <= yMax; y++)
+				{
+					int row = t * cellsPerType + (z * ny + y) * nx;
+					for (int x = xMin; x <= xMax; x++)
+						result.addAll(buckets[row + x]);
+				}
+		}
+	}
+}
@@ -16,6 +16,7 @@ import java.util.List;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -200,6 +201,7 @@ public class FileSystemIO
 		try {
 			TransformerFactory tFactory = TransformerFactory.newInstance();	// transformer converts source to an output. 
 			Transformer transformer = tFactory.newTransformer();
+			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
 
 			DOMSource source = new DOMSource(document); 					// the source for the transformation.
 			StreamResult result = new StreamResult(outputFile); 			// where the transformation is to be sent to.
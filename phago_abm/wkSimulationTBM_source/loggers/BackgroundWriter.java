@@ -0,0 +1,342 @@
+package loggers;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Writes a simulation's output files on a background thread, as the simulation runs. Loggers hand over blocks of
+ * complete rows, as text or bytes, which are queued and written in the order given. The queue is bounded: a simulation producing output
+ * faster than the disk takes it waits for space, rather than holding its history in memory. Files are flushed every
+ * couple of seconds, so a run that is killed part way leaves files complete up to its last few samples, bar
+ * perhaps a final row cut short.
+ *
+ * Outputs record how many bytes have been written to them, and may be checkpointed with the loggers holding them. A
+ * checkpoint is taken once sync() has written everything queued; a run resumed from it reopens its outputs, cutting
+ * them back to that length.
+ *
+ * An error writing one file stops only that file. Anything else that stops the writer thread is handed to the
+ * simulation: the next write, sync or close throws it, rather than waiting on a thread that has died.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class BackgroundWriter
+{
+	private static final int QUEUE_BLOCKS = 64;
+	private static final long FLUSH_INTERVAL = 2000;	// milliseconds.
+	private static final long POLL_INTERVAL = 100;		// milliseconds between checks that the writer thread lives.
+	// text is encoded as FileWriter would.
+	private static final Charset TEXT = Charset.defaultCharset();
+
+	/** A file written by the background writer. */
+	public static class Output implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String fileName;
+		private transient BufferedOutputStream out;		// null once writing has failed, or after a checkpoint is read.
+		private transient boolean dirty = false;
+		// bytes written to the file so far, and whether writing has failed. 
+		private long length = 0;
+		private boolean failed = false;
+
+		private Output(String fileName, BufferedOutputStream out)
+		{
+			this.fileName = fileName;
+			this.out = out;
+		}
+	}
+
+	private static class Block
+	{
+		final Output output;
+		final Object data;		// String or byte[].
+
+		Block(Output output, Object data)
+		{
+			this.output = output;
+			this.data = data;
+		}
+	}
+
+	// placed on the queue to stop the writer thread.
+	private static final Block CLOSE = new Block(null, null);
+	// blocks with no output and a latch as data ask the writer thread to flush everything, then count the latch down.
+
+	private final BlockingQueue<Block> queue = new ArrayBlockingQueue<Block>(QUEUE_BLOCKS);
+	// files are opened by the simulation, and written, flushed and closed only by the writer thread.
+	private final List<Output> outputs = new CopyOnWriteArrayList<Output>();
+	private final Thread thread;
+	private boolean closed = false;
+	// what stopped the writer thread, if it failed. 
+	private volatile Throwable failure = null;
+
+	public BackgroundWriter()
+	{
+		thread = new Thread(new Runnable() {
+			public void run()
+			{	drain();	}
+		}, "output-writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Creates (or overwrites) the named file and queues its header, text or bytes. Returns null, having reported the 
+	 * error, if the file cannot be created.
+	 */
+	public Output open(String fileName, Object header)
+	{
+		try
+		{
+			Output o = new Output(fileName, new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+			outputs.add(o);
+			if (header instanceof byte[])
+				write(o, (byte[]) header);
+			else
+				write(o, (String) header);
+			return o;
+		}
+		catch (IOException ex)
+		{
+			System.out.println("ERROR: exception when writing to filesystem, " + ex.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Resumes writing an output restored from a checkpoint. Anything written to the file after the checkpoint was
+	 * taken is discarded, so that the run continues the file from where the checkpoint left it.
+	 */
+	public void reopen(Output output)
+	{
+		if (output == null || output.failed)
+			return;
+		try
+		{
+			RandomAccessFile file = new RandomAccessFile(output.fileName, "rw");
+			long found = file.length();
+			if (found >= output.length)
+				file.setLength(output.length);
+			file.close();
+			if (found < output.length)
+				throw new RuntimeException("Output file " + output.fileName + " holds " + found 
+						+ " bytes, fewer than the " + output.length + " written when the checkpoint was taken.");
+			output.out = new BufferedOutputStream(new FileOutputStream(output.fileName, true), 1 << 16);
+			outputs.add(output);
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException("Could not reopen " + output.fileName + ": " + ex.toString(), ex);
+		}
+	}
+
+	/** Waits until everything queued so far has been written and flushed to the files. */
+	public void sync()
+	{
+		CountDownLatch done = new CountDownLatch(1);
+		put(new Block(null, done));
+		try
+		{
+			while (!done.await(POLL_INTERVAL, TimeUnit.MILLISECONDS))
+				checkFailure();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while writing output files.", e);
+		}
+		checkFailure();
+	}
+
+	/** Queues text to be appended to the output, waiting for space in the queue if it is full. */
+	public void write(Output output, String text)
+	{
+		if (output == null || text.isEmpty())
+			return;
+		put(new Block(output, text));
+	}
+
+	/** Queues bytes to be appended to the output, waiting for space in the queue if it is full. */
+	public void write(Output output, byte[] bytes)
+	{
+		if (output == null || bytes.length == 0)
+			return;
+		put(new Block(output, bytes));
+	}
+
+	/** Writes everything queued, then closes all the files and stops the writer thread. */
+	public void close()
+	{
+		synchronized (this)
+		{
+			if (closed)
+				return;
+			closed = true;
+		}
+		put(CLOSE);
+		try
+		{
+			thread.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while writing output files.", e);
+		}
+		checkFailure();
+	}
+
+	/** Throws, on the calling thread, whatever stopped the writer thread. */
+	private void checkFailure()
+	{
+		Throwable t = failure;
+		if (t != null)
+			throw new RuntimeException("Writing output files failed: " + t.toString(), t);
+	}
+
+	private void put(Block block)
+	{
+		try
+		{
+			checkFailure();
+			while (!queue.offer(block, POLL_INTERVAL, TimeUnit.MILLISECONDS))
+				checkFailure();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while queueing output.", e);
+		}
+	}
+
+	private void drain()
+	{
+		try
+		{
+			long lastFlush = System.currentTimeMillis();
+			while (true)
+			{
+				Block block;
+				try
+				{
+					block = queue.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+				}
+				catch (InterruptedException e)
+				{
+					break;
+				}
+				if (block == CLOSE)
+					break;
+				if (block != null && block.output == null)
+				{
+					flushAll(false);
+					((CountDownLatch) block.data).countDown();
+					continue;
+				}
+				if (block != null)
+					append(block);
+				long now = System.currentTimeMillis();
+				if (block == null || now - lastFlush >= FLUSH_INTERVAL)
+				{
+					flushAll(false);
+					lastFlush = now;
+				}
+			}
+			flushAll(true);
+		}
+		catch (Throwable t)
+		{
+			failure = t;
+			System.out.println("ERROR: output writer stopped, " + t.toString());
+			// release any sync waiting on the queue; they, and anything queued later, see the failure.
+			for (Block block; (block = queue.poll()) != null; )
+				if (block.output == null && block.data instanceof CountDownLatch)
+					((CountDownLatch) block.data).countDown();
+			try
+			{
+				flushAll(true);
+			}
+			catch (Throwable ignored)
+			{}
+		}
+	}
+
+	private void append(Block block)
+	{
+		Output o = block.output;
+		if (o.out == null)
+			return;
+		try
+		{
+			byte[] bytes = block.data instanceof byte[] ? (byte[]) block.data : ((String) block.data).getBytes(TEXT);
+			o.out.write(bytes);
+			o.length += bytes.length;
+			o.dirty = true;
+		}
+		catch (IOException ex)
+		{
+			fail(o, ex);
+		}
+	}
+
+	private void flushAll(boolean close)
+	{
+		for (Output o : outputs)
+		{
+			if (o.out == null)
+				continue;
+			try
+			{
+				if (close)
+				{
+					o.out.close();
+					o.out = null;
+				}
+				else if (o.dirty)
+					o.out.flush();
+				o.dirty = false;
+			}
+			catch (IOException ex)
+			{
+				fail(o, ex);
+			}
+		}
+	}
+
+	private void fail(Output o, IOException ex)
+	{
+		System.out.println("ERROR: exception when writing " + o.fileName + " to filesystem, " + ex.toString());
+		try
+		{
+			o.out.close();
+		}
+		catch (IOException ignored)
+		{}
+		o.out = null;
+		o.failed = true;
+	}
+}
@@ -1,9 +1,8 @@
 package loggers;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import core.Cell;
 import core.Simulation;
@@ -11,6 +10,7 @@ import sim.engine.Schedule;
 import sim.engine.SimState;
 import sim.engine.Steppable;
 import sim.util.Double3D;
+import utils.RunningMoments;
 
 
 /**
@@ -31,221 +31,485 @@ import sim.util.Double3D;
  * This class encapsulates the functionality of logging cell movements, and writing them to the filesystem. 
  * It contains a subclass, Track, one of which is associated with each tracked cell in the simulation. 
  * 
- * It is indented that a single simulation only ever has one instance of the CellLogger class. 
+ * It is indented that a single simulation only ever has one instance of the CellLogger class. It is the only logger
+ * on the schedule, and steps the CellType and Track loggers itself in the order they were created. The schedule 
+ * shuffles steppables sharing a time and ordering using the simulation's random number generator, so were every 
+ * Track scheduled, which outputs a run writes would change how the cells behave. 
+ * 
+ * Output files are written as the simulation runs, by a BackgroundWriter, rather than held in memory until the end. 
+ * Tracks keep only running totals of their motility; once a track stops they are added to those of its cell type. 
+ * The run's summary statistics are gathered alongside, and written to summary.csv when the logger is closed, as are
+ * the motility statistics of each cell type to motility.csv. 
  * 
  * @author Mark Read
  */
-public class CellLogger 
+public class CellLogger implements Steppable
 {
-	// a way of keeping hold of all the cell loggers tracking this type of cell together. 
-	public static ArrayList<Track> tracks = new ArrayList<Track>();
-	public static ArrayList<CellType> CellTypes = new ArrayList<CellType>();
+	private static final long serialVersionUID = 1L;
+
+	// rows are handed to the writer in blocks of about this many characters.
+	private static final int BLOCK = 1 << 16;
+	
+	public ArrayList<CellType> CellTypes = new ArrayList<CellType>();
+	// tracks still being sampled. 
+	private final ArrayList<Track> active = new ArrayList<Track>();
+	
+	// the simulation run whose cells are being logged.
+	private final Simulation sim;
 
+	// names of the cell types tracked, indexed by the type codes tracks store. These are given in the order the types
+	// are first tracked, so that the output files are laid out as before.
+	private final ArrayList<String> typeNames = new ArrayList<String>();
+	// the type code tracks store for each cell type, indexed by its CellTypes code; -1 if the type is not tracked.
+	private final int[] typeCodes = new int[core.CellTypes.COUNT];
+	// motility of the tracks that have stopped, indexed by type code. 
+	private final ArrayList<Motility> stoppedMotility = new ArrayList<Motility>();
+	
+	// replaced when the run is restored from a checkpoint, see awakeFromCheckpoint().
+	private transient BackgroundWriter writer = new BackgroundWriter();
+	// null if the output is not written.
+	private final BackgroundWriter.Output positionOut;
+	private final BackgroundWriter.Output countOut;
+	private final BackgroundWriter.Output removedCountOut;
+	private final BackgroundWriter.Output summaryOut;
+	private final BackgroundWriter.Output motilityOut;
+	// encodes positions when they are written in the binary trajectory format, else null. 
+	private final TrajectoryWriter trajectory;
+	private final StringBuilder positionRows = new StringBuilder();
+	private final StringBuilder countRows = new StringBuilder();
+	private final StringBuilder removedCountRows = new StringBuilder();
+	
+	// summary statistics of the run, null if they are not written. 
+	public final RunStatistics statistics;
+	
+	// track IDs handed out so far. A new ID is used for every entry of a cell into the imaging volume.
+	private int trackIDs = 0;
+	
+	/**
+	 * Motility statistics over the tracks of one cell type, from which run summaries and motility.csv are made. 
+	 * Tracks shorter than two samples, or that never moved, are left out of the per-track measures. The per-step 
+	 * measures are pooled over every step of every track, and are only gathered when motility.csv is written. 
+	 */
+	public static class Motility implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		// per track.
+		public final RunningMoments speed = new RunningMoments();			// path length / duration, microns per minute.
+		public final RunningMoments meander = new RunningMoments();			// displacement / path length. 
+		public final RunningMoments displacement = new RunningMoments();	// from where the cell started, microns.
+		// per step.
+		public final RunningMoments stepSpeed = new RunningMoments();		// microns per minute.
+		public final RunningMoments turnAngle = new RunningMoments();		// radians.
+		public final RunningMoments turnSpeed = new RunningMoments();		// radians per minute.
+		// squared displacement over each of TrackMotility.LAGS samples, square microns. 
+		public final RunningMoments[] msd = new RunningMoments[TrackMotility.LAGS.length];
+		// counts of turn angles in TrackMotility.TURN_BINS bins of equal width over 0 to pi. 
+		public final long[] turns = new long[TrackMotility.TURN_BINS];
+		
+		public Motility()
+		{
+			for (int l = 0; l < msd.length; l++)
+				msd[l] = new RunningMoments();
+		}
+		
+		private void add(Motility m)
+		{
+			speed.add(m.speed);
+			meander.add(m.meander);
+			displacement.add(m.displacement);
+			add(m.stepSpeed, m.turnAngle, m.turnSpeed, m.msd, m.turns);
+		}
+		
+		private void add(TrackMotility t)
+		{
+			displacement.add(t.originDisplacement());
+			add(t.stepSpeed, t.turnAngle, t.turnSpeed, t.msd, t.turns);
+		}
+		
+		private void add(RunningMoments stepSpeed, RunningMoments turnAngle, RunningMoments turnSpeed, 
+				RunningMoments[] msd, long[] turns)
+		{
+			this.stepSpeed.add(stepSpeed);
+			this.turnAngle.add(turnAngle);
+			this.turnSpeed.add(turnSpeed);
+			for (int l = 0; l < msd.length; l++)
+				this.msd[l].add(msd[l]);
+			for (int b = 0; b < turns.length; b++)
+				this.turns[b] += turns[b];
+		}
+		
+		/** Number of tracks in the per-track measures. */
+		public long tracks()
+		{	return speed.count();	}
+		
+		public double meanSpeed()
+		{	return speed.mean();	}
+		
+		public double meanMeanderingIndex()
+		{	return meander.mean();	}
+	}
+	
 	/**
 	 * A single Track object is associated with a single Neutrophil object. The Track is responsible for tracking 
 	 * the Neutrophil's movements and compiling statistics thereof. 
 	 * 
+	 * Each sample is written out as it is taken, so a track holds only its first and latest positions and running
+	 * totals; a track's cell type never changes, and is held once as a code. 
+	 * 
 	 * @author Mark Read
 	 */
 	public static class Track implements Steppable
 	{
-		private Cell target;		
-				
-		private ArrayList<Double3D> positionLog = new ArrayList<Double3D>(); 
-		private ArrayList<String> positionLogCellType = new ArrayList<String>(); 
-		private ArrayList<Long> meanderLog = new ArrayList<Long>(); 
-
+		private static final long serialVersionUID = 1L;
 
-		private ArrayList<Double> timeLog = new ArrayList<Double>();	// the actual time
-		private ArrayList<Long> timeIterLog = new ArrayList<Long>();	// iterative count of timesteps so far. 
+		private Cell target;		
+		private final CellLogger log;
+		private final int type;
+		
+		private int size = 0;
+		private double startX, startY, startZ, startTime;
+		private double x, y, z, time;
+		private double pathLength = 0.0;
+		// streaming motility statistics, null unless motility.csv is written. 
+		private final TrackMotility motility;
+		
+		// whether the last sample was inside the imaging volume, and the track ID it was written under. 
+		private boolean insideVolume = false;
+		private int trackID = 0;
+		
+		private boolean stopped = false;
 		
 		public Track(Cell targetCell)
 		{
 			this.target = targetCell;	
-			tracks.add(this);			
-			
-			Schedule sched = Simulation.instance.schedule;
-			double startTime = sched.getTime();
-			if (startTime < 0.0)
-				startTime = 0.0;
-			sched.scheduleRepeating(startTime, Simulation.loggerOrdering, this, Simulation.sampleTimeSlice);
+			Simulation sim = targetCell.getSimulation();
+			log = sim.cellLogger;
+			log.active.add(this);
+			type = log.typeCode(targetCell.typeIndex());
+			motility = log.motilityOut != null ? new TrackMotility() : null;
+		}
+		
+		public String getType()
+		{	return log.typeNames.get(type);	}
+		
+		/** Number of positions logged so far. */
+		public int size()
+		{	return size;	}
+		
+		/** Total distance travelled between consecutive logged positions. */
+		public double getPathLength()
+		{	return pathLength;	}
+		
+		/** Straight line distance between the first and last logged positions. */
+		public double getDisplacement()
+		{
+			if (size < 2)
+				return 0.0;
+			return distance(x, y, z, startX, startY, startZ);
 		}
 		
+		/** Time elapsed between the first and last logged positions. */
+		public double getDuration()
+		{
+			if (size < 2)
+				return 0.0;
+			return time - startTime;
+		}
+		
+		private static double distance(double ax, double ay, double az, double bx, double by, double bz)
+		{
+			double dx = ax - bx;
+			double dy = ay - by;
+			double dz = az - bz;
+			return Math.sqrt(dx*dx + dy*dy + dz*dz);
+		}
+		
+		private void addTo(Motility m)
+		{
+			if (motility != null)
+				m.add(motility);
+			double duration = getDuration();
+			if (size < 2 || pathLength <= 0.0 || duration <= 0.0)
+				return;
+			m.speed.add(pathLength / duration);
+			m.meander.add(getDisplacement() / pathLength);
+		}
+		
+		/** Stops sampling. Data already logged is kept, and is written out with the rest. */
+		public void stop()
+		{	stopped = true;	}
 		
 		@Override
 		public void step(SimState state) 
 		{				
-			if (Simulation.space.cellField.exists(target) == true) {
-				positionLog.add(target.getCurrentLocation());
-				positionLogCellType.add(target.getType());
-				meanderLog.add((long) target.getMeanderCount());			
-				timeLog.add(Simulation.instance.schedule.getTime());
-				timeIterLog.add(Simulation.instance.timeIter);
+			Simulation sim = (Simulation) state;
+			if (target.isPlaced()) {
+				Double3D loc = target.getCurrentLocation();
+				double now = sim.schedule.getTime();
+				if (size == 0)
+				{
+					startX = loc.x;
+					startY = loc.y;
+					startZ = loc.z;
+					startTime = now;
+				}
+				else
+					pathLength += distance(loc.x, loc.y, loc.z, x, y, z);
+				x = loc.x;
+				y = loc.y;
+				z = loc.z;
+				time = now;
+				size++;
+				if (motility != null)
+					motility.sample(x, y, z, now, target.getStartLoc());
+				if (log.positionOut != null)
+					write(sim);
 			}
 		}
+		
+		/* Track ID is incremented for each new track that appears inside the imaging volume, and whenever
+		 * an existing track re-enters the volume. Newly encountered tracks are assumed to not be in the volume. 
+		 */
+		private void write(Simulation sim)
+		{
+			if (!sim.space.insideImagingVolume(x, y, z))
+			{
+				insideVolume = false;
+				return;
+			}
+			if (!insideVolume)
+			{
+				trackID = ++log.trackIDs;
+				insideVolume = true;
+			}
+			if (log.trajectory != null)
+			{
+				log.trajectory.add(sim.timeIter, trackID, type, getType(), x, y, z, target.getMeanderCount());
+				return;
+			}
+			double meanderCount = target.getMeanderCount();
+			log.positionRows.append(x).append(',').append(y).append(',').append(z)
+				.append(",um,Spot,Position,").append(sim.timeIter)
+				.append(',').append(trackID).append(',').append(getType()).append(',').append(meanderCount).append('\n');
+		}
 	}
 	
 
 	public static class CellType implements Steppable
 	{
-		private Cell target;		
-				
-		private ArrayList<Long> countLog = new ArrayList<Long>(); 
-		private ArrayList<Long> removedCountLog = new ArrayList<Long>(); 
-		private ArrayList<Double> timeLog = new ArrayList<Double>();	// the actual time
-		private ArrayList<Long> timeIterLog = new ArrayList<Long>();	// iterative count of timesteps so far. 
+		private static final long serialVersionUID = 1L;
 
+		private Cell target;		
+		private final CellLogger log;
 		
 		public CellType(Cell targetCell)
 		{
 			this.target = targetCell;	
-			CellTypes.add(this);			
-			
-			Schedule sched = Simulation.instance.schedule;
-			double startTime = sched.getTime();
-			if (startTime < 0.0)
-				startTime = 0.0;
-			sched.scheduleRepeating(startTime, Simulation.loggerOrdering, this, Simulation.sampleTimeSlice);
+			Simulation sim = targetCell.getSimulation();
+			log = sim.cellLogger;
+			log.CellTypes.add(this);			
 		}
 
 		@Override
 		public void step(SimState state) {
-			countLog.add((long) target.getCount());	
-			removedCountLog.add((long) target.getRemovedCount());	
-			timeLog.add(Simulation.instance.schedule.getTime());
-			timeIterLog.add(Simulation.instance.timeIter);		}
+			Simulation sim = (Simulation) state;
+			if (log.countOut != null)
+				row(log.countRows, target.getCount(), sim.timeIter);
+			if (log.removedCountOut != null)
+				row(log.removedCountRows, target.getRemovedCount(), sim.timeIter);
+			if (log.statistics != null)
+				log.statistics.sample(sim.timeIter, target.typeIndex(), target.getCount(), target.getRemovedCount());
+		}
 		
+		private void row(StringBuilder rows, double count, long timeIter)
+		{	rows.append(count).append(',').append(timeIter).append(',').append(target.getType()).append('\n');	}
 	}
 	
-	public CellLogger()
-	{}
+	/** Creates the output files the simulation's output plan asks for, and schedules the logger. */
+	public CellLogger(Simulation sim)
+	{
+		this.sim = sim;
+		Arrays.fill(typeCodes, -1);
+		String dir = sim.outputPath;
+		trajectory = sim.output.positions && sim.output.binaryPositions ? new TrajectoryWriter() : null;
+		if (!sim.output.positions)
+			positionOut = null;
+		else if (trajectory != null)
+			positionOut = writer.open(dir + "/_Position.traj", trajectory.take());
+		else
+			positionOut = writer.open(dir + "/_Position.csv", positionHeader("Position"));
+		countOut = sim.output.counts 
+				? writer.open(dir + "/CellTypeCount.csv", countHeader("CellTypeCount")) : null;
+		removedCountOut = sim.output.removedCounts 
+				? writer.open(dir + "/removeCount.csv", countHeader("removedCount")) : null;
+		statistics = sim.output.summary ? new RunStatistics(sim) : null;
+		summaryOut = statistics != null ? writer.open(dir + "/summary.csv", "") : null;
+		motilityOut = sim.output.motility ? writer.open(dir + "/motility.csv", "") : null;
+		
+		Schedule sched = sim.schedule;
+		double startTime = sched.getTime();
+		if (startTime < 0.0)
+			startTime = 0.0;
+		sched.scheduleRepeating(startTime, Simulation.loggerOrdering, this, sim.sampleTimeSlice);
+	}
 	
-	public void writeTrackData(String dir, String filename)
-	{	
-		System.out.println("Writing cell track data to the filesystem.");
-		try 
+	private int typeCode(int cellType)
+	{
+		int code = typeCodes[cellType];
+		if (code < 0)
 		{
-			BufferedWriter positionOut = setupPositionOutputFile(dir + "/" + filename, "Position");
-
-			int trackID = 0;	// for writing to FS. Incremented for every encounter of a cell in imaging volume.			
-			for (Track track : tracks)
-			{
-				/* Track ID is incremented for each new track that appears inside the imaging volume, and whenever
-				 * an existing track re-enters the volume. Start it on false (as newly enountered tracks are assumed
-				 * to not be in the volume).
-				 */				
-				boolean previouslyInsideVolume = false;
-				// need a new track ID for every new track. 
-				for (int t = 0; t < track.positionLog.size(); t++)
-				{
-					double x = track.positionLog.get(t).x;
-					double y = track.positionLog.get(t).y;
-					double z = track.positionLog.get(t).z;	
-					String type = track.positionLogCellType.get(t);
-					double meanderCount = track.meanderLog.get(t);
-					if (Simulation.space.insideImagingVolume(x, y, z))							
-					{
-						// check if the track ID needs to be incremented. Done for every new track, and every re-entry
-						// of existing tracks into the imaging volume. 
-						if (previouslyInsideVolume == false)
-						{	
-							trackID ++;
-							previouslyInsideVolume = true;
-						}	
-						positionOut.write(
-							x + "," + y + "," + z + "," + 
-							"um,Spot,Position," + 
-							track.timeIterLog.get(t) + 
-							"," + trackID + ","+ type + "," + meanderCount +"\n");
-					} else {
-						previouslyInsideVolume = false;
-					}
-				}				
-			}
-			positionOut.close();
-				
-		} catch (IOException ex) {
-			System.out.println("ERROR: exception when writing to filesystem, " + ex.toString());
+			code = typeNames.size();
+			typeCodes[cellType] = code;
+			typeNames.add(core.CellTypes.label(cellType));
+			stoppedMotility.add(new Motility());
 		}
+		return code;
 	}
 	
-	public void writeCountData(String dir)
+	/** Records that a fragment has been captured by a macrophage. */
+	public void captured(Cell fragment)
 	{
-		System.out.println("Writing cell count data to the filesystem.");
-		try 
+		if (statistics != null)
+			statistics.captured();
+	}
+	
+	@Override
+	public void step(SimState state)
+	{
+		for (CellType type : CellTypes)
+			type.step(state);
+		// tracks stopped since the last sample are dropped, keeping the rest in order. 
+		int kept = 0;
+		for (int i = 0; i < active.size(); i++)
 		{
-			BufferedWriter countOut = setupCountOutputFile(dir + "/CellTypeCount.csv", "CellTypeCount");
-
-			int trackID = 0;	// for writing to FS. Incremented for every encounter of a cell in imaging volume.			
-			for (CellType type : CellTypes)
+			Track track = active.get(i);
+			if (track.stopped)
 			{
-				/* Celltype is incremented only when 
-				 */				
-				// need a new track ID for every new track. 
-				for (int t = 0; t < type.countLog.size(); t++)
-				{
-					double count = type.countLog.get(t);
-					countOut.write(
-							count + "," + type.timeIterLog.get(t) + "," + type.target.getType() + "\n"
-							);	
-				}				
+				track.addTo(stoppedMotility.get(track.type));
+				continue;
 			}
-			countOut.close();
-				
-		} catch (IOException ex) {
-			System.out.println("ERROR: exception when writing to filesystem, " + ex.toString());
+			track.step(state);
+			active.set(kept++, track);
+			if (positionRows.length() >= BLOCK)
+				submit(positionOut, positionRows);
 		}
+		active.subList(kept, active.size()).clear();
+		submitAll();
 	}
 	
-	public void writeRemovedCountData(String dir)
+	/** 
+	 * Motility totals over every track of the given cell type, by CellTypes code, whether or not it is still being 
+	 * sampled. 
+	 */
+	public Motility motility(int cellType)
 	{
-		System.out.println("Writing remove count data to the filesystem.");
-		try 
+		int code = typeCodes[cellType];
+		return code < 0 ? new Motility() : trackedMotility(code);
+	}
+	
+	/** As above, by the type code tracks store. */
+	private Motility trackedMotility(int code)
+	{
+		Motility m = new Motility();
+		m.add(stoppedMotility.get(code));
+		for (Track track : active)
+			if (track.type == code)
+				track.addTo(m);
+		return m;
+	}
+	
+	private void submit(BackgroundWriter.Output out, StringBuilder rows)
+	{
+		writer.write(out, rows.toString());
+		rows.setLength(0);
+	}
+	
+	private void submitAll()
+	{
+		if (trajectory != null)
+			writer.write(positionOut, trajectory.take());
+		submit(positionOut, positionRows);
+		submit(countOut, countRows);
+		submit(removedCountOut, removedCountRows);
+	}
+	
+	/** Waits for everything handed to the writer to reach the output files, ready for a checkpoint to be taken. */
+	public void preCheckpoint()
+	{	writer.sync();	}
+	
+	/** Reopens the output files of a run restored from a checkpoint, continuing them from where it was taken. */
+	public void awakeFromCheckpoint()
+	{
+		writer = new BackgroundWriter();
+		writer.reopen(positionOut);
+		writer.reopen(countOut);
+		writer.reopen(removedCountOut);
+		writer.reopen(summaryOut);
+		writer.reopen(motilityOut);
+	}
+	
+	/** Writes out anything still pending and closes the output files. */
+	public void close()
+	{
+		submitAll();
+		if (trajectory != null)
+			writer.write(positionOut, trajectory.finish());
+		if (statistics != null)
+			writer.write(summaryOut, statistics.format());
+		if (motilityOut != null)
+			writer.write(motilityOut, motilityTables());
+		writer.close();
+	}
+	
+	/** The contents of motility.csv: the motility of every cell type tracked. */
+	private String motilityTables()
+	{
+		StringBuilder moments = new StringBuilder(tableHeader("Motility", "CellType,Statistic,N,Mean,StD"));
+		StringBuilder msd = new StringBuilder(tableHeader("MSD", "CellType,Lag,LagTime,N,MSD,StD"));
+		StringBuilder turns = new StringBuilder(tableHeader("TurnAngles", "CellType,AngleFrom,AngleTo,Count"));
+		for (int code = 0; code < typeNames.size(); code++)
 		{
-			BufferedWriter countOut = setupCountOutputFile(dir + "/removeCount.csv", "removedCount");
-
-			int trackID = 0;	// for writing to FS. Incremented for every encounter of a cell in imaging volume.			
-			for (CellType type : CellTypes)
+			String type = typeNames.get(code);
+			Motility m = trackedMotility(code);
+			moments(moments, type, "speed", m.speed);
+			moments(moments, type, "meanderingIndex", m.meander);
+			moments(moments, type, "displacement", m.displacement);
+			moments(moments, type, "stepSpeed", m.stepSpeed);
+			moments(moments, type, "turnAngle", m.turnAngle);
+			moments(moments, type, "turnSpeed", m.turnSpeed);
+			for (int l = 0; l < m.msd.length; l++)
 			{
-				/* Celltype is incremented only when 
-				 */				
-				// need a new track ID for every new track. 
-				for (int t = 0; t < type.removedCountLog.size(); t++)
-				{
-					double count = type.removedCountLog.get(t);
-					countOut.write(
-							count + "," + type.timeIterLog.get(t) + "," + type.target.getType() + "\n"
-							);	
-				}				
+				int lag = TrackMotility.LAGS[l];
+				msd.append(type).append(',').append(lag).append(',').append(lag * sim.sampleTimeSlice)
+					.append(',').append(m.msd[l].count()).append(',').append(m.msd[l].mean())
+					.append(',').append(m.msd[l].standardDeviation()).append('\n');
 			}
-			countOut.close();
-				
-		} catch (IOException ex) {
-			System.out.println("ERROR: exception when writing to filesystem, " + ex.toString());
+			double width = Math.PI / m.turns.length;
+			for (int b = 0; b < m.turns.length; b++)
+				turns.append(type).append(',').append(b * width).append(',').append((b + 1) * width)
+					.append(',').append(m.turns[b]).append('\n');
 		}
+		return moments.append(msd).append(turns).toString();
 	}
 	
+	private static void moments(StringBuilder sb, String type, String statistic, RunningMoments r)
+	{
+		sb.append(type).append(',').append(statistic).append(',').append(r.count()).append(',').append(r.mean())
+			.append(',').append(r.standardDeviation()).append('\n');
+	}
 	
-	private static BufferedWriter setupPositionOutputFile(String fileName, String title) throws IOException
+	static String positionHeader(String title)
 	{
-		FileWriter fw = new FileWriter(fileName);
-		BufferedWriter out = new BufferedWriter(fw);
-		out.write("\n");
-		out.write(title + "\n");
-		out.write("==================== \n");
-		out.write("Position X,Position Y,Position Z,Unit,Category,Collection,Time,Parent,ID,meanderCount\n");	
-		return out;
+		return "\n" + title + "\n" + "==================== \n" 
+				+ "Position X,Position Y,Position Z,Unit,Category,Collection,Time,Parent,ID,meanderCount\n";	
 	}
 	
-	private static BufferedWriter setupCountOutputFile(String fileName, String title) throws IOException
+	private static String countHeader(String title)
+	{	return tableHeader(title, "Count,Time, CellType");	}
+	
+	private static String tableHeader(String title, String columns)
 	{
-		FileWriter fw = new FileWriter(fileName);
-		BufferedWriter out = new BufferedWriter(fw);
-		out.write("\n");
-		out.write(title + "\n");
-		out.write("==================== \n");
-		out.write("Count,Time, CellType\n");	
-		return out;
+		return "\n" + title + "\n" + "==================== \n" + columns + "\n";	
 	}
 }
-
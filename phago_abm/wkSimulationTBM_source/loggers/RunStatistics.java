@@ -0,0 +1,199 @@
+package loggers;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import core.CellTypes;
+import core.Simulation;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Summary statistics of a run, gathered as it runs rather than recovered afterwards from removeCount.csv (as
+ * plotResultCrossover.R and plotResultMacVolume.R did). Fragments report each capture by a macrophage as it happens,
+ * and the count loggers report every sample. The CellLogger writes them to summary.csv when the run finishes, in two
+ * tables:
+ *
+ *  Summary		- Statistic,Value rows:
+ *  	elapsedTime					simulated minutes.
+ *  	fragments, macrophages		population sizes. Fragments are respawned on capture, so their number is constant.
+ *  	removed						fragments captured.
+ *  	firstCaptureTime			simulated minutes until the first capture. NaN if there was none.
+ *  	removalRate					captures per minute.
+ *  	phagocytosisRate			captures per minute, as a percentage of the fragment population.
+ *  	removalRatePerMacrophage	captures per minute per macrophage.
+ *  	AverageRate					fragments removed per sample, as plotResultCrossover.R and plotResultMacVolume.R
+ *  								calculate it: the Count over the Time of the last fragment row of removeCount.csv.
+ *  	RatePct						AverageRate as a percentage of the fragment population; the clearance rate those
+ *  								scripts plot.
+ *  CountSeries	- every sample of every cell type, as CellTypeCount.csv and removeCount.csv would give them, in one row.
+ *
+ * removalRate, phagocytosisRate and removalRatePerMacrophage are per minute of simulated time. AverageRate and RatePct
+ * keep the R scripts' definitions, so that they can be compared with results plotted before: the Time column of
+ * removeCount.csv counts time steps of sampleTimeSlice minutes, so they are per time step rather than per minute.
+ * Values that cannot be calculated are NaN.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class RunStatistics implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final Simulation sim;
+
+	private int captures = 0;
+	private double firstCapture = Double.NaN;
+
+	// names of the cell types sampled, indexed by the type codes of the series, in the order first sampled.
+	private final ArrayList<String> typeNames = new ArrayList<String>();
+	// the type code of the series for each cell type, indexed by its CellTypes code; -1 if not yet sampled.
+	private final int[] typeCodes = new int[CellTypes.COUNT];
+	// the count series, one entry per sample of a cell type.
+	private long[] times = new long[256];
+	private int[] types = new int[256];
+	private int[] counts = new int[256];
+	private int[] removed = new int[256];
+	private int samples = 0;
+
+	public RunStatistics(Simulation sim)
+	{
+		this.sim = sim;
+		Arrays.fill(typeCodes, -1);
+	}
+
+	/** Records the capture of a fragment at the current simulation time. */
+	public void captured()
+	{
+		if (captures == 0)
+			firstCapture = sim.schedule.getTime();
+		captures++;
+	}
+
+	/** 
+	 * Records a sample of the number of cells of a type, by CellTypes code, present and removed at time step timeIter. 
+	 */
+	public void sample(long timeIter, int cellType, int count, int removedCount)
+	{
+		int type = typeCodes[cellType];
+		if (type < 0)
+		{
+			type = typeNames.size();
+			typeCodes[cellType] = type;
+			typeNames.add(CellTypes.label(cellType));
+		}
+		if (samples == times.length)
+		{
+			int capacity = samples * 2;
+			times = Arrays.copyOf(times, capacity);
+			types = Arrays.copyOf(types, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			removed = Arrays.copyOf(removed, capacity);
+		}
+		times[samples] = timeIter;
+		types[samples] = type;
+		counts[samples] = count;
+		removed[samples] = removedCount;
+		samples++;
+	}
+
+	/** Number of fragments captured so far. */
+	public int getCaptures()
+	{	return captures;	}
+
+	/** Simulated minutes until the first capture, NaN if there has been none. */
+	public double getFirstCaptureTime()
+	{	return firstCapture;	}
+
+	/** Simulated minutes elapsed. */
+	public double getElapsedTime()
+	{	return Math.max(sim.schedule.getTime(), 0.0);	}
+
+	/** Captures per minute. */
+	public double getRemovalRate()
+	{
+		double elapsed = getElapsedTime();
+		return elapsed > 0.0 ? captures / elapsed : Double.NaN;
+	}
+
+	/** Captures per minute, as a percentage of the fragment population. */
+	public double getPhagocytosisRate()
+	{	return sim.numFrags > 0 ? 100.0 * getRemovalRate() / sim.numFrags : Double.NaN;	}
+
+	/** Captures per minute per macrophage. */
+	public double getRemovalRatePerMacrophage()
+	{
+		int macs = sim.macrophages.getCellCount();
+		return macs > 0 ? getRemovalRate() / macs : Double.NaN;
+	}
+
+	/**
+	 * Fragments removed per time step, as plotResultCrossover.R and plotResultMacVolume.R calculate AverageRate: the
+	 * removed count of the last fragment sample over the time step it was taken at.
+	 */
+	public double getAverageRate()
+	{
+		int type = typeCodes[CellTypes.FRAGMENT];
+		for (int i = samples - 1; i >= 0; i--)
+			if (types[i] == type)
+				return times[i] > 0 ? (double) removed[i] / times[i] : Double.NaN;
+		return Double.NaN;
+	}
+
+	/** AverageRate as a percentage of the fragment population, as the R scripts calculate RatePct. */
+	public double getRatePct()
+	{	return sim.numFrags > 0 ? 100.0 * getAverageRate() / sim.numFrags : Double.NaN;	}
+
+	/** Number of samples in the count series, over all cell types. */
+	public int size()
+	{	return samples;	}
+
+	public long getTime(int sample)
+	{	return times[sample];	}
+
+	public String getType(int sample)
+	{	return typeNames.get(types[sample]);	}
+
+	public int getCount(int sample)
+	{	return counts[sample];	}
+
+	public int getRemovedCount(int sample)
+	{	return removed[sample];	}
+
+	/** The contents of summary.csv. */
+	String format()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(header("Summary")).append("Statistic,Value\n");
+		sb.append("elapsedTime,").append(getElapsedTime()).append('\n');
+		sb.append("fragments,").append(sim.numFrags).append('\n');
+		sb.append("macrophages,").append(sim.macrophages.getCellCount()).append('\n');
+		sb.append("removed,").append(captures).append('\n');
+		sb.append("firstCaptureTime,").append(firstCapture).append('\n');
+		sb.append("removalRate,").append(getRemovalRate()).append('\n');
+		sb.append("phagocytosisRate,").append(getPhagocytosisRate()).append('\n');
+		sb.append("removalRatePerMacrophage,").append(getRemovalRatePerMacrophage()).append('\n');
+		sb.append("AverageRate,").append(getAverageRate()).append('\n');
+		sb.append("RatePct,").append(getRatePct()).append('\n');
+		sb.append(header("CountSeries")).append("Count,RemovedCount,Time,CellType\n");
+		for (int i = 0; i < samples; i++)
+			sb.append(counts[i]).append(',').append(removed[i]).append(',').append(times[i])
+				.append(',').append(typeNames.get(types[i])).append('\n');
+		return sb.toString();
+	}
+
+	private static String header(String title)
+	{	return "\n" + title + "\n" + "==================== \n";	}
+}
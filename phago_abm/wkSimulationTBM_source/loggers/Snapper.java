@@ -45,13 +45,15 @@ import sim.util.media.PNGEncoder;
 
 public class Snapper implements Steppable 
 {
+	private static final long serialVersionUID = 1L;
+
 	private Display3D display;
 	private String movieDir;
 	private int sequenceNum = 0;		// used to label the snapshots taken of imaging volume sequentially. 
-	public Snapper(Display3D disp)
+	public Snapper(Display3D disp, String outputPath)
 	{
 		this.display = disp;
-		movieDir = Simulation.outputPath + "/stills";
+		movieDir = outputPath + "/stills";
 		File dir = new File(movieDir);
 		if (!dir.exists())
 		{
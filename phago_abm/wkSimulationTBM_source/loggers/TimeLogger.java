@@ -4,7 +4,6 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 
-import core.Simulation;
 
 /**
  * This program is free software: you can redistribute it and/or modify
@@ -29,7 +28,7 @@ import core.Simulation;
 public class TimeLogger 
 {
 
-	public static void writeTimeData(String dir)
+	public static void writeTimeData(String dir, double sampleTimeSlice)
 	{
 		System.out.println("Writing time information to the filesystem.");
 		try
@@ -42,7 +41,7 @@ public class TimeLogger
 			timeOut.write(" ==================== \n");
 			timeOut.write("Time [ms],Track\n");
 			double currentTime = 0.0;
-			double timeStepMiliSeconds = (60.0 * Simulation.sampleTimeSlice) * 1000;	// calculate seconds, convert to ms. 
+			double timeStepMiliSeconds = (60.0 * sampleTimeSlice) * 1000;	// calculate seconds, convert to ms. 
 				
 			for (int i = 0 ; i < 10; i++)
 			{				
@@ -0,0 +1,127 @@
+package loggers;
+
+import java.io.Serializable;
+
+import sim.util.Double3D;
+import utils.RunningMoments;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Streaming motility statistics of a single track, from which motility.csv is made in place of rebuilding them from
+ * _Position.csv (as plotMotilityCalibrationTracks.R and turn_angles.R did). Memory is constant per track: positions
+ * are kept only as far back as the longest MSD lag.
+ *
+ * Per step between consecutive samples: speed, and the turn angle between this step and the last, as a histogram and
+ * as a turn speed in radians per minute. A zero length step turns by 0, as in turn_angles.R. Per lag: the squared
+ * displacement over that many samples, from every sample far enough into the track.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+final class TrackMotility implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	// lags at which mean squared displacement is measured, in samples.
+	static final int[] LAGS = {1, 2, 4, 8, 16, 32};
+	// turn angles are counted in this many bins of equal width, over 0 to pi radians.
+	static final int TURN_BINS = 18;
+	private static final int HISTORY = 32;		// the longest lag.
+
+	// where the cell started, from which its displacement is measured.
+	private double originX, originY, originZ;
+	// the last HISTORY positions, x, y, z interleaved, sample i at (i % HISTORY).
+	private final double[] history = new double[3 * HISTORY];
+	private int samples = 0;
+	private double time;
+	private double stepX, stepY, stepZ;		// the last step.
+
+	final RunningMoments stepSpeed = new RunningMoments();
+	final RunningMoments turnAngle = new RunningMoments();
+	final RunningMoments turnSpeed = new RunningMoments();
+	final RunningMoments[] msd = new RunningMoments[LAGS.length];
+	final long[] turns = new long[TURN_BINS];
+
+	TrackMotility()
+	{
+		for (int l = 0; l < LAGS.length; l++)
+			msd[l] = new RunningMoments();
+	}
+
+	/** Adds a sample. startLoc is where the cell was placed, null if that is not known. */
+	void sample(double x, double y, double z, double now, Double3D startLoc)
+	{
+		if (samples == 0)
+		{
+			originX = startLoc != null ? startLoc.x : x;
+			originY = startLoc != null ? startLoc.y : y;
+			originZ = startLoc != null ? startLoc.z : z;
+		}
+		else
+		{
+			int last = 3 * ((samples - 1) % HISTORY);
+			double dx = x - history[last];
+			double dy = y - history[last + 1];
+			double dz = z - history[last + 2];
+			double dt = now - time;
+			double length = Math.sqrt(dx*dx + dy*dy + dz*dz);
+			if (dt > 0.0)
+				stepSpeed.add(length / dt);
+			if (samples > 1)
+			{
+				double previous = Math.sqrt(stepX*stepX + stepY*stepY + stepZ*stepZ);
+				double angle = 0.0;
+				if (length > 0.0 && previous > 0.0)
+				{
+					double cos = (dx*stepX + dy*stepY + dz*stepZ) / (length * previous);
+					angle = Math.acos(Math.max(-1.0, Math.min(1.0, cos)));
+				}
+				turnAngle.add(angle);
+				if (dt > 0.0)
+					turnSpeed.add(angle / dt);
+				turns[Math.min((int) (angle / Math.PI * TURN_BINS), TURN_BINS - 1)]++;
+			}
+			stepX = dx;
+			stepY = dy;
+			stepZ = dz;
+			for (int l = 0; l < LAGS.length && LAGS[l] <= samples; l++)
+			{
+				int then = 3 * ((samples - LAGS[l]) % HISTORY);
+				double lx = x - history[then];
+				double ly = y - history[then + 1];
+				double lz = z - history[then + 2];
+				msd[l].add(lx*lx + ly*ly + lz*lz);
+			}
+		}
+		int slot = 3 * (samples % HISTORY);
+		history[slot] = x;
+		history[slot + 1] = y;
+		history[slot + 2] = z;
+		time = now;
+		samples++;
+	}
+
+	/** Straight line distance from where the cell started to its latest sample. */
+	double originDisplacement()
+	{
+		if (samples == 0)
+			return 0.0;
+		int last = 3 * ((samples - 1) % HISTORY);
+		double dx = history[last] - originX;
+		double dy = history[last + 1] - originY;
+		double dz = history[last + 2] - originZ;
+		return Math.sqrt(dx*dx + dy*dy + dz*dz);
+	}
+}
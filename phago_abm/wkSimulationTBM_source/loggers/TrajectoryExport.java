@@ -0,0 +1,78 @@
+package loggers;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Converts a binary trajectory file into the Imaris compatible _Position.csv that the simulation writes when positions
+ * are output as text. Rows appear in the same order; positions are printed at the single precision they are stored at.
+ *
+ * Usage:	java loggers.TrajectoryExport _Position.traj [_Position.csv]
+ *
+ * The CSV is written alongside the trajectory file if no name is given.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class TrajectoryExport
+{
+	public static void export(String trajectoryFile, String csvFile)
+	{
+		TrajectoryReader reader = new TrajectoryReader(trajectoryFile);
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(csvFile), 1 << 16))
+		{
+			out.write(CellLogger.positionHeader("Position"));
+			List<String> types = reader.getTypes();
+			StringBuilder row = new StringBuilder(128);
+			for (long t : reader.getTimeSteps())
+			{
+				TrajectoryReader.Rows rows = reader.step(t);
+				for (int i = 0; i < rows.size; i++)
+				{
+					double meanderCount = rows.meander[i];
+					row.setLength(0);
+					row.append(rows.x[i]).append(',').append(rows.y[i]).append(',').append(rows.z[i])
+						.append(",um,Spot,Position,").append(rows.timeIter[i])
+						.append(',').append(rows.trackID[i]).append(',').append(types.get(rows.type[i]))
+						.append(',').append(meanderCount).append('\n');
+					out.append(row);
+				}
+			}
+		}
+		catch (IOException ex)
+		{
+			throw new RuntimeException("Could not write " + csvFile + ": " + ex.toString(), ex);
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		if (args.length < 1 || args.length > 2)
+		{
+			System.out.println("Usage: java loggers.TrajectoryExport _Position.traj [_Position.csv]");
+			return;
+		}
+		String csv = args.length == 2 ? args[1] : args[0].replaceAll("\\.traj$", "") + ".csv";
+		export(args[0], csv);
+		System.out.println("Wrote " + csv);
+	}
+}
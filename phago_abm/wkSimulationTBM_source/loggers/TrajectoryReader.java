@@ -0,0 +1,330 @@
+package loggers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Random access to a binary trajectory file (see TrajectoryWriter), by time step or by track ID. Only the records
+ * asked for are read. A file without an index, left by a run that did not finish, is scanned once on opening, up to
+ * its last complete record.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class TrajectoryReader implements Closeable
+{
+	/** Rows of a trajectory, in columns. */
+	public static class Rows
+	{
+		public final int size;
+		public final long[] timeIter;
+		public final int[] trackID;
+		public final float[] x, y, z;
+		public final int[] type;		// code of the row's cell type, see getTypes().
+		public final int[] meander;
+
+		private Rows(int size)
+		{
+			this.size = size;
+			timeIter = new long[size];
+			trackID = new int[size];
+			x = new float[size];
+			y = new float[size];
+			z = new float[size];
+			type = new int[size];
+			meander = new int[size];
+		}
+	}
+
+	private final String fileName;
+	private final FileChannel channel;
+	private final ArrayList<String> types = new ArrayList<String>();
+	// every step record, in file order.
+	private long[] stepTimes = new long[64];
+	private long[] stepOffsets = new long[64];
+	private int steps = 0;
+	// first and last step holding each track ID, from 1.
+	private int[] trackFirst;
+	private int[] trackLast;
+
+	@SuppressWarnings("resource")
+	public TrajectoryReader(String fileName)
+	{
+		this.fileName = fileName;
+		try
+		{
+			channel = new RandomAccessFile(fileName, "r").getChannel();
+			ByteBuffer header = read(0, 8);
+			if (header.getInt() != TrajectoryWriter.MAGIC)
+				throw new RuntimeException(fileName + " is not a trajectory file.");
+			int version = header.getInt();
+			if (version != TrajectoryWriter.VERSION)
+				throw new RuntimeException(fileName + " has unsupported trajectory format version " + version);
+			if (!readIndex())
+				scan();
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Could not read trajectory file " + fileName + ": " + e.toString(), e);
+		}
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException
+	{
+		ByteBuffer b = ByteBuffer.allocate(length);
+		while (b.hasRemaining())
+			if (channel.read(b, position + b.position()) < 0)
+				throw new IOException("unexpected end of " + fileName);
+		b.flip();
+		return b;
+	}
+
+	/** Reads the index and the type definitions. Returns false if the file has no index. */
+	private boolean readIndex() throws IOException
+	{
+		long size = channel.size();
+		if (size < 8 + 12)
+			return false;
+		ByteBuffer trailer = read(size - 12, 12);
+		long indexOffset = trailer.getLong();
+		if (trailer.getInt() != TrajectoryWriter.END || indexOffset < 8 || indexOffset >= size - 12)
+			return false;
+		ByteBuffer head = read(indexOffset, 5);
+		if (head.get() != TrajectoryWriter.INDEX)
+			return false;
+		ByteBuffer index = read(indexOffset + 5, head.getInt());
+		steps = index.getInt();
+		stepTimes = new long[steps];
+		stepOffsets = new long[steps];
+		for (int s = 0; s < steps; s++)
+		{
+			stepTimes[s] = index.getLong();
+			stepOffsets[s] = index.getLong();
+		}
+		int tracks = index.getInt();
+		trackFirst = new int[tracks];
+		trackLast = new int[tracks];
+		for (int t = 0; t < tracks; t++)
+		{
+			trackFirst[t] = index.getInt();
+			trackLast[t] = index.getInt();
+		}
+		// types are defined before the steps using them.
+		long end = steps > 0 ? stepOffsets[steps - 1] : indexOffset;
+		for (long position = 8; position < end; )
+		{
+			ByteBuffer rh = read(position, 5);
+			byte tag = rh.get();
+			int length = rh.getInt();
+			if (tag == TrajectoryWriter.TYPE)
+				defineType(read(position + 5, length));
+			position += 5 + length;
+		}
+		return true;
+	}
+
+	/** Builds the index by reading every record, stopping at the end of the file or at an incomplete record. */
+	private void scan() throws IOException
+	{
+		ArrayList<int[]> tracks = new ArrayList<int[]>();
+		long size = channel.size();
+		long position = 8;
+		while (position + 5 <= size)
+		{
+			ByteBuffer rh = read(position, 5);
+			byte tag = rh.get();
+			int length = rh.getInt();
+			if (length < 0 || position + 5 + length > size)
+				break;
+			if (tag == TrajectoryWriter.TYPE)
+				defineType(read(position + 5, length));
+			else if (tag == TrajectoryWriter.STEP)
+			{
+				Rows rows = decode(read(position + 5, length));
+				if (steps == stepTimes.length)
+				{
+					stepTimes = Arrays.copyOf(stepTimes, steps * 2);
+					stepOffsets = Arrays.copyOf(stepOffsets, steps * 2);
+				}
+				stepTimes[steps] = rows.size > 0 ? rows.timeIter[0] : 0;
+				stepOffsets[steps] = position;
+				for (int i = 0; i < rows.size; i++)
+				{
+					int id = rows.trackID[i];
+					while (tracks.size() < id)
+						tracks.add(new int[] {steps, steps});
+					tracks.get(id - 1)[1] = steps;
+				}
+				steps++;
+			}
+			else if (tag != TrajectoryWriter.INDEX)
+				break;
+			position += 5 + length;
+		}
+		trackFirst = new int[tracks.size()];
+		trackLast = new int[tracks.size()];
+		for (int t = 0; t < tracks.size(); t++)
+		{
+			trackFirst[t] = tracks.get(t)[0];
+			trackLast[t] = tracks.get(t)[1];
+		}
+	}
+
+	private void defineType(ByteBuffer b)
+	{
+		int code = b.get();
+		byte[] utf = new byte[b.getShort()];
+		b.get(utf);
+		while (types.size() <= code)
+			types.add(null);
+		types.set(code, new String(utf, StandardCharsets.UTF_8));
+	}
+
+	private static Rows decode(ByteBuffer b)
+	{
+		long timeIter = b.getLong();
+		Rows rows = new Rows(b.getInt());
+		int n = rows.size;
+		Arrays.fill(rows.timeIter, timeIter);
+		for (int i = 0; i < n; i++)	rows.x[i] = b.getFloat();
+		for (int i = 0; i < n; i++)	rows.y[i] = b.getFloat();
+		for (int i = 0; i < n; i++)	rows.z[i] = b.getFloat();
+		for (int i = 0; i < n; i++)	rows.trackID[i] = b.getInt();
+		for (int i = 0; i < n; i++)	rows.type[i] = b.get();
+		for (int i = 0; i < n; i++)
+		{
+			int v = 0;
+			for (int shift = 0; ; shift += 7)
+			{
+				byte next = b.get();
+				v |= (next & 0x7f) << shift;
+				if (next >= 0)
+					break;
+			}
+			rows.meander[i] = v;
+		}
+		return rows;
+	}
+
+	private Rows readStep(int step)
+	{
+		try
+		{
+			ByteBuffer rh = read(stepOffsets[step], 5);
+			rh.get();
+			return decode(read(stepOffsets[step] + 5, rh.getInt()));
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Could not read trajectory file " + fileName + ": " + e.toString(), e);
+		}
+	}
+
+	/** Names of the cell types, indexed by the type codes of the rows. */
+	public List<String> getTypes()
+	{	return types;	}
+
+	/** The time steps with rows, in the order written. */
+	public long[] getTimeSteps()
+	{
+		long[] times = new long[steps];
+		int n = 0;
+		for (int s = 0; s < steps; s++)
+			if (n == 0 || times[n - 1] != stepTimes[s])
+				times[n++] = stepTimes[s];
+		return Arrays.copyOf(times, n);
+	}
+
+	/** Number of track IDs; IDs run from 1 to this. */
+	public int getTrackCount()
+	{	return trackFirst.length;	}
+
+	/** All rows of the given time step. */
+	public Rows step(long timeIter)
+	{
+		// steps are written in time order.
+		int lo = 0, hi = steps;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (stepTimes[mid] < timeIter)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		ArrayList<Rows> parts = new ArrayList<Rows>();
+		for (int s = lo; s < steps && stepTimes[s] == timeIter; s++)
+			parts.add(readStep(s));
+		return concatenate(parts, 0);
+	}
+
+	/** All rows of the given track ID, in time order. */
+	public Rows track(int trackID)
+	{
+		if (trackID < 1 || trackID > trackFirst.length)
+			throw new RuntimeException("No track " + trackID + " in " + fileName);
+		ArrayList<Rows> parts = new ArrayList<Rows>();
+		for (int s = trackFirst[trackID - 1]; s <= trackLast[trackID - 1]; s++)
+			parts.add(readStep(s));
+		return concatenate(parts, trackID);
+	}
+
+	/** Joins rows into one set, keeping only those of the given track ID unless it is 0. */
+	private static Rows concatenate(List<Rows> parts, int trackID)
+	{
+		int n = 0;
+		for (Rows p : parts)
+			for (int i = 0; i < p.size; i++)
+				if (trackID == 0 || p.trackID[i] == trackID)
+					n++;
+		Rows rows = new Rows(n);
+		int r = 0;
+		for (Rows p : parts)
+			for (int i = 0; i < p.size; i++)
+				if (trackID == 0 || p.trackID[i] == trackID)
+				{
+					rows.timeIter[r] = p.timeIter[i];
+					rows.trackID[r] = p.trackID[i];
+					rows.x[r] = p.x[i];
+					rows.y[r] = p.y[i];
+					rows.z[r] = p.z[i];
+					rows.type[r] = p.type[i];
+					rows.meander[r] = p.meander[i];
+					r++;
+				}
+		return rows;
+	}
+
+	@Override
+	public void close()
+	{
+		try
+		{
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Could not close trajectory file " + fileName + ": " + e.toString(), e);
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package loggers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Encodes cell positions in the binary trajectory format, the compact alternative to _Position.csv. The writer only
+ * produces bytes; CellLogger hands them to its BackgroundWriter. All values are big endian. The file is:
+ *
+ *  header:		"PTRJ", int version.
+ *  records:	byte tag, int length of the rest of the record in bytes, then
+ *  			'T', a cell type:	byte code, short name length, name in UTF-8.
+ *  			'S', a time step:	long time step, int rows n, float x[n], float y[n], float z[n], int track ID[n],
+ *  								byte type code[n], meander count[n] as unsigned LEB128 varints.
+ *  			'I', the index:		int steps, then per step (long time step, long offset of its record); int tracks,
+ *  								then per track ID from 1 (int first step, int last step), as indices into the steps.
+ *  trailer:	long offset of the index record, "PEND".
+ *
+ * Rows hold the same values as the CSV, bar positions being single precision. Types are defined before the first
+ * step that uses them, so a file cut short by a failed run can still be read up to its last complete record.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class TrajectoryWriter implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	static final int MAGIC = 0x5054524a;		// "PTRJ".
+	static final int END = 0x50454e44;			// "PEND".
+	static final int VERSION = 1;
+	static final byte TYPE = 'T';
+	static final byte STEP = 'S';
+	static final byte INDEX = 'I';
+
+	// rows of the step being encoded.
+	private long timeIter;
+	private int rows = 0;
+	private float[] xs = new float[256], ys = new float[256], zs = new float[256];
+	private int[] trackIDs = new int[256];
+	private byte[] types = new byte[256];
+	private int[] meanders = new int[256];
+
+	// cell types defined in the file so far.
+	private final ArrayList<Boolean> defined = new ArrayList<Boolean>();
+
+	// bytes encoded but not yet taken, and the number of bytes taken before them.
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream(1 << 16);
+	private long offset = 0;
+
+	// the index: offset of every step record, and the first and last step of every track ID.
+	private long[] stepTimes = new long[64];
+	private long[] stepOffsets = new long[64];
+	private int steps = 0;
+	private int[] trackFirst = new int[256];
+	private int[] trackLast = new int[256];
+	private int tracks = 0;
+
+	public TrajectoryWriter()
+	{
+		ByteBuffer b = ByteBuffer.allocate(8);
+		b.putInt(MAGIC).putInt(VERSION);
+		pending.write(b.array(), 0, b.position());
+	}
+
+	/** Adds a row. Rows of one time step must be added together; a new time step starts a new record. */
+	public void add(long timeIter, int trackID, int type, String typeName, double x, double y, double z, int meander)
+	{
+		if (rows > 0 && timeIter != this.timeIter)
+			endStep();
+		this.timeIter = timeIter;
+		if (type >= defined.size() || !defined.get(type))
+			defineType(type, typeName);
+		if (rows == xs.length)
+		{
+			int capacity = rows * 2;
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+			zs = Arrays.copyOf(zs, capacity);
+			trackIDs = Arrays.copyOf(trackIDs, capacity);
+			types = Arrays.copyOf(types, capacity);
+			meanders = Arrays.copyOf(meanders, capacity);
+		}
+		xs[rows] = (float) x;
+		ys[rows] = (float) y;
+		zs[rows] = (float) z;
+		trackIDs[rows] = trackID;
+		types[rows] = (byte) type;
+		meanders[rows] = meander;
+		rows++;
+		// the step record is appended once the step is complete; its index will be `steps`.
+		if (trackID > tracks)
+		{
+			if (trackID > trackFirst.length)
+			{
+				trackFirst = Arrays.copyOf(trackFirst, Math.max(trackID, trackFirst.length * 2));
+				trackLast = Arrays.copyOf(trackLast, trackFirst.length);
+			}
+			for (int id = tracks + 1; id <= trackID; id++)
+				trackFirst[id - 1] = steps;
+			tracks = trackID;
+		}
+		trackLast[trackID - 1] = steps;
+	}
+
+	private void defineType(int type, String name)
+	{
+		if (type > Byte.MAX_VALUE)
+			throw new RuntimeException("Too many cell types for the trajectory format: " + name);
+		byte[] utf = name.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer b = ByteBuffer.allocate(1 + 4 + 1 + 2 + utf.length);
+		b.put(TYPE).putInt(1 + 2 + utf.length).put((byte) type).putShort((short) utf.length).put(utf);
+		pending.write(b.array(), 0, b.position());
+		while (defined.size() <= type)
+			defined.add(false);
+		defined.set(type, true);
+	}
+
+	private void endStep()
+	{
+		if (rows == 0)
+			return;
+		int length = 8 + 4 + rows * (4 + 4 + 4 + 4 + 1);
+		for (int i = 0; i < rows; i++)
+			length += varintSize(meanders[i]);
+		ByteBuffer b = ByteBuffer.allocate(1 + 4 + length);
+		b.put(STEP).putInt(length).putLong(timeIter).putInt(rows);
+		for (int i = 0; i < rows; i++)	b.putFloat(xs[i]);
+		for (int i = 0; i < rows; i++)	b.putFloat(ys[i]);
+		for (int i = 0; i < rows; i++)	b.putFloat(zs[i]);
+		for (int i = 0; i < rows; i++)	b.putInt(trackIDs[i]);
+		b.put(types, 0, rows);
+		for (int i = 0; i < rows; i++)
+		{
+			int v = meanders[i];
+			while ((v & ~0x7f) != 0)
+			{
+				b.put((byte) ((v & 0x7f) | 0x80));
+				v >>>= 7;
+			}
+			b.put((byte) v);
+		}
+
+		if (steps == stepTimes.length)
+		{
+			stepTimes = Arrays.copyOf(stepTimes, steps * 2);
+			stepOffsets = Arrays.copyOf(stepOffsets, steps * 2);
+		}
+		stepTimes[steps] = timeIter;
+		stepOffsets[steps] = offset + pending.size();
+		steps++;
+		pending.write(b.array(), 0, b.position());
+		rows = 0;
+	}
+
+	private static int varintSize(int v)
+	{
+		int size = 1;
+		while ((v & ~0x7f) != 0)
+		{
+			v >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/** Completes the current time step, and returns every byte encoded since the last call. */
+	public byte[] take()
+	{
+		endStep();
+		byte[] bytes = pending.toByteArray();
+		pending.reset();
+		offset += bytes.length;
+		return bytes;
+	}
+
+	/** Completes the file, returning its remaining bytes: the index and trailer. */
+	public byte[] finish()
+	{
+		endStep();
+		long indexOffset = offset + pending.size();
+		int length = 4 + steps * 16 + 4 + tracks * 8;
+		ByteBuffer b = ByteBuffer.allocate(1 + 4 + length + 12);
+		b.put(INDEX).putInt(length).putInt(steps);
+		for (int s = 0; s < steps; s++)
+			b.putLong(stepTimes[s]).putLong(stepOffsets[s]);
+		b.putInt(tracks);
+		for (int t = 0; t < tracks; t++)
+			b.putInt(trackFirst[t]).putInt(trackLast[t]);
+		b.putLong(indexOffset).putInt(END);
+		pending.write(b.array(), 0, b.position());
+		return take();
+	}
+}
@@ -13,6 +13,7 @@ import core.Cell;
 import core.MigratoryCell;
 import core.Simulation;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 import utils.Quaternion;
 
 /**
@@ -36,12 +37,15 @@ import utils.Quaternion;
  */
 public class Ballistic implements Orientation, Translation
 {
-	protected static double speed;
+	private static final long serialVersionUID = 1L;
+
+	protected double speed;
 	
-	// singleton pattern. 
-	public static Ballistic instance = new Ballistic();
-	private Ballistic()
-	{}
+	// the simulation run this actuator serves.
+	private final Simulation sim;
+
+	public Ballistic(Simulation sim)
+	{	this.sim = sim;	}
 	
 	public Quaternion newOrientation(Quaternion orientation)
 	{
@@ -55,7 +59,7 @@ public class Ballistic implements Orientation, Translation
 		Double3D facing = orientation.transform(MigratoryCell.x_axis);		
 		/* apply movement to the cell in the direction that it faces.  */				
 		double dist = Math.min(25.0, speed);	// units in um/min. Ensure not faster than maximum possible neutrophil spd. 
-		dist *= Simulation.timeSlice;
+		dist *= sim.timeSlice;
 		// translate would-be backwards movement into forwards. 
 		dist = Math.abs(dist);
 		// convert unit vector describing cell's orientation in absolute space to a move forward. 
@@ -63,7 +67,7 @@ public class Ballistic implements Orientation, Translation
 		return move;		
 	}
 	
-	public static void loadParameters(Document params) throws XPathExpressionException
+	public void loadParameters(Document params) throws XPathExpressionException
 	{
 		XPath xPath =  XPathFactory.newInstance().newXPath(); 
 		Node n;
@@ -72,10 +76,9 @@ public class Ballistic implements Orientation, Translation
 		speed = Double.parseDouble(n.getTextContent());
 	}
 
-	public Double3D move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
-			double speedS_StD) {
+	public void move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
+			double speedS_StD, MutableDouble3D move) {
 		// TODO Auto-generated method stub
-		return null;
 	}
 
 	public Quaternion newOrientation(Quaternion orientation, ArrayList<Double> pitchData) {
@@ -95,9 +98,9 @@ public class Ballistic implements Orientation, Translation
 	}
 
 	@Override
-	public Double3D move(Quaternion orientation, Cell cell) {
+	public boolean move(Quaternion orientation, Cell cell, MutableDouble3D move) {
 		// TODO Auto-generated method stub
-		return null;
+		return false;
 	}
 
 }
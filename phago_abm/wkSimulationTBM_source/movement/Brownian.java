@@ -3,18 +3,12 @@ package movement;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-
+import ec.util.MersenneTwisterFast;
 import core.Cell;
 import core.MigratoryCell;
 import core.Simulation;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 import utils.Quaternion;
 
 /**
@@ -44,17 +38,26 @@ import utils.Quaternion;
  */
 public class Brownian implements Orientation, Translation
 {
-	protected static double speedStD;
+	private static final long serialVersionUID = 1L;
+
+	protected double speedStD;
 
 
-	// singleton pattern. 
-	public static Brownian instance = new Brownian();
-	private Brownian()
-	{}
+	// the simulation run this actuator serves.
+	private final Simulation sim;
+	// random number stream of the cell population this actuator moves.
+	private final MersenneTwisterFast rng;
+
+	public Brownian(Simulation sim, MersenneTwisterFast rng, double speedStD)
+	{
+		this.sim = sim;
+		this.rng = rng;
+		this.speedStD = speedStD;
+	}
 	
 	public Quaternion newOrientation(Quaternion orientation)
 	{
-		return Quaternion.randomUniform();
+		return Quaternion.randomUniform(rng);
 	}
 	
 	public Double3D move(Quaternion orientation)
@@ -65,11 +68,11 @@ public class Brownian implements Orientation, Translation
 		Double3D facing = orientation.transform(MigratoryCell.x_axis);
 		double dist = 0;
 		
-		dist = Simulation.rng.nextGaussian() * speedStD;
+		dist = rng.nextGaussian() * speedStD;
 		
 		/* apply movement to the cell in the direction that it faces.  */		
 		dist = Math.min(25.0, dist);	// units in um/min. Ensure not faster than maximum possible neutrophil spd. 
-		dist *= Simulation.timeSlice;
+		dist *= sim.timeSlice;
 		// translate would-be backwards movement into forwards. 
 		dist = Math.abs(dist);
 		// convert unit vector describing cell's orientation in absolute space to a move forward. 
@@ -77,20 +80,9 @@ public class Brownian implements Orientation, Translation
 		return move;		
 	}
 	
-	public static void loadParameters(Document params) throws XPathExpressionException
-	{
-		XPath xPath =  XPathFactory.newInstance().newXPath(); 
-		Node n;
-
-		n = (Node) xPath.compile("/params/Movement/Brownian/speedStD")
-				.evaluate(params, XPathConstants.NODE);
-		speedStD = Double.parseDouble(n.getTextContent());
-	}
-
-	public Double3D move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
-			double speedS_StD) {
+	public void move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
+			double speedS_StD, MutableDouble3D move) {
 		// TODO Auto-generated method stub
-		return null;
 	}
 
 	public Quaternion newOrientation(Quaternion orientation, ArrayList<Double> pitchData) {
@@ -111,8 +103,8 @@ public class Brownian implements Orientation, Translation
 	}
 
 	@Override
-	public Double3D move(Quaternion orientation, Cell cell) {
+	public boolean move(Quaternion orientation, Cell cell, MutableDouble3D move) {
 		// TODO Auto-generated method stub
-		return null;
+		return false;
 	}
 }
@@ -2,10 +2,12 @@ package movement;
 
 import java.util.ArrayList;
 
+import ec.util.MersenneTwisterFast;
 import core.Cell;
 import core.MigratoryCell;
 import core.Simulation;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 import utils.Quaternion;
 
 /**
@@ -38,40 +40,38 @@ import utils.Quaternion;
  */
 public class BrownianMeander implements Orientation, Translation
 {
-	protected static double speedStD;
+	private static final long serialVersionUID = 1L;
 
 
-	// singleton pattern. 
-	public static BrownianMeander instance = new BrownianMeander();
-	private BrownianMeander()
-	{}
-	
-	public Quaternion newOrientation(Quaternion orientation, Cell cell)
+	// the simulation run this actuator serves.
+	private final Simulation sim;
+	// random number stream of the cell population this actuator moves.
+	private final MersenneTwisterFast rng;
+
+	public BrownianMeander(Simulation sim, MersenneTwisterFast rng)
 	{
-		return Quaternion.randomUniform();
+		this.sim = sim;
+		this.rng = rng;
 	}
 	
-	private static Double3D getStartDirection(Cell cell)
+	public Quaternion newOrientation(Quaternion orientation, Cell cell)
 	{
-		Double3D startLoc = cell.getStartLoc();
-		Double3D startDirection = startLoc.subtract( cell.getCurrentLocation() );
-
-		return startDirection; 
+		return orientation.setRandomUniform(rng);
 	}
 	
-	public Double3D move(Quaternion orientation, Cell cell)
+	public boolean move(Quaternion orientation, Cell cell, MutableDouble3D move)
 	{	
 		// cell moves along it's x axis. Find its orientation in absolute space, by transforming x-axis. This gives a 
 		// unit vector poining in the direction of the cell's orientation. 
 				
-		Double3D facing = orientation.transform(MigratoryCell.x_axis);
+		orientation.transform(MigratoryCell.x_axis, move);
 		
-		double dist = cell.getSpeed() * Simulation.timeSlice;
+		double dist = cell.getSpeed() * sim.timeSlice;
 		// translate would-be backwards movement into forwards. 
 		dist = Math.abs(dist);
 
 		// convert unit vector describing cell's orientation in absolute space to a move forward. 
-		Double3D move = new Double3D(facing.x * dist, facing.y * dist, facing.z * dist);		
+		move.multiplyIn(dist);
 
 		
 		double meanderChance = cell.getMeanderChance();
@@ -80,50 +80,56 @@ public class BrownianMeander implements Orientation, Translation
 			//mPolarity = 1; // indicates confinement (moving towards start)
 		}
 		
-		if (Simulation.rng.nextFloat() < Math.abs(meanderChance)) {
-			Double3D startDirection = getStartDirection(cell);
+		if (rng.nextFloat() < Math.abs(meanderChance)) {
+			// direction from the cell back to its start location.
+			Double3D startLoc = cell.getStartLoc();
+			Double3D location = cell.getCurrentLocation();
+			double sx = startLoc.x - location.x;
+			double sy = startLoc.y - location.y;
+			double sz = startLoc.z - location.z;
 			
-			if (!Double.isNaN(startDirection.getX()) && (startDirection.getX() + startDirection.getY() + startDirection.getZ())!=0) {
-				Double3D mDir = new Double3D(startDirection.x * mPolarity, startDirection.y * mPolarity, startDirection.z * mPolarity);
+			if (!Double.isNaN(sx) && (sx + sy + sz)!=0) {
+				double mDirx = sx * mPolarity;
+				double mDiry = sy * mPolarity;
+				double mDirz = sz * mPolarity;
 
-					double meanderDirNorm = Math.sqrt(mDir.x*mDir.x+ mDir.y*mDir.y + mDir.z*mDir.z);
+					double meanderDirNorm = Math.sqrt(mDirx*mDirx+ mDiry*mDiry + mDirz*mDirz);
 					
 					// Vector of displacement for meandering, for this timestep.
-					double Mx = dist * mDir.x / meanderDirNorm;
-					double My = dist * mDir.y / meanderDirNorm;
-					double Mz = dist * mDir.z / meanderDirNorm;
+					double Mx = dist * mDirx / meanderDirNorm;
+					double My = dist * mDiry / meanderDirNorm;
+					double Mz = dist * mDirz / meanderDirNorm;
 					
 					if (!Double.isNaN(Mx) && Mx != 0.0) {
-						move = new Double3D(Mx, My, Mz);
+						move.setTo(Mx, My, Mz);
 						cell.addMeanderCount();
 					}
 				}
 			}
 
-		return move;	
+		return true;	
 	}
 
-	public Double3D move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
-			double speedS_StD) {
-		double speedMean = (Simulation.rng.nextGaussian() * speedM_StD) + speedM_Mean;
+	public void move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
+			double speedS_StD, MutableDouble3D move) {
+		double speedMean = (rng.nextGaussian() * speedM_StD) + speedM_Mean;
 		// invert negative values. 
 		if (speedMean < 0.0) 	speedMean *= -1.0;
-		speedStD = (Simulation.rng.nextGaussian() * speedS_StD) + speedS_Mean;
+		double speedStD = (rng.nextGaussian() * speedS_StD) + speedS_Mean;
 		if (speedStD < 0.0) speedStD *= -1.0;		// invert negative values
 		
 		// cell moves along it's x axis. Find its orientation in absolute space, by transforming x-axis. This gives a 
 		// unit vector poining in the direction of the cell's orientation. 
-		Double3D facing = orientation.transform(MigratoryCell.x_axis);		
+		orientation.transform(MigratoryCell.x_axis, move);		
 		/* apply movement to the cell in the direction that it faces */		
-		double currentSpeed = (Simulation.rng.nextGaussian() * speedStD) + speedMean;
+		double currentSpeed = (rng.nextGaussian() * speedStD) + speedMean;
 		// units in um/min. Ensure not faster than maximum possible neutrophil spd.
 		currentSpeed = Math.min(25.0, currentSpeed);	 
-		double dist = currentSpeed * Simulation.timeSlice;
+		double dist = currentSpeed * sim.timeSlice;
 		// translate would-be backwards movement into forwards. 
 		dist = Math.abs(dist);
 		// convert unit vector describing cell's orientation in absolute space to a move forward. 
-		Double3D move = new Double3D(facing.x * dist, facing.y * dist, facing.z * dist);			
-		return move;
+		move.multiplyIn(dist);
 	}
 
 	public Quaternion newOrientation(Quaternion orientation, ArrayList<Double> pitchData) {
@@ -1,13 +1,14 @@
 package movement;
 
 import java.util.ArrayList;
-import org.apache.commons.math3.distribution.BetaDistribution;
+import ec.util.MersenneTwisterFast;
 import core.Cell;
-import core.Fragment;
+import core.CellTypes;
 import core.MigratoryCell;
 import core.Simulation;
-import core.SimulationTBM;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
+import utils.BetaSampler;
 import utils.Quaternion;
 
 /**
@@ -40,13 +41,24 @@ import utils.Quaternion;
  */
 public class HeterogeneousBetaMeander implements Orientation, Translation
 {
-	protected static double speedStD;
+	private static final long serialVersionUID = 1L;
 
 
-	// singleton pattern. 
-	public static HeterogeneousBetaMeander instance = new HeterogeneousBetaMeander();
-	private HeterogeneousBetaMeander()
-	{}
+	// the simulation run this actuator serves.
+	private final Simulation sim;
+	// random number stream of the cell population this actuator moves.
+	private final MersenneTwisterFast rng;
+	// roll and pitch rates are beta distributed, scaled by scaleFactor. The sampler is built once per population.
+	private final BetaSampler turnSampler;
+	private final double scaleFactor;
+
+	public HeterogeneousBetaMeander(Simulation sim, MersenneTwisterFast rng, double alpha, double beta, double scaleFactor)
+	{
+		this.sim = sim;
+		this.rng = rng;
+		this.turnSampler = new BetaSampler(alpha, beta);
+		this.scaleFactor = scaleFactor;
+	}
 	
 	@Override
 	public Quaternion newOrientation(Quaternion orientation, Cell cell) 
@@ -56,67 +68,50 @@ public class HeterogeneousBetaMeander implements Orientation, Translation
 		// roll the cell along it's x-axis (axis in which it faces). 
 		// This rolls the cell, but doesn't change it's heading or pitch. 
 		
-		double shapeA = cell.getBetaDistrParams().get(0);
-		double shapeB = cell.getBetaDistrParams().get(1);
-		double scaleFactor = cell.getBetaDistrParams().get(2);
-
-		BetaDistribution betaDist = new BetaDistribution(shapeA, shapeB);
-
-		double rollRate = betaDist.sample() * scaleFactor;
+		double rollRate = turnSampler.sample(rng) * scaleFactor;
 	
 		double roll;
 		if (rollRate < 0.0)
 			// if mean roll rate has been set to a negative value, assume this indicates a uniform distribution
 			// should be used. 
-			roll = Simulation.rng.nextDouble() * 2.0 * Math.PI;
+			roll = rng.nextDouble() * 2.0 * Math.PI;
 		else{
 			roll = rollRate;
-			if (Simulation.rng.nextBoolean())
+			if (rng.nextBoolean())
 				roll *= -1.0;		// cells can roll in either direction.
-			roll *= Simulation.timeSlice;
+			roll *= sim.timeSlice;
 		}
-		// roll as a quaternion.
-		Quaternion rotateQ = Quaternion.representRotation
-				(roll, MigratoryCell.x_axis.x, MigratoryCell.x_axis.y, MigratoryCell.x_axis.z); 
-		// multiply orientation by rotateQ, because rotateQ is calculated relative to cell, not in absolute space. 
-		orientation = orientation.multiply(rotateQ).normalise();	// alter the cell's orientation. 
+		// apply the roll after orientation, because it is calculated relative to cell, not in absolute space. 
+		orientation.rotate(roll, MigratoryCell.x_axis.x, MigratoryCell.x_axis.y, MigratoryCell.x_axis.z)
+				.normalise();	// alter the cell's orientation. 
 		
-		double pitchRate = betaDist.sample() * scaleFactor;
+		double pitchRate = turnSampler.sample(rng) * scaleFactor;
 		// change cell pitch (roll along the y axis). Pitch can be changed in both positive and negative directions.
 		double pitch = pitchRate;
 		// randomly invert values. This makes no difference to zero-mean distributions, and avoids a bias in 
 		// non-zero-mean distributions. Hence, applicable to both. 
-		if (Simulation.rng.nextBoolean())
+		if (rng.nextBoolean())
 			pitch *= -1.0;
-		pitch *= Simulation.timeSlice;		// account for timestep.
-		Quaternion pitchQ = Quaternion.representRotation
-				(pitch, MigratoryCell.y_axis.x, MigratoryCell.y_axis.y, MigratoryCell.y_axis.z);
-		// multiply orientation by rotateQ, because pitchQ is calculated relative to cell, not in absolute space.
-		orientation = orientation.multiply(pitchQ).normalise();
+		pitch *= sim.timeSlice;		// account for timestep.
+		// apply the pitch after orientation, because it is calculated relative to cell, not in absolute space.
+		orientation.rotate(pitch, MigratoryCell.y_axis.x, MigratoryCell.y_axis.y, MigratoryCell.y_axis.z)
+				.normalise();
 		return orientation;
 	}
 	
-	private static Double3D getStartDirection(Cell cell)
-	{
-		Double3D startLoc = cell.getStartLoc();
-		Double3D startDirection = startLoc.subtract( cell.getCurrentLocation() );
-
-		return startDirection; 
-	}
-	
-	public Double3D move(Quaternion orientation, Cell cell)
+	public boolean move(Quaternion orientation, Cell cell, MutableDouble3D move)
 	{	
 		// cell moves along it's x axis. Find its orientation in absolute space, by transforming x-axis. This gives a 
 		// unit vector poining in the direction of the cell's orientation. 
 				
-		Double3D facing = orientation.transform(MigratoryCell.x_axis);
+		orientation.transform(MigratoryCell.x_axis, move);
 		
-		double dist = cell.getSpeed() * Simulation.timeSlice;
+		double dist = cell.getSpeed() * sim.timeSlice;
 		// translate would-be backwards movement into forwards. 
 		dist = Math.abs(dist);
 
 		// convert unit vector describing cell's orientation in absolute space to a move forward. 
-		Double3D move = new Double3D(facing.x * dist, facing.y * dist, facing.z * dist);		
+		move.multiplyIn(dist);
 
 		
 		double meanderChance = cell.getMeanderChance();
@@ -125,56 +120,60 @@ public class HeterogeneousBetaMeander implements Orientation, Translation
 			//mPolarity = 1; // indicates confinement (moving towards start)
 		}
 		
-		if (Simulation.rng.nextFloat() < Math.abs(meanderChance)) {
-			Double3D startDirection = getStartDirection(cell);
+		if (rng.nextFloat() < Math.abs(meanderChance)) {
+			// direction from the cell back to its start location.
+			Double3D startLoc = cell.getStartLoc();
+			Double3D location = cell.getCurrentLocation();
+			double sx = startLoc.x - location.x;
+			double sy = startLoc.y - location.y;
+			double sz = startLoc.z - location.z;
 			
-			if (!Double.isNaN(startDirection.getX()) && (startDirection.getX() + startDirection.getY() + startDirection.getZ())!=0) {
-				Double3D mDir = new Double3D(startDirection.x * mPolarity, startDirection.y * mPolarity, startDirection.z * mPolarity);
+			if (!Double.isNaN(sx) && (sx + sy + sz)!=0) {
+				double mDirx = sx * mPolarity;
+				double mDiry = sy * mPolarity;
+				double mDirz = sz * mPolarity;
 
-					double meanderDirNorm = Math.sqrt(mDir.x*mDir.x+ mDir.y*mDir.y + mDir.z*mDir.z);
+					double meanderDirNorm = Math.sqrt(mDirx*mDirx+ mDiry*mDiry + mDirz*mDirz);
 					
 					// Vector of displacement for meandering, for this timestep.
-					double Mx = dist * mDir.x / meanderDirNorm;
-					double My = dist * mDir.y / meanderDirNorm;
-					double Mz = dist * mDir.z / meanderDirNorm;
+					double Mx = dist * mDirx / meanderDirNorm;
+					double My = dist * mDiry / meanderDirNorm;
+					double Mz = dist * mDirz / meanderDirNorm;
 					
 					if (!Double.isNaN(Mx) && Mx != 0.0) {
-						move = new Double3D(Mx, My, Mz);
+						move.setTo(Mx, My, Mz);
 						cell.addMeanderCount();
 					}
-				} else if (Double.isNaN(startDirection.getX()) && cell.getType() == "Fragment-LogNorm") {
-					
-					Simulation.space.cellField.remove(cell);
-					Fragment bcell = new Fragment(Simulation.instance.schedule);
-					Simulation.space.placeCellRandomlyInSphere(bcell, true);
-					SimulationTBM.fragsln.add(bcell);
+				} else if (Double.isNaN(sx) && CellTypes.respawns(cell.typeIndex())) {
+					// the fragment has lost track of where it started; false tells it to replace itself. Moves may 
+					// be planned in parallel, so the actuator must not alter the simulation itself. 
+					return false;
 				}
 			}
 
-		return move;	
+		return true;	
 	}
 
-	public Double3D move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
-			double speedS_StD) {
-		double speedMean = (Simulation.rng.nextGaussian() * speedM_StD) + speedM_Mean;
+	public void move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
+			double speedS_StD, MutableDouble3D move) {
+		double speedMean = (rng.nextGaussian() * speedM_StD) + speedM_Mean;
 		// invert negative values. 
 		if (speedMean < 0.0) 	speedMean *= -1.0;
-		speedStD = (Simulation.rng.nextGaussian() * speedS_StD) + speedS_Mean;
+		double speedStD = (rng.nextGaussian() * speedS_StD) + speedS_Mean;
 		if (speedStD < 0.0) speedStD *= -1.0;		// invert negative values
 		
 		// cell moves along it's x axis. Find its orientation in absolute space, by transforming x-axis. This gives a 
 		// unit vector poining in the direction of the cell's orientation. 
-		Double3D facing = orientation.transform(MigratoryCell.x_axis);		
+		orientation.transform(MigratoryCell.x_axis, move);		
 		/* apply movement to the cell in the direction that it faces */		
-		double currentSpeed = (Simulation.rng.nextGaussian() * speedStD) + speedMean;
+		double currentSpeed = (rng.nextGaussian() * speedStD) + speedMean;
 		// units in um/min. Ensure not faster than maximum possible neutrophil spd.
 		currentSpeed = Math.min(25.0, currentSpeed);	 
-		double dist = currentSpeed * Simulation.timeSlice;
+		double dist = currentSpeed * sim.timeSlice;
 		// translate would-be backwards movement into forwards. 
 		dist = Math.abs(dist);
 		// convert unit vector describing cell's orientation in absolute space to a move forward. 
-		Double3D move = new Double3D(facing.x * dist, facing.y * dist, facing.z * dist);			
-		return move;
+		move.multiplyIn(dist);
 	}
 
 	public Quaternion newOrientation(Quaternion orientation, ArrayList<Double> pitchData) {
@@ -2,6 +2,7 @@
 
 import java.util.ArrayList;
 
+import ec.util.MersenneTwisterFast;
 import core.Cell;
 import core.MigratoryCell;
 import core.Simulation;
@@ -27,24 +28,32 @@ import utils.Quaternion;
  */
 public class HeterogeneousCRW_Orientation implements Orientation
 {
+	private static final long serialVersionUID = 1L;
+
 	protected double pitchRateMean;
 	protected double pitchRateStD;
 	protected double rollRateMean;
 	protected double rollRateStD;
 	
-	protected static double pitchM_Mean;
-	protected static double pitchM_StD;
-	protected static double pitchS_Mean;
-	protected static double pitchS_StD;
+	protected double pitchM_Mean;
+	protected double pitchM_StD;
+	protected double pitchS_Mean;
+	protected double pitchS_StD;
 
-	protected static double rollM_Mean;
-	protected static double rollM_StD;
-	protected static double rollS_Mean;
-	protected static double rollS_StD;
+	protected double rollM_Mean;
+	protected double rollM_StD;
+	protected double rollS_Mean;
+	protected double rollS_StD;
 	
-	public HeterogeneousCRW_Orientation()
-	{
+	// the simulation run this actuator serves.
+	private final Simulation sim;
+	// random number stream of the cell population this actuator moves.
+	private final MersenneTwisterFast rng;
 
+	public HeterogeneousCRW_Orientation(Simulation sim, MersenneTwisterFast rng)
+	{
+		this.sim = sim;
+		this.rng = rng;
 	}
 
 	@Override
@@ -65,43 +74,40 @@ public class HeterogeneousCRW_Orientation implements Orientation
 		double rollS_Mean= pitchData.get(6);
 		double rollS_StD= pitchData.get(7);
 		
-		pitchRateMean = (Simulation.rng.nextGaussian() * pitchM_StD) + pitchM_Mean;
+		pitchRateMean = (rng.nextGaussian() * pitchM_StD) + pitchM_Mean;
 		pitchRateMean = Math.abs(pitchRateMean);	// invert negative values.
-		pitchRateStD = (Simulation.rng.nextGaussian() * pitchS_StD) + pitchS_Mean;
+		pitchRateStD = (rng.nextGaussian() * pitchS_StD) + pitchS_Mean;
 		pitchRateStD = Math.abs(pitchRateStD);
 		
-		rollRateMean = (Simulation.rng.nextGaussian() * rollM_StD) + rollM_Mean;
+		rollRateMean = (rng.nextGaussian() * rollM_StD) + rollM_Mean;
 		rollRateMean = Math.abs(rollRateMean);	// invert negative values.
-		rollRateStD = (Simulation.rng.nextGaussian() * rollS_StD) + rollS_Mean;
+		rollRateStD = (rng.nextGaussian() * rollS_StD) + rollS_Mean;
 		rollRateStD = Math.abs(rollRateStD);	
 		double roll;
 		if (rollM_Mean < 0.0)
 			// if mean roll rate has been set to a negative value, assume this indicates a uniform distribution
 			// should be used. 
-			roll = Simulation.rng.nextDouble() * 2.0 * Math.PI;
+			roll = rng.nextDouble() * 2.0 * Math.PI;
 		else{
-			roll = (Simulation.rng.nextGaussian() * rollRateStD) + rollRateMean;
-			if (Simulation.rng.nextBoolean())
+			roll = (rng.nextGaussian() * rollRateStD) + rollRateMean;
+			if (rng.nextBoolean())
 				roll *= -1.0;		// cells can roll in either direction.
-			roll *= Simulation.timeSlice;
+			roll *= sim.timeSlice;
 		}
-		// roll as a quaternion.
-		Quaternion rotateQ = Quaternion.representRotation
-				(roll, MigratoryCell.x_axis.x, MigratoryCell.x_axis.y, MigratoryCell.x_axis.z); 
-		// multiply orientation by rotateQ, because rotateQ is calculated relative to cell, not in absolute space. 
-		orientation = orientation.multiply(rotateQ).normalise();	// alter the cell's orientation. 
+		// apply the roll after orientation, because it is calculated relative to cell, not in absolute space. 
+		orientation.rotate(roll, MigratoryCell.x_axis.x, MigratoryCell.x_axis.y, MigratoryCell.x_axis.z)
+				.normalise();	// alter the cell's orientation. 
 		
 		// change cell pitch (roll along the y axis). Pitch can be changed in both positive and negative directions.
-		double pitch = (Simulation.rng.nextGaussian() * pitchRateStD) + pitchRateMean;
+		double pitch = (rng.nextGaussian() * pitchRateStD) + pitchRateMean;
 		// randomly invert values. This makes no difference to zero-mean distributions, and avoids a bias in 
 		// non-zero-mean distributions. Hence, applicable to both. 
-		if (Simulation.rng.nextBoolean())
+		if (rng.nextBoolean())
 			pitch *= -1.0;
-		pitch *= Simulation.timeSlice;		// account for timestep.
-		Quaternion pitchQ = Quaternion.representRotation
-				(pitch, MigratoryCell.y_axis.x, MigratoryCell.y_axis.y, MigratoryCell.y_axis.z);
-		// multiply orientation by rotateQ, because pitchQ is calculated relative to cell, not in absolute space.
-		orientation = orientation.multiply(pitchQ).normalise();
+		pitch *= sim.timeSlice;		// account for timestep.
+		// apply the pitch after orientation, because it is calculated relative to cell, not in absolute space.
+		orientation.rotate(pitch, MigratoryCell.y_axis.x, MigratoryCell.y_axis.y, MigratoryCell.y_axis.z)
+				.normalise();
 		return orientation;
 	}
 	
@@ -127,43 +133,40 @@ public class HeterogeneousCRW_Orientation implements Orientation
 		double rollS_Mean= turnParams.get(6);
 		double rollS_StD= turnParams.get(7);
 		
-		pitchRateMean = (Simulation.rng.nextGaussian() * pitchM_StD) + pitchM_Mean;
+		pitchRateMean = (rng.nextGaussian() * pitchM_StD) + pitchM_Mean;
 		pitchRateMean = Math.abs(pitchRateMean);	// invert negative values.
-		pitchRateStD = (Simulation.rng.nextGaussian() * pitchS_StD) + pitchS_Mean;
+		pitchRateStD = (rng.nextGaussian() * pitchS_StD) + pitchS_Mean;
 		pitchRateStD = Math.abs(pitchRateStD);
 		
-		rollRateMean = (Simulation.rng.nextGaussian() * rollM_StD) + rollM_Mean;
+		rollRateMean = (rng.nextGaussian() * rollM_StD) + rollM_Mean;
 		rollRateMean = Math.abs(rollRateMean);	// invert negative values.
-		rollRateStD = (Simulation.rng.nextGaussian() * rollS_StD) + rollS_Mean;
+		rollRateStD = (rng.nextGaussian() * rollS_StD) + rollS_Mean;
 		rollRateStD = Math.abs(rollRateStD);	
 		double roll;
 		if (rollM_Mean < 0.0)
 			// if mean roll rate has been set to a negative value, assume this indicates a uniform distribution
 			// should be used. 
-			roll = Simulation.rng.nextDouble() * 2.0 * Math.PI;
+			roll = rng.nextDouble() * 2.0 * Math.PI;
 		else{
-			roll = (Simulation.rng.nextGaussian() * rollRateStD) + rollRateMean;
-			if (Simulation.rng.nextBoolean())
+			roll = (rng.nextGaussian() * rollRateStD) + rollRateMean;
+			if (rng.nextBoolean())
 				roll *= -1.0;		// cells can roll in either direction.
-			roll *= Simulation.timeSlice;
+			roll *= sim.timeSlice;
 		}
-		// roll as a quaternion.
-		Quaternion rotateQ = Quaternion.representRotation
-				(roll, MigratoryCell.x_axis.x, MigratoryCell.x_axis.y, MigratoryCell.x_axis.z); 
-		// multiply orientation by rotateQ, because rotateQ is calculated relative to cell, not in absolute space. 
-		orientation = orientation.multiply(rotateQ).normalise();	// alter the cell's orientation. 
+		// apply the roll after orientation, because it is calculated relative to cell, not in absolute space. 
+		orientation.rotate(roll, MigratoryCell.x_axis.x, MigratoryCell.x_axis.y, MigratoryCell.x_axis.z)
+				.normalise();	// alter the cell's orientation. 
 		
 		// change cell pitch (roll along the y axis). Pitch can be changed in both positive and negative directions.
-		double pitch = (Simulation.rng.nextGaussian() * pitchRateStD) + pitchRateMean;
+		double pitch = (rng.nextGaussian() * pitchRateStD) + pitchRateMean;
 		// randomly invert values. This makes no difference to zero-mean distributions, and avoids a bias in 
 		// non-zero-mean distributions. Hence, applicable to both. 
-		if (Simulation.rng.nextBoolean())
+		if (rng.nextBoolean())
 			pitch *= -1.0;
-		pitch *= Simulation.timeSlice;		// account for timestep.
-		Quaternion pitchQ = Quaternion.representRotation
-				(pitch, MigratoryCell.y_axis.x, MigratoryCell.y_axis.y, MigratoryCell.y_axis.z);
-		// multiply orientation by rotateQ, because pitchQ is calculated relative to cell, not in absolute space.
-		orientation = orientation.multiply(pitchQ).normalise();
+		pitch *= sim.timeSlice;		// account for timestep.
+		// apply the pitch after orientation, because it is calculated relative to cell, not in absolute space.
+		orientation.rotate(pitch, MigratoryCell.y_axis.x, MigratoryCell.y_axis.y, MigratoryCell.y_axis.z)
+				.normalise();
 		return orientation;
 	}
 
@@ -1,7 +1,8 @@
 package movement;
 
-import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 import utils.Quaternion;
+import ec.util.MersenneTwisterFast;
 import core.Cell;
 import core.MigratoryCell;
 import core.Simulation;
@@ -25,6 +26,7 @@ import core.Simulation;
  */
 public class HeterogeneousCRW_Translation implements Translation
 {
+	private static final long serialVersionUID = 1L;
 
 
 	/* Create custom random walk mechanism for a cell. Mean and std of this cell's movememnt dynamics are
@@ -35,28 +37,39 @@ public class HeterogeneousCRW_Translation implements Translation
 	// accessible to others in this package. This was the last speed drawn from the cell's distribution.
 	double currentSpeed;
 
+	// the simulation run this actuator serves.
+	private final Simulation sim;
+	// random number stream of the cell population this actuator moves.
+	private final MersenneTwisterFast rng;
+
+	public HeterogeneousCRW_Translation(Simulation sim, MersenneTwisterFast rng)
+	{
+		this.sim = sim;
+		this.rng = rng;
+	}
+
 	
-	public Double3D move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean, double speedS_StD)
+	public void move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean, double speedS_StD, 
+			MutableDouble3D move)
 	{			
-		speedMean = (Simulation.rng.nextGaussian() * speedM_StD) + speedM_Mean;
+		speedMean = (rng.nextGaussian() * speedM_StD) + speedM_Mean;
 		// invert negative values. 
 		if (speedMean < 0.0) 	speedMean *= -1.0;
-		speedStD = (Simulation.rng.nextGaussian() * speedS_StD) + speedS_Mean;
+		speedStD = (rng.nextGaussian() * speedS_StD) + speedS_Mean;
 		if (speedStD < 0.0) speedStD *= -1.0;		// invert negative values
 		
 		// cell moves along it's x axis. Find its orientation in absolute space, by transforming x-axis. This gives a 
 		// unit vector poining in the direction of the cell's orientation. 
-		Double3D facing = orientation.transform(MigratoryCell.x_axis);		
+		orientation.transform(MigratoryCell.x_axis, move);		
 		/* apply movement to the cell in the direction that it faces */		
-		currentSpeed = (Simulation.rng.nextGaussian() * speedStD) + speedMean;
+		currentSpeed = (rng.nextGaussian() * speedStD) + speedMean;
 		// units in um/min. Ensure not faster than maximum possible neutrophil spd.
 		currentSpeed = Math.min(25.0, currentSpeed);	 
-		double dist = currentSpeed * Simulation.timeSlice;
+		double dist = currentSpeed * sim.timeSlice;
 		// translate would-be backwards movement into forwards. 
 		dist = Math.abs(dist);
 		// convert unit vector describing cell's orientation in absolute space to a move forward. 
-		Double3D move = new Double3D(facing.x * dist, facing.y * dist, facing.z * dist);			
-		return move;	
+		move.multiplyIn(dist);
 	}
 
 
@@ -68,9 +81,8 @@ public class HeterogeneousCRW_Translation implements Translation
 
 
 	@Override
-	public Double3D move(Quaternion orientation, Cell cell) {
-
-	return null;
+	public boolean move(Quaternion orientation, Cell cell, MutableDouble3D move) {
+		return false;
 	}
 
 }
@@ -9,6 +9,7 @@ import javax.xml.xpath.XPathFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
+import ec.util.MersenneTwisterFast;
 import core.Cell;
 import core.MigratoryCell;
 import core.Simulation;
@@ -36,16 +37,24 @@ import utils.Quaternion;
  */
 public class HomogeneousCRW_Orientation implements Orientation
 {
+	private static final long serialVersionUID = 1L;
+
 	// controls change of direction in random walk. Given in PI-radians (1 PI-radian = 180 degrees).
-	static double pitchRateMean;
-	static double pitchRateStd;
-	static double rollRateMean;
-	static double rollRateStd;
+	double pitchRateMean;
+	double pitchRateStd;
+	double rollRateMean;
+	double rollRateStd;
 	
-	/* Singleton pattern */
-	public static HomogeneousCRW_Orientation instance = new HomogeneousCRW_Orientation();
-	private HomogeneousCRW_Orientation()
-	{}
+	// the simulation run this actuator serves.
+	private final Simulation sim;
+	// random number stream of the cell population this actuator moves.
+	private final MersenneTwisterFast rng;
+
+	public HomogeneousCRW_Orientation(Simulation sim, MersenneTwisterFast rng)
+	{
+		this.sim = sim;
+		this.rng = rng;
+	}
 	
 	/** 
 	 * Provides a new orientation of the cell, based on its current orientation (supplied as arg), and 
@@ -66,32 +75,29 @@ public class HomogeneousCRW_Orientation implements Orientation
 		if (rollRateMean < 0.0) {
 			// if mean roll rate is negative, assume this indicates a uniform distribution
 			// should be used. 
-			roll = Simulation.rng.nextDouble() * 2.0 * Math.PI;
+			roll = rng.nextDouble() * 2.0 * Math.PI;
 		} else {
-			roll = (Simulation.rng.nextGaussian() * rollRateStd) + rollRateMean;
+			roll = (rng.nextGaussian() * rollRateStd) + rollRateMean;
 			// randomly invert roll direction. Avoids corkscrewing. 
-			if (Simulation.rng.nextBoolean())
+			if (rng.nextBoolean())
 				roll *= -1.0;		// cells can roll in either direction.
-			roll *= Simulation.timeSlice;
+			roll *= sim.timeSlice;
 		}
-		// roll as a quaternion.
-		Quaternion rotateQ = Quaternion.representRotation
-				(roll, MigratoryCell.x_axis.x, MigratoryCell.x_axis.y, MigratoryCell.x_axis.z); 
-		// multiply orientation by rotateQ, because rotateQ is calculated relative to cell, not in absolute space. 
-		orientation = orientation.multiply(rotateQ).normalise();	// alter the cell's orientation. 
+		// apply the roll after orientation, because it is calculated relative to cell, not in absolute space. 
+		orientation.rotate(roll, MigratoryCell.x_axis.x, MigratoryCell.x_axis.y, MigratoryCell.x_axis.z)
+				.normalise();	// alter the cell's orientation. 
 		
 		// change cell pitch (roll along the y axis). Pitch can be changed in both positive and negative directions.
-		double pitch = (Simulation.rng.nextGaussian() * pitchRateStd) + pitchRateMean;
-		pitch *= Simulation.timeSlice;		// account for timestep.
-		Quaternion pitchQ = Quaternion.representRotation
-				(pitch, MigratoryCell.y_axis.x, MigratoryCell.y_axis.y, MigratoryCell.y_axis.z);
-		// multiply orientation by rotateQ, because pitchQ is calculated relative to cell, not in absolute space.
-		orientation = orientation.multiply(pitchQ).normalise();
+		double pitch = (rng.nextGaussian() * pitchRateStd) + pitchRateMean;
+		pitch *= sim.timeSlice;		// account for timestep.
+		// apply the pitch after orientation, because it is calculated relative to cell, not in absolute space.
+		orientation.rotate(pitch, MigratoryCell.y_axis.x, MigratoryCell.y_axis.y, MigratoryCell.y_axis.z)
+				.normalise();
 		return orientation;
 	}
 	
 	
-	public static void loadParameters(Document params) throws XPathExpressionException
+	public void loadParameters(Document params) throws XPathExpressionException
 	{
 		XPath xPath =  XPathFactory.newInstance().newXPath(); 
 		Node n;
@@ -8,10 +8,12 @@ import javax.xml.xpath.XPathFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
+import ec.util.MersenneTwisterFast;
 import core.Cell;
 import core.MigratoryCell;
 import core.Simulation;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 import utils.Quaternion;
 
 /**
@@ -33,13 +35,21 @@ import utils.Quaternion;
  */
 public class HomogeneousCRW_Translation implements Translation
 {
-	private static double speedMean;				// Microns per minute.
-	private static double speedStD;					// Standard deviation.	
+	private static final long serialVersionUID = 1L;
+
+	private double speedMean;				// Microns per minute.
+	private double speedStD;					// Standard deviation.	
 	
-	/* Singleton pattern */
-	public static HomogeneousCRW_Translation instance = new HomogeneousCRW_Translation();
-	private HomogeneousCRW_Translation()
-	{}
+	// the simulation run this actuator serves.
+	private final Simulation sim;
+	// random number stream of the cell population this actuator moves.
+	private final MersenneTwisterFast rng;
+
+	public HomogeneousCRW_Translation(Simulation sim, MersenneTwisterFast rng)
+	{
+		this.sim = sim;
+		this.rng = rng;
+	}
 	
 	
 	public Double3D move(Quaternion orientation)
@@ -48,9 +58,9 @@ public class HomogeneousCRW_Translation implements Translation
 		// unit vector poining in the direction of the cell's orientation. 
 		Double3D facing = orientation.transform(MigratoryCell.x_axis);		
 		/* apply movement to the cell in the direction that it faces */		
-		double dist = (Simulation.rng.nextGaussian() * speedStD) + speedMean;
+		double dist = (rng.nextGaussian() * speedStD) + speedMean;
 		dist = Math.min(25.0, dist);	// units in um/min. Ensure not faster than maximum possible neutrophil spd. 
-		dist *= Simulation.timeSlice;
+		dist *= sim.timeSlice;
 		// translate would-be backwards movement into forwards. 
 		dist = Math.abs(dist);
 		// convert unit vector describing cell's orientation in absolute space to a move forward. 
@@ -58,7 +68,7 @@ public class HomogeneousCRW_Translation implements Translation
 		return move;		
 	}
 	
-	public static void loadParameters(Document params) throws XPathExpressionException
+	public void loadParameters(Document params) throws XPathExpressionException
 	{
 		XPath xPath =  XPathFactory.newInstance().newXPath(); 
 		Node n;
@@ -72,10 +82,9 @@ public class HomogeneousCRW_Translation implements Translation
 
 
 	@Override
-	public Double3D move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
-			double speedS_StD) {
+	public void move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
+			double speedS_StD, MutableDouble3D move) {
 		// TODO Auto-generated method stub
-		return null;
 	}
 
 
@@ -87,8 +96,8 @@ public class HomogeneousCRW_Translation implements Translation
 
 
 	@Override
-	public Double3D move(Quaternion orientation, Cell cell) {
+	public boolean move(Quaternion orientation, Cell cell, MutableDouble3D move) {
 		// TODO Auto-generated method stub
-		return null;
+		return false;
 	}
 }
@@ -9,10 +9,12 @@ import javax.xml.xpath.XPathFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
+import ec.util.MersenneTwisterFast;
 import core.Cell;
 import core.MigratoryCell;
 import core.Simulation;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 import utils.LevyDistribution;
 import utils.Quaternion;
 
@@ -35,15 +37,16 @@ import utils.Quaternion;
  */
 public class LevyFlight implements Orientation, Translation
 {	
+	private static final long serialVersionUID = 1L;
 	
-	private static double restMu = Double.NaN;
-	private static double restScale = Double.NaN;
+	private double restMu = Double.NaN;
+	private double restScale = Double.NaN;
 	
-	private static double motileMu = Double.NaN; 
-	private static double motileScale = Double.NaN;
+	private double motileMu = Double.NaN; 
+	private double motileScale = Double.NaN;
 	
-	private static double speedMu = Double.NaN;
-	private static double speedScale = Double.NaN;
+	private double speedMu = Double.NaN;
+	private double speedScale = Double.NaN;
 	
 	private enum State
 	{
@@ -59,8 +62,16 @@ public class LevyFlight implements Orientation, Translation
 	private double endMotileTime = -1.0;	// absolute simulation time at which cell will start moving again. 
 	private double endRestTime = -1.0;    // absolute simulation time at which cell will pause.
 	
-	public LevyFlight()
+	// the simulation run this actuator serves.
+	private final Simulation sim;
+	// random number stream of the cell population this actuator moves.
+	private final MersenneTwisterFast rng;
+
+	public LevyFlight(Simulation sim, MersenneTwisterFast rng) throws XPathExpressionException
 	{
+		this.sim = sim;
+		this.rng = rng;
+		loadParameters(sim.parameters);
 		plan();
 	}
 
@@ -72,27 +83,27 @@ public class LevyFlight implements Orientation, Translation
 		{
 			if (this.state == State.REST)
 			{
-				if (Simulation.instance.schedule.getTime() >= endRestTime)
+				if (sim.schedule.getTime() >= endRestTime)
 				{
 					// timer has elapsed, start moving again.
-					newOrientation = Quaternion.randomUniform();
-					currentSpeed = LevyDistribution.sample_positive(speedMu, speedScale);				
-					double duration = LevyDistribution.sample_positive(motileMu, motileScale);
-					endMotileTime = Simulation.instance.schedule.getTime() + duration;
+					newOrientation = Quaternion.randomUniform(rng);
+					currentSpeed = LevyDistribution.sample_positive(rng, speedMu, speedScale);				
+					double duration = LevyDistribution.sample_positive(rng, motileMu, motileScale);
+					endMotileTime = sim.schedule.getTime() + duration;
 					this.state = State.MOTILE;
 				}
 			} 
 			if (this.state == State.MOTILE) 
 			{
 				// cell is moving.
-				if (Simulation.instance.schedule.getTime() >= endMotileTime)
+				if (sim.schedule.getTime() >= endMotileTime)
 				{	
 					// time to stop moving. 				
 					currentSpeed = 0.0;
 					double duration = 0.0;
 					if (restMu > 0.0)	// if rest time is being used. 
-						duration = LevyDistribution.sample_positive(restMu, restScale);					
-					endRestTime = Simulation.instance.schedule.getTime() + duration;
+						duration = LevyDistribution.sample_positive(rng, restMu, restScale);					
+					endRestTime = sim.schedule.getTime() + duration;
 					this.state=State.REST;
 				}
 			}
@@ -108,7 +119,7 @@ public class LevyFlight implements Orientation, Translation
 	public Double3D move(Quaternion orientation) 
 	{
 		// Levy flight draws step size from a long tailed distribution. In this case log-normal.		
-		double length = currentSpeed * Simulation.timeSlice;
+		double length = currentSpeed * sim.timeSlice;
 		// cell moves along it's x axis. Find its orientation in absolute space, by transforming x-axis. This gives a 
 		// unit vector poining in the direction of the cell's orientation.
 		Double3D facing = orientation.transform(MigratoryCell.x_axis);
@@ -118,7 +129,7 @@ public class LevyFlight implements Orientation, Translation
 	}
 
 	
-	public static void loadParameters(Document params) throws XPathExpressionException
+	public void loadParameters(Document params) throws XPathExpressionException
 	{
 		XPath xPath =  XPathFactory.newInstance().newXPath(); 
 		Node n;		
@@ -140,10 +151,9 @@ public class LevyFlight implements Orientation, Translation
 	}
 
 	@Override
-	public Double3D move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
-			double speedS_StD) {
+	public void move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean,
+			double speedS_StD, MutableDouble3D move) {
 		// TODO Auto-generated method stub
-		return null;
 	}
 
 	@Override
@@ -165,9 +175,9 @@ public class LevyFlight implements Orientation, Translation
 	}
 
 	@Override
-	public Double3D move(Quaternion orientation, Cell cell) {
+	public boolean move(Quaternion orientation, Cell cell, MutableDouble3D move) {
 		// TODO Auto-generated method stub
-		return null;
+		return false;
 	}
 }	
 
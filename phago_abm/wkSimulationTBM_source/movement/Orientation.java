@@ -1,5 +1,6 @@
 package movement;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 import core.Cell;
@@ -23,11 +24,12 @@ import utils.Quaternion;
  * @author Mark N. Read
  *
  */
-public interface Orientation 
+public interface Orientation extends Serializable
 {
 	public Quaternion newOrientation(Quaternion orientation, ArrayList<Double> pitchData);
 
 	Double3D move(Quaternion orientation, ArrayList<Double> pitchData);
 
+	/** Alters the cell's orientation, in place, for the coming time step. Returns orientation. */
 	Quaternion newOrientation(Quaternion orientation, Cell cell);
 }
@@ -1,6 +1,7 @@
 package movement;
 
-import sim.util.Double3D;
+import java.io.Serializable;
+import sim.util.MutableDouble3D;
 import utils.Quaternion;
 import core.Cell;
 
@@ -21,16 +22,19 @@ import core.Cell;
  * @author Mark N. Read
  *
  */
-public interface Translation 
+public interface Translation extends Serializable
 {
-	/** Returns the desired move as as a vector. 
+	/** Writes the desired move, as a vector, into `move`. 
 	 * @param speedS_StD 
 	 * @param speedS_Mean 
 	 * @param speedM_StD 
 	 * @param speedM_Mean */
-	public Double3D move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean, double speedS_StD);
+	public void move(Quaternion orientation, double speedM_Mean, double speedM_StD, double speedS_Mean, double speedS_StD, 
+			MutableDouble3D move);
 
 	Quaternion newOrientation(Quaternion orientation, Cell cell);
 
-	public Double3D move(Quaternion orientation, Cell cell);
+	/** Writes the desired move, as a vector, into `move`. Returns false if the cell cannot move, and should be 
+	 * replaced. */
+	public boolean move(Quaternion orientation, Cell cell, MutableDouble3D move);
 }
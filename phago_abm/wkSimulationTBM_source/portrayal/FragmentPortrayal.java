@@ -31,9 +31,9 @@ public class FragmentPortrayal extends SpherePortrayal3D
 {
 	private static Color fragmentColor = new Color(0.0f, 1.0f, 0.0f, 0.5f);
 	
-	public FragmentPortrayal()
+	public FragmentPortrayal(double diameter)
 	{
-		super(fragmentColor, Fragment.diameter);
+		super(fragmentColor, diameter);
 	}
 	
 	/**
@@ -75,13 +75,14 @@ public class FragmentPortrayal extends SpherePortrayal3D
 	
 	private boolean outsideImagingVolume(Fragment n)
 	{
+		Simulation sim = n.getSimulation();
 		Double3D loc = n.getCurrentLocation();
 			
-		if (loc.x < 0.0 || loc.x > Simulation.tissueWidth)
+		if (loc.x < 0.0 || loc.x > sim.tissueWidth)
 			return true;
-		if (loc.y < 0.0 || loc.y > Simulation.tissueHeight)
+		if (loc.y < 0.0 || loc.y > sim.tissueHeight)
 			return true;
-		if (loc.z < 0.0 || loc.z > Simulation.tissueDepth)
+		if (loc.z < 0.0 || loc.z > sim.tissueDepth)
 			return true;
 		return false;
 	}
@@ -47,10 +47,11 @@ public class GUI_SimulationTBM extends SimulationGUI
 	{
 		Simulation simulation = (Simulation) state;
 		
+		simulation.space.display();
 		cellPortrayal.setField(simulation.space.cellField);
 
-		cellPortrayal.setPortrayalForClass(Fragment.class, new FragmentPortrayal() );
-		cellPortrayal.setPortrayalForClass(Macrophage.class, new MacrophagePortrayal() );
+		cellPortrayal.setPortrayalForClass(Fragment.class, new FragmentPortrayal(simulation.config.fragment.diameter) );
+		cellPortrayal.setPortrayalForClass(Macrophage.class, new MacrophagePortrayal(simulation.config.macrophage.diameter) );
 		
 		// redraw the scene. 
 		display.setBackdrop(Color.BLACK);		
@@ -59,8 +60,8 @@ public class GUI_SimulationTBM extends SimulationGUI
 		display.reset();
 		if (imageVolume)
 		{
-			Snapper snapper = new Snapper(display);
-			simulation.schedule.scheduleRepeating(Schedule.EPOCH, 100, snapper, Simulation.timeSlice);
+			Snapper snapper = new Snapper(display, simulation.outputPath);
+			simulation.schedule.scheduleRepeating(Schedule.EPOCH, 100, snapper, simulation.timeSlice);
 		}				
 	}
 	
@@ -72,20 +72,21 @@ public abstract class SimulationGUI extends GUIState
 	{
 		System.out.println("GCPhagoCoverage3D - initialising");
 		super.init(c);
+		Simulation simulation = (Simulation) state;
 		
 		display = new Display3D(1000, 1000, this);
 		frame = new WireFrameBoxPortrayal3D(
 				0.0, 0.0, 0.0, 				// one corner, at the origin. Second corner at the opposite extreme.
-				Simulation.tissueWidth, Simulation.tissueHeight, Simulation.tissueDepth);
+				simulation.tissueWidth, simulation.tissueHeight, simulation.tissueDepth);
 		axes = new AxesPortrayal3D(1.0, true);
 		display.attach( frame, "frame" );
 		display.attach( axes, "axes" );
 		
 		// changes the camera location and focal length. 
-        display.translate(-Simulation.tissueWidth / 2.0, 
-        				  -Simulation.tissueHeight / 2.0, 
-        				  -Simulation.tissueDepth / 2.0);
-        display.scale(1.3 / Simulation.tissueWidth);
+        display.translate(-simulation.tissueWidth / 2.0, 
+        				  -simulation.tissueHeight / 2.0, 
+        				  -simulation.tissueDepth / 2.0);
+        display.scale(1.3 / simulation.tissueWidth);
         display.rotateX(180); 	// flip scene around so camera points at skin. 
                 
 		displayFrame = display.createFrame();
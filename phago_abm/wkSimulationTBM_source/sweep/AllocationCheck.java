@@ -0,0 +1,117 @@
+package sweep;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import core.Simulation;
+import core.SimulationTBM;
+import filesystem.FileSystemIO;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Regression check that stepping the cells does not allocate. A simulation is run on one thread with every output
+ * turned off, so that only cell movement, collision detection and phagocytosis are measured. After a warm up, so that
+ * the JIT has compiled the hot paths, the bytes allocated by the stepping thread over a number of time steps are read
+ * from the JVM's ThreadMXBean and divided by the number of cell steps taken.
+ *
+ * Takes the -p, -s and -o options of SimulationTBM, and:
+ *  -w steps	time steps of warm up, 2000 by default.
+ *  -m steps	time steps measured, 2000 by default.
+ *  -b bytes	the most bytes a cell step may allocate on average, 1 by default. MASON's schedule allocates some tens of
+ *  			bytes a time step however many cells there are, so the average does not quite reach zero.
+ *
+ * Usage:	java sweep.AllocationCheck [-p parameters.xml] [-s seed] [-o output] [-w steps] [-m steps] [-b bytes]
+ *
+ * Exits with status 1 if cell steps allocate more than the budget.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class AllocationCheck
+{
+	// the outputs a run can write, under /params/Simulation/.
+	private static final String[] OUTPUTS =
+		{"trackPositions", "trackCounts", "trackRemovedCounts", "trackSummary", "trackMotility"};
+
+	/** Turns off every output of the run, adding the elements the parameters leave to their defaults. */
+	static void disableOutputs(Document doc)
+	{
+		Element simulation = (Element) doc.getElementsByTagName("Simulation").item(0);
+		if (simulation == null)
+			throw new RuntimeException("The parameters have no Simulation element.");
+		for (String name : OUTPUTS)
+		{
+			Node n = simulation.getElementsByTagName(name).item(0);
+			if (n == null)
+				n = simulation.appendChild(doc.createElement(name));
+			n.setTextContent("false");
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		int warmUp = 2000;
+		int measured = 2000;
+		double budget = 1.0;
+		// options of this check are taken out, the rest are passed on to the simulation.
+		List<String> simArgs = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-w"))
+				warmUp = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-m"))
+				measured = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-b"))
+				budget = Double.parseDouble(args[++i]);
+			else
+				simArgs.add(args[i]);
+		}
+		Simulation.Arguments run = Simulation.readArgs(simArgs.toArray(new String[0]));
+		String path = run.parametersPath != null ? run.parametersPath : SimulationTBM.defaultParametersPath;
+		Document doc = FileSystemIO.openXMLFile(path);
+		disableOutputs(doc);
+		run.parameters = doc;
+		run.threads = 1;
+		run.endTime = Double.POSITIVE_INFINITY;
+
+		SimulationTBM sim = new SimulationTBM(run);
+		sim.start();
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		for (int i = 0; i < warmUp; i++)
+			sim.schedule.step(sim);
+		long cells = sim.fragments.live.size() + sim.macrophages.live.size();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < measured; i++)
+			sim.schedule.step(sim);
+		long bytes = threads.getThreadAllocatedBytes(thread) - before;
+		sim.finish();
+
+		double perStep = (double) bytes / measured / cells;
+		System.out.println(cells + " cells, " + measured + " time steps: " + bytes + " bytes allocated, "
+				+ String.format("%.2f", perStep) + " bytes per cell step.");
+		boolean pass = perStep <= budget;
+		System.out.println(pass ? "PASS: cell steps are within the allocation budget of " + budget + " bytes."
+				: "FAIL: cell steps allocate more than the budget of " + budget + " bytes.");
+		if (!pass)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,66 @@
+package sweep;
+
+import org.w3c.dom.Document;
+
+import core.Simulation;
+import core.SimulationTBM;
+import filesystem.FileSystemIO;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Times the simulation at the dense arms of the fragment sweeps, where collision detection dominates the run time.
+ * Each arm is run twice within one JVM, writing to [output]/[n]_frags, and the second run is timed so that the JIT has
+ * already compiled the hot paths. Takes the same options as SimulationTBM.
+ *
+ * Usage:	java sweep.DenseBenchmark [-p parameters.xml] [-o output] [-s seed] [-e endTime] [-t threads]
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class DenseBenchmark
+{
+	// fragment counts of the dense arms.
+	static final int[] ARMS = {3000, 5000, 7000};
+
+	public static void main(String[] args)
+	{
+		Simulation.Arguments template = Simulation.readArgs(args);
+		String path = template.parametersPath != null ? template.parametersPath : SimulationTBM.defaultParametersPath;
+		Document base = FileSystemIO.openXMLFile(path);
+		String output = template.outputPath;
+		System.out.println("fragments,steps,ms,msPerStep");
+		for (int frags : ARMS)
+		{
+			Document doc = (Document) base.cloneNode(true);
+			ParameterSweep.setValue(doc, "/params/Simulation/Fragment/numFrags", Integer.toString(frags));
+			long elapsed = 0;
+			long steps = 0;
+			for (int repeat = 0; repeat < 2; repeat++)
+			{
+				Simulation.Arguments run = Simulation.readArgs(args);
+				run.parameters = doc;
+				run.outputPath = output + "/" + frags + "_frags";
+				SimulationTBM sim = new SimulationTBM(run);
+				long start = System.nanoTime();
+				Simulation.execute(sim);
+				elapsed = System.nanoTime() - start;
+				steps = sim.schedule.getSteps();
+			}
+			double ms = elapsed / 1e6;
+			System.out.println(frags + "," + steps + "," + String.format("%.0f", ms) + ","
+					+ String.format("%.3f", steps == 0 ? Double.NaN : ms / steps));
+		}
+	}
+}
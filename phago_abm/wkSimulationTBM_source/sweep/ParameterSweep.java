@@ -0,0 +1,342 @@
+package sweep;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import core.Simulation;
+import core.SimulationTBM;
+import filesystem.FileSystemIO;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Runs a full factorial parameter sweep inside one JVM, in place of launching one simulation process per parameter
+ * combination. The sweep is described by an XML file:
+ *
+ * <pre>
+ * &lt;sweep&gt;
+ *   &lt;base&gt;parameters/calibration-parameters.xml&lt;/base&gt;
+ *   &lt;output&gt;crossover_results&lt;/output&gt;
+ *   &lt;replicates&gt;5&lt;/replicates&gt;
+ *   &lt;set path="/params/Simulation/endTime"&gt;75&lt;/set&gt;
+ *   &lt;vary path="/params/Simulation/Macrophage/speedM_Mean" dir="%summin-1macs"&gt;
+ *     &lt;values&gt;0 5&lt;/values&gt;
+ *   &lt;/vary&gt;
+ *   &lt;vary path="/params/Simulation/Fragment/numFrags" dir="%s_frags"&gt;
+ *     &lt;grid from="1000" to="7000" step="1000"/&gt;
+ *   &lt;/vary&gt;
+ * &lt;/sweep&gt;
+ * </pre>
+ *
+ * Every `set` is applied to all runs. Each `vary` adds a directory level, named by substituting the value into `dir`
+ * (the value itself if `dir` is absent), nested in the order the `vary` elements appear. Replicates are written to
+ * run1, run2, ... beneath the deepest level, matching the layout the python sweep scripts produced. An optional
+ * `seed` element gives run i of the design the seed seed + i; otherwise seeds are taken from the clock.
+ *
+ * Runs are executed on a work stealing pool, one simulation per task. Usage:
+ *
+ *   java sweep.ParameterSweep sweep.xml [-t threads]
+ *
+ * With no -t option the pool uses every available core.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class ParameterSweep
+{
+	/** A parameter set to one value for every run of the sweep. */
+	private static class Setting
+	{
+		final String path;
+		final String value;
+
+		Setting(String path, String value)
+		{
+			this.path = path;
+			this.value = value;
+		}
+	}
+
+	/** A parameter taking each of a list of values in turn. */
+	private static class Factor
+	{
+		final String path;
+		final String dir;			// directory name format, %s is replaced by the value.
+		final List<String> values;
+
+		Factor(String path, String dir, List<String> values)
+		{
+			this.path = path;
+			this.dir = dir;
+			this.values = values;
+		}
+
+		String label(String value)
+		{	return dir.replace("%s", value);	}
+	}
+
+	private final Document base;
+	private final String outputDir;
+	private final int replicates;
+	private final Long seed;		// null if seeds are taken from the clock.
+	private final List<Setting> settings = new ArrayList<Setting>();
+	private final List<Factor> factors = new ArrayList<Factor>();
+
+	public ParameterSweep(Document spec)
+	{
+		if (spec == null)
+			throw new RuntimeException("No sweep specification supplied.");
+		Element root = spec.getDocumentElement();
+		base = FileSystemIO.openXMLFile(requiredText(root, "base"));
+		if (base == null)
+			throw new RuntimeException("Could not read sweep base parameters " + requiredText(root, "base"));
+		outputDir = requiredText(root, "output");
+		String reps = optionalText(root, "replicates");
+		replicates = reps == null ? 1 : Integer.parseInt(reps);
+		String s = optionalText(root, "seed");
+		seed = s == null ? null : Long.valueOf(s);
+		if (replicates < 1)
+			throw new RuntimeException("Invalid sweep: replicates must be at least 1");
+
+		NodeList children = root.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++)
+		{
+			if (!(children.item(i) instanceof Element))
+				continue;
+			Element e = (Element) children.item(i);
+			if (e.getTagName().equals("set"))
+				settings.add(new Setting(requiredAttribute(e, "path"), e.getTextContent().trim()));
+			else if (e.getTagName().equals("vary"))
+			{
+				String dir = e.hasAttribute("dir") ? e.getAttribute("dir") : "%s";
+				factors.add(new Factor(requiredAttribute(e, "path"), dir, readValues(e)));
+			}
+		}
+	}
+
+	/** Values of a `vary` element, given either as a whitespace separated list or as an inclusive grid. */
+	private static List<String> readValues(Element vary)
+	{
+		List<String> values = new ArrayList<String>();
+		String list = optionalText(vary, "values");
+		if (list != null)
+			for (String v : list.trim().split("\\s+"))
+				values.add(v);
+		NodeList grids = vary.getElementsByTagName("grid");
+		for (int i = 0; i < grids.getLength(); i++)
+		{
+			Element g = (Element) grids.item(i);
+			// decimal arithmetic keeps values such as 0.1 + 0.2 exact, so directory names stay tidy.
+			BigDecimal from = new BigDecimal(requiredAttribute(g, "from"));
+			BigDecimal to = new BigDecimal(requiredAttribute(g, "to"));
+			BigDecimal step = new BigDecimal(requiredAttribute(g, "step"));
+			if (step.signum() <= 0)
+				throw new RuntimeException("Invalid sweep: grid step must be positive for " + vary.getAttribute("path"));
+			for (BigDecimal v = from; v.compareTo(to) <= 0; v = v.add(step))
+				values.add(v.stripTrailingZeros().toPlainString());
+		}
+		if (values.isEmpty())
+			throw new RuntimeException("Invalid sweep: no values given for " + vary.getAttribute("path"));
+		return values;
+	}
+
+	/**
+	 * Expands the sweep into the arguments of every simulation run it contains: the full factorial design, times the
+	 * number of replicates. Each run is given its own copy of the parameters document.
+	 */
+	public List<Simulation.Arguments> design()
+	{
+		List<Simulation.Arguments> runs = new ArrayList<Simulation.Arguments>();
+		int[] level = new int[factors.size()];
+		while (true)
+		{
+			Document doc = (Document) base.cloneNode(true);
+			String dir = outputDir;
+			for (Setting s : settings)
+				setValue(doc, s.path, s.value);
+			for (int f = 0; f < factors.size(); f++)
+			{
+				Factor factor = factors.get(f);
+				String value = factor.values.get(level[f]);
+				setValue(doc, factor.path, value);
+				dir += "/" + factor.label(value);
+			}
+			for (int r = 1; r <= replicates; r++)
+			{
+				Simulation.Arguments args = new Simulation.Arguments();
+				// DOM documents are not safe to read from several threads at once, so every run has its own copy.
+				args.parameters = (Document) doc.cloneNode(true);
+				args.outputPath = dir + "/run" + r;
+				if (seed != null)
+					args.seed = seed + runs.size();
+				runs.add(args);
+			}
+			// advance the odometer, the last factor varying fastest.
+			int f = factors.size() - 1;
+			while (f >= 0 && ++level[f] == factors.get(f).values.size())
+			{
+				level[f] = 0;
+				f--;
+			}
+			if (f < 0)
+				break;
+		}
+		return runs;
+	}
+
+	/** Notified as each simulation of a sweep completes successfully. Called from the worker thread. */
+	public interface RunListener
+	{
+		void finished(int run, Simulation sim);
+	}
+
+	/**
+	 * Executes every run of the sweep on a work stealing pool of the given number of threads, and returns once all
+	 * have finished. A run that fails is reported and does not stop the others. Returns the number of failed runs.
+	 */
+	public int run(int threads)
+	{	return execute(design(), threads, null);	}
+
+	/**
+	 * Executes the given simulations on a work stealing pool of the given number of threads, and returns once all have
+	 * finished. `listener` may be null. Returns the number of failed runs.
+	 */
+	public static int execute(final List<Simulation.Arguments> runs, int threads, final RunListener listener)
+	{
+		final int total = runs.size();
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		System.out.println("Sweep of " + total + " simulations on " + threads + " threads.");
+
+		ForkJoinPool pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		for (int i = 0; i < total; i++)
+		{
+			final int index = i;
+			final Simulation.Arguments args = runs.get(i);
+			pool.execute(new Runnable() {
+				@Override
+				public void run()
+				{
+					try
+					{
+						Simulation sim = new SimulationTBM(args);
+						Simulation.execute(sim);
+						if (listener != null)
+							listener.finished(index, sim);
+					}
+					catch (RuntimeException e)
+					{
+						failed.incrementAndGet();
+						System.out.println("ERROR: simulation " + args.outputPath + " failed: " + e.toString());
+						e.printStackTrace();
+					}
+					System.out.println(completed.incrementAndGet() + " out of " + total);
+				}
+			});
+		}
+		pool.shutdown();
+		try
+		{
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		}
+		catch (InterruptedException e)
+		{
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		return failed.get();
+	}
+
+	static void setValue(Document doc, String path, String value)
+	{
+		XPath xPath = XPathFactory.newInstance().newXPath();
+		try
+		{
+			Node n = (Node) xPath.compile(path).evaluate(doc, XPathConstants.NODE);
+			if (n == null)
+				throw new RuntimeException("Sweep parameter " + path + " is not in the base parameters file.");
+			n.setTextContent(value);
+		}
+		catch (XPathExpressionException e)
+		{
+			throw new RuntimeException("Invalid sweep parameter path " + path + ": " + e.toString(), e);
+		}
+	}
+
+	static String optionalText(Element parent, String tag)
+	{
+		NodeList nl = parent.getElementsByTagName(tag);
+		if (nl.getLength() == 0)
+			return null;
+		return nl.item(0).getTextContent().trim();
+	}
+
+	static String requiredText(Element parent, String tag)
+	{
+		String s = optionalText(parent, tag);
+		if (s == null)
+			throw new RuntimeException("Invalid sweep: missing <" + tag + ">");
+		return s;
+	}
+
+	static String requiredAttribute(Element e, String name)
+	{
+		if (!e.hasAttribute(name))
+			throw new RuntimeException("Invalid sweep: <" + e.getTagName() + "> is missing attribute " + name);
+		return e.getAttribute(name);
+	}
+
+	public static void main(String[] args)
+	{
+		String specPath = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int i = 0;
+		while (i < args.length)
+		{
+			if (args[i].equals("-t"))
+			{
+				i++;
+				threads = Integer.parseInt(args[i]);
+			}
+			else
+				specPath = args[i];
+			i++;
+		}
+		if (specPath == null || !new File(specPath).exists())
+		{
+			System.out.println("Usage: java sweep.ParameterSweep sweep.xml [-t threads]");
+			return;
+		}
+		ParameterSweep sweep = new ParameterSweep(FileSystemIO.openXMLFile(specPath));
+		int failed = sweep.run(threads);
+		System.out.println("Sweep completed" + (failed > 0 ? ", " + failed + " simulations failed." : "."));
+		// batch scripts and cluster jobs detect failed runs by the exit status. 
+		System.exit(failed > 0 ? 1 : 0);
+	}
+}
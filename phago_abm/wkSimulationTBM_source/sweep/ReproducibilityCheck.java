@@ -0,0 +1,218 @@
+package sweep;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import core.Simulation;
+import core.SimulationTBM;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Regression check that a simulation is reproducible from its seed. The same simulation is run twice within one
+ * JVM, writing to [output]/a and [output]/b, and the SHA-256 hash of every CSV file either run wrote is compared.
+ * Takes the same options as SimulationTBM; a seed is required.
+ *
+ * With -x the hashes are also compared against those recorded in the given file, so that a change to the model's
+ * outputs is caught even when both runs agree. The file holds one "hash  path" line per CSV file, as sha256sum
+ * writes them, after a "# args:" line giving the run's arguments; the check refuses to compare a run made with other
+ * arguments. -record writes such a file from the first run. reproducibility-expected.sha256 holds the hashes for
+ * the calibration parameters, run from a directory holding them and the macrophage initial position directories:
+ *
+ * 		java sweep.ReproducibilityCheck -s 1 -e 120 -x reproducibility-expected.sha256
+ *
+ * Usage:	java sweep.ReproducibilityCheck -s seed [-p parameters.xml] [-o output] [-e endTime] [-t threads]
+ * 				[-x expected.sha256 | -record expected.sha256]
+ *
+ * Exits with status 1 if the outputs differ, or if no seed is given.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class ReproducibilityCheck
+{
+	/** Hashes of every CSV file beneath dir, keyed by path relative to dir. */
+	static Map<String, String> hashOutputs(File dir)
+	{
+		Map<String, String> hashes = new TreeMap<String, String>();
+		collect(dir, "", hashes);
+		return hashes;
+	}
+
+	private static void collect(File dir, String prefix, Map<String, String> hashes)
+	{
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		for (File f : files)
+		{
+			if (f.isDirectory())
+				collect(f, prefix + f.getName() + "/", hashes);
+			else if (f.getName().endsWith(".csv"))
+				hashes.put(prefix + f.getName(), sha256(f));
+		}
+	}
+
+	private static String sha256(File f)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(f.toPath()));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest)
+				sb.append(String.format("%02x", b));
+			return sb.toString();
+		}
+		catch (IOException | NoSuchAlgorithmException e)
+		{
+			throw new RuntimeException("Could not hash " + f + ": " + e.toString(), e);
+		}
+	}
+
+	/** 
+	 * Reads a file of expected hashes, as written by record. The "# args:" line is returned under the key "# args". 
+	 */
+	static Map<String, String> readExpected(String path)
+	{
+		Map<String, String> hashes = new TreeMap<String, String>();
+		try
+		{
+			for (String line : Files.readAllLines(new File(path).toPath(), StandardCharsets.UTF_8))
+			{
+				if (line.startsWith("# args:"))
+					hashes.put("# args", line.substring("# args:".length()).trim());
+				else if (!line.startsWith("#") && !line.trim().isEmpty())
+				{
+					int gap = line.indexOf("  ");
+					if (gap < 0)
+						throw new RuntimeException("Malformed line in " + path + ": " + line);
+					hashes.put(line.substring(gap + 2), line.substring(0, gap));
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Could not read expected hashes " + path + ": " + e.toString(), e);
+		}
+		return hashes;
+	}
+
+	static void record(String path, String runArgs, Map<String, String> hashes)
+	{
+		try (PrintWriter out = new PrintWriter(path, "UTF-8"))
+		{
+			out.println("# Expected outputs of sweep.ReproducibilityCheck; see its class doc.");
+			out.println("# args: " + runArgs);
+			for (Map.Entry<String, String> e : hashes.entrySet())
+				out.println(e.getValue() + "  " + e.getKey());
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Could not write expected hashes " + path + ": " + e.toString(), e);
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		String expectedPath = null;
+		String recordPath = null;
+		boolean seeded = false;
+		// options of this check are taken out, the rest are passed on to the simulation. 
+		List<String> simArgs = new ArrayList<String>();
+		List<String> runArgs = new ArrayList<String>();		// the arguments the outputs depend on, for the record.
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-x"))
+				expectedPath = args[++i];
+			else if (args[i].equals("-record"))
+				recordPath = args[++i];
+			else if (i + 1 < args.length)	// the simulation's options all take a value. 
+			{
+				seeded |= args[i].equals("-s");
+				simArgs.add(args[i]);
+				simArgs.add(args[i + 1]);
+				if (!args[i].equals("-o"))
+				{
+					runArgs.add(args[i]);
+					runArgs.add(args[i + 1]);
+				}
+				i++;
+			}
+		}
+		if (!seeded)
+		{
+			System.out.println("Usage: java sweep.ReproducibilityCheck -s seed [-p parameters.xml] [-o output] [-e endTime] "
+					+ "[-t threads] [-x expected.sha256 | -record expected.sha256]");
+			System.exit(1);
+		}
+		Map<String, String> expected = null;
+		if (expectedPath != null)
+		{
+			expected = readExpected(expectedPath);
+			String recorded = expected.remove("# args");
+			if (!String.join(" ", runArgs).equals(recorded))
+			{
+				System.out.println("FAIL: " + expectedPath + " was recorded with arguments \"" + recorded 
+						+ "\", not \"" + String.join(" ", runArgs) + "\".");
+				System.exit(1);
+			}
+		}
+		String[] sim = simArgs.toArray(new String[0]);
+		Simulation.Arguments first = Simulation.readArgs(sim);
+		Simulation.Arguments second = Simulation.readArgs(sim);
+		String output = first.outputPath;
+		first.outputPath = output + "/a";
+		second.outputPath = output + "/b";
+		Simulation.execute(new SimulationTBM(first));
+		Simulation.execute(new SimulationTBM(second));
+
+		Map<String, String> a = hashOutputs(new File(first.outputPath));
+		Map<String, String> b = hashOutputs(new File(second.outputPath));
+		boolean same = !a.isEmpty() && a.equals(b);
+		for (Map.Entry<String, String> e : a.entrySet())
+			System.out.println(e.getValue() + "  " + e.getKey()
+					+ (e.getValue().equals(b.get(e.getKey())) ? "" : "  DIFFERS")
+					+ (expected == null || e.getValue().equals(expected.get(e.getKey())) ? "" : "  NOT AS EXPECTED"));
+		for (String name : b.keySet())
+			if (!a.containsKey(name))
+				System.out.println("only in second run: " + name);
+		System.out.println(same ? "PASS: runs are identical." : "FAIL: runs with the same seed differ.");
+		boolean asExpected = true;
+		if (expected != null)
+		{
+			for (String name : expected.keySet())
+				if (!a.containsKey(name))
+					System.out.println("expected but not written: " + name);
+			asExpected = a.equals(expected);
+			System.out.println(asExpected ? "PASS: outputs match " + expectedPath + "."
+					: "FAIL: outputs differ from those recorded in " + expectedPath + ".");
+		}
+		if (same && recordPath != null)
+		{
+			record(recordPath, String.join(" ", runArgs), a);
+			System.out.println("Recorded the hashes in " + recordPath + ".");
+		}
+		if (!same || !asExpected)
+			System.exit(1);
+	}
+}
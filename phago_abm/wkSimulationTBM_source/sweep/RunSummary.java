@@ -0,0 +1,85 @@
+package sweep;
+
+import core.CellTypes;
+import core.Simulation;
+import loggers.CellLogger;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The headline responses of a single completed simulation, as used to compare samples of a sensitivity analysis:
+ *
+ * phagocytosisRate - fragments phagocytosed per time step, as a percentage of the fragment population. This is the
+ *                    clearance rate, RatePct, plotted by plotResultCrossover.R; see RunStatistics.getRatePct.
+ * meanSpeed        - mean over fragment tracks of path length / track duration, in microns per minute.
+ * meanderingIndex  - mean over fragment tracks of displacement / path length.
+ *
+ * The phagocytosis rate is taken from the run's RunStatistics where it keeps them (trackSummary in the parameters), so a
+ * sweep that needs only rates can turn off trackPositions, trackCounts and trackRemovedCounts and write no bulk files.
+ * The motility measures need cells to be tracked (trackPositions or trackMotility in the parameters); without them
+ * they are NaN.
+ * Tracks shorter than two samples, or that never moved, are excluded from the motility measures. Values that
+ * cannot be calculated are NaN.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class RunSummary
+{
+	public static final String[] names = {"phagocytosisRate", "meanSpeed", "meanderingIndex"};
+
+	public final double phagocytosisRate;
+	public final double meanSpeed;
+	public final double meanderingIndex;
+
+	private RunSummary(double phagocytosisRate, double meanSpeed, double meanderingIndex)
+	{
+		this.phagocytosisRate = phagocytosisRate;
+		this.meanSpeed = meanSpeed;
+		this.meanderingIndex = meanderingIndex;
+	}
+
+	/** Summary used for runs that failed. */
+	public static final RunSummary missing = new RunSummary(Double.NaN, Double.NaN, Double.NaN);
+
+	public static RunSummary of(Simulation sim)
+	{
+		double rate = Double.NaN;
+		if (sim.cellLogger != null && sim.cellLogger.statistics != null)
+			rate = sim.cellLogger.statistics.getRatePct();
+		else
+		{
+			// timeIter has moved on past the time step of the last sample.
+			long steps = sim.timeIter - 1;
+			if (steps > 0 && sim.numFrags > 0)
+				rate = 100.0 * sim.fragments.getRemovedCount() / steps / sim.numFrags;
+		}
+
+		if (sim.cellLogger == null || sim.fragments.live.isEmpty())
+			return new RunSummary(rate, Double.NaN, Double.NaN);
+		CellLogger.Motility m = sim.cellLogger.motility(CellTypes.FRAGMENT);
+		return new RunSummary(rate, m.meanSpeed(), m.meanMeanderingIndex());
+	}
+
+	public double get(int i)
+	{
+		switch (i)
+		{
+			case 0:		return phagocytosisRate;
+			case 1:		return meanSpeed;
+			case 2:		return meanderingIndex;
+			default:	throw new IndexOutOfBoundsException("No summary value " + i);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package sweep;
+
+import org.apache.commons.math3.random.SobolSequenceGenerator;
+
+import ec.util.MersenneTwisterFast;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Generators of sampling designs over the unit hypercube. Each returns one row per sample and one column per
+ * parameter, with values in [0, 1]; SensitivitySweep scales these onto each parameter's range.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class SamplingDesign
+{
+	/**
+	 * Latin hypercube of n samples in k dimensions. Each dimension is divided into n equal strata, and every stratum
+	 * of every dimension holds exactly one sample, placed uniformly at random within it.
+	 */
+	public static double[][] latinHypercube(int n, int k, MersenneTwisterFast rng)
+	{
+		double[][] design = new double[n][k];
+		int[] perm = new int[n];
+		for (int d = 0; d < k; d++)
+		{
+			for (int i = 0; i < n; i++)
+				perm[i] = i;
+			// Fisher-Yates shuffle assigns strata to samples.
+			for (int i = n - 1; i > 0; i--)
+			{
+				int j = rng.nextInt(i + 1);
+				int t = perm[i];
+				perm[i] = perm[j];
+				perm[j] = t;
+			}
+			for (int i = 0; i < n; i++)
+				design[i][d] = (perm[i] + rng.nextDouble()) / n;
+		}
+		return design;
+	}
+
+	/**
+	 * The first n points of the k dimensional Sobol sequence, omitting the origin. Deterministic, so repeated calls
+	 * give the same design.
+	 */
+	public static double[][] sobol(int n, int k)
+	{
+		SobolSequenceGenerator gen = new SobolSequenceGenerator(k);
+		gen.nextVector();		// the first point is the origin, which is on the boundary of every dimension.
+		double[][] design = new double[n][];
+		for (int i = 0; i < n; i++)
+			design[i] = gen.nextVector();
+		return design;
+	}
+
+	/**
+	 * Morris elementary effects design of r trajectories in k dimensions, on a grid of p levels. Each trajectory is
+	 * k + 1 consecutive rows; each row after the first differs from its predecessor in exactly one dimension, by
+	 * delta = p / (2 (p - 1)). Every dimension is changed once per trajectory, in a random order.
+	 */
+	public static double[][] morris(int r, int k, int p, MersenneTwisterFast rng)
+	{
+		if (p < 2)
+			throw new RuntimeException("Morris design requires at least 2 levels.");
+		double delta = morrisDelta(p);
+		double[][] design = new double[r * (k + 1)][];
+		int[] order = new int[k];
+		for (int t = 0; t < r; t++)
+		{
+			double[] x = new double[k];
+			for (int d = 0; d < k; d++)
+				x[d] = rng.nextInt(p) / (double) (p - 1);
+			for (int d = 0; d < k; d++)
+				order[d] = d;
+			for (int i = k - 1; i > 0; i--)
+			{
+				int j = rng.nextInt(i + 1);
+				int tmp = order[i];
+				order[i] = order[j];
+				order[j] = tmp;
+			}
+			int row = t * (k + 1);
+			design[row] = x.clone();
+			for (int s = 0; s < k; s++)
+			{
+				int d = order[s];
+				boolean up = x[d] + delta <= 1.0 + 1e-12;
+				boolean down = x[d] - delta >= -1e-12;
+				if (up && down)
+					up = rng.nextBoolean();
+				x[d] = up ? Math.min(1.0, x[d] + delta) : Math.max(0.0, x[d] - delta);
+				design[row + s + 1] = x.clone();
+			}
+		}
+		return design;
+	}
+
+	public static double morrisDelta(int p)
+	{	return p / (2.0 * (p - 1));	}
+}
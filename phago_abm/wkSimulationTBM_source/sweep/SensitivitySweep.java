@@ -0,0 +1,309 @@
+package sweep;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import core.Simulation;
+import ec.util.MersenneTwisterFast;
+import filesystem.FileSystemIO;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Sensitivity analysis and calibration designs, run in parallel inside one JVM. Parameters are sampled from their
+ * ranges by Latin hypercube, Sobol sequence or Morris elementary effects design, and every sample is simulated. The
+ * design is described by an XML file:
+ *
+ * <pre>
+ * &lt;sample method="lhs" samples="200"&gt;
+ *   &lt;base&gt;parameters/calibration-parameters.xml&lt;/base&gt;
+ *   &lt;output&gt;calibration_MI&lt;/output&gt;
+ *   &lt;seed&gt;1&lt;/seed&gt;
+ *   &lt;set path="/params/Simulation/endTime"&gt;75&lt;/set&gt;
+ *   &lt;parameter path="/params/Simulation/Fragment/meanderMean" min="-5" max="-1"/&gt;
+ *   &lt;parameter path="/params/Simulation/Fragment/numFrags" min="100" max="1000" integer="true"/&gt;
+ * &lt;/sample&gt;
+ * </pre>
+ *
+ * method is one of lhs, sobol or morris. For morris, samples is the number of trajectories, each of which costs
+ * (parameters + 1) simulations, and an optional levels attribute sets the grid resolution (default 4). Sample i is
+ * written to [output]/sample[i], and seeded with seed + i when a seed is given.
+ *
+ * Once all samples have run, [output]/summary.csv holds one row per sample: its parameter values followed by the
+ * RunSummary responses. Morris designs also write [output]/morris.csv, giving for every parameter and response the
+ * mean (mu), mean absolute (muStar) and standard deviation (sigma) of the elementary effects, in units of the
+ * response per full parameter range.
+ *
+ * Usage:	java sweep.SensitivitySweep design.xml [-t threads]
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class SensitivitySweep
+{
+	/** A parameter sampled uniformly from [min, max]. */
+	private static class Range
+	{
+		final String path;
+		final double min;
+		final double max;
+		final boolean integer;
+
+		Range(String path, double min, double max, boolean integer)
+		{
+			this.path = path;
+			this.min = min;
+			this.max = max;
+			this.integer = integer;
+		}
+
+		String value(double unit)
+		{
+			double v = min + unit * (max - min);
+			if (integer)
+				return Long.toString(Math.round(v));
+			return Double.toString(v);
+		}
+
+		String name()
+		{	return path.substring(path.lastIndexOf('/') + 1);	}
+	}
+
+	private final Document base;
+	private final String outputDir;
+	private final String method;
+	private final int samples;
+	private final int levels;
+	private final Long seed;
+	private final List<String[]> settings = new ArrayList<String[]>();
+	private final List<Range> ranges = new ArrayList<Range>();
+
+	private double[][] design;			// unit hypercube design, one row per simulation.
+	private RunSummary[] results;
+
+	public SensitivitySweep(Document spec)
+	{
+		if (spec == null)
+			throw new RuntimeException("No sampling design supplied.");
+		Element root = spec.getDocumentElement();
+		base = FileSystemIO.openXMLFile(ParameterSweep.requiredText(root, "base"));
+		if (base == null)
+			throw new RuntimeException("Could not read base parameters " + ParameterSweep.requiredText(root, "base"));
+		outputDir = ParameterSweep.requiredText(root, "output");
+		method = ParameterSweep.requiredAttribute(root, "method").toLowerCase();
+		samples = Integer.parseInt(ParameterSweep.requiredAttribute(root, "samples"));
+		levels = root.hasAttribute("levels") ? Integer.parseInt(root.getAttribute("levels")) : 4;
+		String s = ParameterSweep.optionalText(root, "seed");
+		seed = s == null ? null : Long.valueOf(s);
+		if (samples < 1)
+			throw new RuntimeException("Invalid design: samples must be at least 1");
+
+		NodeList children = root.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++)
+		{
+			if (!(children.item(i) instanceof Element))
+				continue;
+			Element e = (Element) children.item(i);
+			if (e.getTagName().equals("set"))
+				settings.add(new String[] {ParameterSweep.requiredAttribute(e, "path"), e.getTextContent().trim()});
+			else if (e.getTagName().equals("parameter"))
+			{
+				double min = Double.parseDouble(ParameterSweep.requiredAttribute(e, "min"));
+				double max = Double.parseDouble(ParameterSweep.requiredAttribute(e, "max"));
+				if (max < min)
+					throw new RuntimeException("Invalid design: max below min for " + e.getAttribute("path"));
+				ranges.add(new Range(ParameterSweep.requiredAttribute(e, "path"), min, max,
+						Boolean.parseBoolean(e.getAttribute("integer"))));
+			}
+		}
+		if (ranges.isEmpty())
+			throw new RuntimeException("Invalid design: no parameters to sample.");
+	}
+
+	/** Builds the unit hypercube design for the requested method. */
+	private double[][] buildDesign()
+	{
+		int k = ranges.size();
+		MersenneTwisterFast rng = seed == null ? new MersenneTwisterFast() : new MersenneTwisterFast(seed);
+		if (method.equals("lhs"))
+			return SamplingDesign.latinHypercube(samples, k, rng);
+		if (method.equals("sobol"))
+			return SamplingDesign.sobol(samples, k);
+		if (method.equals("morris"))
+			return SamplingDesign.morris(samples, k, levels, rng);
+		throw new RuntimeException("Unknown sampling method " + method + ", expected lhs, sobol or morris.");
+	}
+
+	/** Expands the design into the arguments of every simulation it contains. */
+	public List<Simulation.Arguments> runs()
+	{
+		if (design == null)
+			design = buildDesign();
+		List<Simulation.Arguments> runs = new ArrayList<Simulation.Arguments>(design.length);
+		for (int i = 0; i < design.length; i++)
+		{
+			Document doc = (Document) base.cloneNode(true);
+			for (String[] setting : settings)
+				ParameterSweep.setValue(doc, setting[0], setting[1]);
+			for (int d = 0; d < ranges.size(); d++)
+				ParameterSweep.setValue(doc, ranges.get(d).path, ranges.get(d).value(design[i][d]));
+			Simulation.Arguments args = new Simulation.Arguments();
+			args.parameters = doc;
+			args.outputPath = outputDir + "/sample" + i;
+			if (seed != null)
+				args.seed = seed + i;
+			runs.add(args);
+		}
+		return runs;
+	}
+
+	/** Runs every sample on the given number of threads, then writes the summary files. */
+	public int run(int threads)
+	{
+		List<Simulation.Arguments> runs = runs();
+		results = new RunSummary[runs.size()];
+		int failed = ParameterSweep.execute(runs, threads, new ParameterSweep.RunListener() {
+			@Override
+			public void finished(int run, Simulation sim)
+			{	results[run] = RunSummary.of(sim);	}
+		});
+		for (int i = 0; i < results.length; i++)
+			if (results[i] == null)
+				results[i] = RunSummary.missing;
+		writeSummary();
+		if (method.equals("morris"))
+			writeMorris();
+		return failed;
+	}
+
+	private void writeSummary()
+	{
+		try
+		{
+			new File(outputDir).mkdirs();
+			BufferedWriter out = new BufferedWriter(new FileWriter(outputDir + "/summary.csv"));
+			out.write("sample");
+			for (Range r : ranges)
+				out.write("," + r.name());
+			for (String name : RunSummary.names)
+				out.write("," + name);
+			out.write("\n");
+			for (int i = 0; i < results.length; i++)
+			{
+				out.write(Integer.toString(i));
+				for (int d = 0; d < ranges.size(); d++)
+					out.write("," + ranges.get(d).value(design[i][d]));
+				for (int m = 0; m < RunSummary.names.length; m++)
+					out.write("," + results[i].get(m));
+				out.write("\n");
+			}
+			out.close();
+		}
+		catch (IOException ex)
+		{
+			System.out.println("ERROR: exception when writing to filesystem, " + ex.toString());
+		}
+	}
+
+	/**
+	 * Elementary effects of each parameter on each response. Consecutive rows of a trajectory differ in a single
+	 * parameter; the effect is the change in response divided by the change in that parameter on the unit scale.
+	 */
+	private void writeMorris()
+	{
+		int k = ranges.size();
+		int m = RunSummary.names.length;
+		double[][] sum = new double[k][m], sumAbs = new double[k][m], sumSq = new double[k][m];
+		int[][] count = new int[k][m];
+		for (int t = 0; t < samples; t++)
+		{
+			int row = t * (k + 1);
+			for (int s = 1; s <= k; s++)
+			{
+				double[] a = design[row + s - 1], b = design[row + s];
+				int d = 0;
+				while (d < k && a[d] == b[d])
+					d++;
+				if (d == k)
+					continue;
+				for (int j = 0; j < m; j++)
+				{
+					double ee = (results[row + s].get(j) - results[row + s - 1].get(j)) / (b[d] - a[d]);
+					if (Double.isNaN(ee))
+						continue;
+					sum[d][j] += ee;
+					sumAbs[d][j] += Math.abs(ee);
+					sumSq[d][j] += ee * ee;
+					count[d][j]++;
+				}
+			}
+		}
+		try
+		{
+			BufferedWriter out = new BufferedWriter(new FileWriter(outputDir + "/morris.csv"));
+			out.write("parameter,response,mu,muStar,sigma,effects\n");
+			for (int d = 0; d < k; d++)
+				for (int j = 0; j < m; j++)
+				{
+					int n = count[d][j];
+					double mu = n > 0 ? sum[d][j] / n : Double.NaN;
+					double muStar = n > 0 ? sumAbs[d][j] / n : Double.NaN;
+					double sigma = n > 1 ? Math.sqrt((sumSq[d][j] - n * mu * mu) / (n - 1)) : Double.NaN;
+					out.write(ranges.get(d).name() + "," + RunSummary.names[j] + "," + mu + "," + muStar + ","
+							+ sigma + "," + n + "\n");
+				}
+			out.close();
+		}
+		catch (IOException ex)
+		{
+			System.out.println("ERROR: exception when writing to filesystem, " + ex.toString());
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		String specPath = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int i = 0;
+		while (i < args.length)
+		{
+			if (args[i].equals("-t"))
+			{
+				i++;
+				threads = Integer.parseInt(args[i]);
+			}
+			else
+				specPath = args[i];
+			i++;
+		}
+		if (specPath == null || !new File(specPath).exists())
+		{
+			System.out.println("Usage: java sweep.SensitivitySweep design.xml [-t threads]");
+			return;
+		}
+		SensitivitySweep sweep = new SensitivitySweep(FileSystemIO.openXMLFile(specPath));
+		int failed = sweep.run(threads);
+		System.out.println("Sampling completed" + (failed > 0 ? ", " + failed + " simulations failed." : "."));
+		// batch scripts and cluster jobs detect failed runs by the exit status. 
+		System.exit(failed > 0 ? 1 : 0);
+	}
+}
@@ -0,0 +1,148 @@
+package utils;
+
+import java.io.Serializable;
+
+import org.apache.commons.math3.distribution.BetaDistribution;
+import org.apache.commons.math3.stat.inference.KolmogorovSmirnovTest;
+
+import ec.util.MersenneTwisterFast;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+ *
+ * Samples a Beta(alpha, beta) distributed random variable, drawing all randomness from the supplied generator. Built
+ * once per shape and shared; sampling allocates nothing.
+ *
+ * A Beta variate is X / (X + Y), where X ~ Gamma(alpha, 1) and Y ~ Gamma(beta, 1). Gamma variates are drawn with
+ * the squeeze method of Marsaglia and Tsang, "A simple method for generating gamma variables", ACM Transactions on
+ * Mathematical Software 26(3), 2000. Shapes below one are boosted: Gamma(a) = Gamma(a + 1) * U^(1/a). The method is
+ * exact, so samples follow the same distribution as commons-math's BetaDistribution.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class BetaSampler implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	public final double alpha;
+	public final double beta;
+
+	// Marsaglia and Tsang constants for each of the two gamma variates.
+	private final double dA, cA, boostA;
+	private final double dB, cB, boostB;
+
+	public BetaSampler(double alpha, double beta)
+	{
+		if (!(alpha > 0.0) || !(beta > 0.0))
+			throw new RuntimeException("Beta distribution shape parameters must be positive: " + alpha + ", " + beta);
+		this.alpha = alpha;
+		this.beta = beta;
+		double a = alpha < 1.0 ? alpha + 1.0 : alpha;
+		dA = a - 1.0 / 3.0;
+		cA = 1.0 / Math.sqrt(9.0 * dA);
+		boostA = alpha < 1.0 ? 1.0 / alpha : 0.0;
+		double b = beta < 1.0 ? beta + 1.0 : beta;
+		dB = b - 1.0 / 3.0;
+		cB = 1.0 / Math.sqrt(9.0 * dB);
+		boostB = beta < 1.0 ? 1.0 / beta : 0.0;
+	}
+
+	public double sample(MersenneTwisterFast rng)
+	{
+		double x = gamma(rng, dA, cA, boostA);
+		double y = gamma(rng, dB, cB, boostB);
+		return x / (x + y);
+	}
+
+	private static double gamma(MersenneTwisterFast rng, double d, double c, double boost)
+	{
+		double v;
+		while (true)
+		{
+			double z, t;
+			do {
+				z = rng.nextGaussian();
+				t = 1.0 + c * z;
+			} while (t <= 0.0);
+			v = t * t * t;
+			double u = rng.nextDouble(false, false);
+			double z2 = z * z;
+			if (u < 1.0 - 0.0331 * z2 * z2)		// squeeze, accepts the vast majority of candidates cheaply.
+				break;
+			if (Math.log(u) < 0.5 * z2 + d * (1.0 - v + Math.log(v)))
+				break;
+		}
+		double g = d * v;
+		if (boost != 0.0)
+			g *= Math.pow(rng.nextDouble(false, false), boost);
+		return g;
+	}
+
+	/**
+	 * Statistical check against commons-math's BetaDistribution, for each of several shapes including those used by
+	 * the calibrated fragment parameters. 100,000 samples of each must pass a Kolmogorov-Smirnov test at the 0.001
+	 * level, and their mean and variance must lie within five standard errors of the reference's.
+	 *
+	 * Usage:	java utils.BetaSampler
+	 *
+	 * Exits with status 1 if any shape fails.
+	 */
+	public static void main(String[] args)
+	{
+		double[][] shapes = {{2.02, 1.707}, {0.5, 0.5}, {0.3, 4.0}, {1.0, 1.0}, {5.0, 0.8}};
+		MersenneTwisterFast rng = new MersenneTwisterFast(1);
+		int n = 100000;
+		int failures = 0;
+		for (double[] shape : shapes)
+		{
+			BetaSampler sampler = new BetaSampler(shape[0], shape[1]);
+			double[] samples = new double[n];
+			double mean = 0.0;
+			for (int i = 0; i < n; i++)
+			{
+				samples[i] = sampler.sample(rng);
+				mean += samples[i];
+			}
+			mean /= n;
+			double var = 0.0, m4 = 0.0;
+			for (int i = 0; i < n; i++)
+			{
+				double d2 = (samples[i] - mean) * (samples[i] - mean);
+				var += d2;
+				m4 += d2 * d2;
+			}
+			var /= n;
+			m4 /= n;
+			BetaDistribution reference = new BetaDistribution(shape[0], shape[1]);
+			double p = new KolmogorovSmirnovTest().kolmogorovSmirnovTest(reference, samples);
+			// standard errors of the sample mean and variance.
+			double meanError = Math.sqrt(var / n);
+			double varError = Math.sqrt((m4 - var * var) / n);
+			boolean pass = p >= 0.001
+					&& Math.abs(mean - reference.getNumericalMean()) <= 5.0 * meanError
+					&& Math.abs(var - reference.getNumericalVariance()) <= 5.0 * varError;
+			System.out.println("Beta(" + shape[0] + ", " + shape[1] + "): mean " + mean + " (expected "
+					+ reference.getNumericalMean() + "), variance " + var + " (expected "
+					+ reference.getNumericalVariance() + "), KS p-value " + p + (pass ? "" : "  FAILS"));
+			if (!pass)
+				failures++;
+		}
+		System.out.println(failures == 0 ? "PASS: samples follow the reference distribution."
+				: "FAIL: " + failures + " shapes differ from the reference distribution.");
+		if (failures > 0)
+			System.exit(1);
+	}
+}
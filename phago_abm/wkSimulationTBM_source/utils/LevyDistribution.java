@@ -1,6 +1,7 @@
 package utils;
 
-import core.Simulation;
+import java.io.Serializable;
+
 import ec.util.MersenneTwisterFast;
 
 /**
@@ -24,12 +25,13 @@ import ec.util.MersenneTwisterFast;
  * @author Mark N. Read
  *
  */
-public class LevyDistribution 
+public class LevyDistribution implements Serializable
 {
+	private static final long serialVersionUID = 1L;
+
 
-	private static double bounded_uniform(double low, double high)
+	private static double bounded_uniform(MersenneTwisterFast rng, double low, double high)
 	{
-		MersenneTwisterFast rng = Simulation.instance.random;
 		// returns a double in interval (0,1). IE, neither zero nor one will be returned. 		
 		double x = rng.nextDouble(false, false);
 		
@@ -48,15 +50,16 @@ public class LevyDistribution
 	 * 
 	 * Note that this sampling method can return negative values. Values are symmetrical around zero.
 	 * 
+	 * @param rng random number generator of the simulation run being sampled for.
 	 * @param mu must lie between 1 and 3. Corresponds to 1/x and 1/x^3
 	 * @return
 	 */
-	public static double sample(double mu)
+	public static double sample(MersenneTwisterFast rng, double mu)
 	{
-		double X = bounded_uniform(-Math.PI/2.0, Math.PI/2.0);
+		double X = bounded_uniform(rng, -Math.PI/2.0, Math.PI/2.0);
 		// uses Mersenne Twister random number generator to retrieve a value between (0,1) (does not include 0 or 1
 		// themselves)
-		double Y = -Math.log(Simulation.instance.random.nextDouble(false, false));
+		double Y = -Math.log(rng.nextDouble(false, false));
 		double alpha = mu - 1.0;
 		// there's a lot going on here, written over several lines to aid clarity.  		
 		double Z = 	(	Math.sin(alpha * X) 
@@ -77,15 +80,15 @@ public class LevyDistribution
 	 * @param mu
 	 * @return
 	 */
-	public static double sample_positive(double mu, double scale)
+	public static double sample_positive(MersenneTwisterFast rng, double mu, double scale)
 	{
-		double l = sample(mu) * scale;	
+		double l = sample(rng, mu) * scale;	
 		if (l < 0.0)	
 		{	return -1.0 * l;	}
 		return l;
 	}
 	
 	/** Default value case, scale=1 */
-	public static double sample_positive(double mu)
-	{	return sample_positive(mu, 1.0);		}
+	public static double sample_positive(MersenneTwisterFast rng, double mu)
+	{	return sample_positive(rng, mu, 1.0);		}
 }
@@ -1,7 +1,10 @@
 package utils;
 
-import core.Simulation;
+import java.io.Serializable;
+
+import ec.util.MersenneTwisterFast;
 import sim.util.Double3D;
+import sim.util.MutableDouble3D;
 
 
 /**
@@ -59,6 +62,14 @@ import sim.util.Double3D;
  * Hence, the order in which the muliplicants are multiplied depends on whether the rotation is expressed in relative
  * or absolute space. 
  * 
+ * Cells change orientation every time step, so the same rotations are also offered in place, without creating new
+ * objects: 
+ * 
+ *   orientation.rotate(angle, 1, 0, 0)                            // as orientation = orientation.multiply(change)
+ *   orientation.preRotate(angle, normal.x, normal.y, normal.z)     // as orientation = bounceRot.multiply(orientation)
+ * 
+ * These give exactly the same results as the equivalent multiplications. 
+ * 
  * TO MAKE A CELL FACE A PARTICULAR DIRECTION:
  * specify the rotation required in relation to the x-axis (along which cells face), and set that as the cell's 
  * orientation. Hence, you need to calcualte the angle between the desired heading and the x axis, and express that 
@@ -88,8 +99,10 @@ import sim.util.Double3D;
  * 
  * @author Mark Read
  */
-public class Quaternion 
+public class Quaternion implements Serializable
 {
+	private static final long serialVersionUID = 1L;
+
 	private double w;	// this is the rotation. 
 	private double x;	// these are the vector components around which rotation occurs. 
 	private double y;
@@ -220,20 +233,89 @@ public class Quaternion
 		return new Quaternion(new_w, new_x, new_y, new_z);
 	}
 	
+	/** Applies the rotation of `angle` around the axis (x, y, z), expressed relative to the cell, to this Quaternion. 
+	 *  Equivalent to this.multiply(Quaternion.representRotation(angle, x, y, z)), but modifies this Quaternion rather
+	 *  than creating new ones. 
+	 * 
+	 * @return This Quaternion, now rotated. 
+	 */
+	public Quaternion rotate(double angle, double x, double y, double z)
+	{
+		if (x*x + y*y + z*z != 1.0)
+		{
+			double len = Math.sqrt(x*x + y*y + z*z);
+			x /= len;
+			y /= len;
+			z /= len;
+		}
+		double a = angle / 2.;
+		double rw = Math.cos(a);
+		double rx = x * Math.sin(a);
+		double ry = y * Math.sin(a);
+		double rz = z * Math.sin(a);
+		return set(w*rw - this.x*rx - this.y*ry - this.z*rz,
+				   w*rx + this.x*rw + this.y*rz - this.z*ry,
+				   w*ry - this.x*rz + this.y*rw + this.z*rx,
+				   w*rz + this.x*ry - this.y*rx + this.z*rw);
+	}
+	
+	/** Applies the rotation of `angle` around the axis (x, y, z), expressed in absolute space, to this Quaternion.
+	 *  Equivalent to Quaternion.representRotation(angle, x, y, z).multiply(this), but modifies this Quaternion rather
+	 *  than creating new ones. 
+	 * 
+	 * @return This Quaternion, now rotated. 
+	 */
+	public Quaternion preRotate(double angle, double x, double y, double z)
+	{
+		if (x*x + y*y + z*z != 1.0)
+		{
+			double len = Math.sqrt(x*x + y*y + z*z);
+			x /= len;
+			y /= len;
+			z /= len;
+		}
+		double a = angle / 2.;
+		double rw = Math.cos(a);
+		double rx = x * Math.sin(a);
+		double ry = y * Math.sin(a);
+		double rz = z * Math.sin(a);
+		return set(rw*w - rx*this.x - ry*this.y - rz*this.z,
+				   rw*this.x + rx*w + ry*this.z - rz*this.y,
+				   rw*this.y - rx*this.z + ry*w + rz*this.x,
+				   rw*this.z + rx*this.y - ry*this.x + rz*w);
+	}
+	
+	private Quaternion set(double w, double x, double y, double z)
+	{
+		this.w = w;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+	
 	/** Returns a quaternion randomly selected from a uniform distribution in 4D (rotation) space. 
 	 *  This is based on http://planning.cs.uiuc.edu/node198.html, accessed on 14/07/2013.  
 	 */
-	public static Quaternion randomUniform()
+	public static Quaternion randomUniform(MersenneTwisterFast rng)
 	{
-		double u1 = Simulation.rng.nextDouble();
-		double u2 = Simulation.rng.nextDouble();
-		double u3 = Simulation.rng.nextDouble();
-		Quaternion q = new Quaternion(
+		return new Quaternion(1., 0., 0., 0.).setRandomUniform(rng);
+	}	
+	
+	/** As randomUniform, but sets this Quaternion to the selected one rather than creating a new one. 
+	 * 
+	 * @return This Quaternion. 
+	 */
+	public Quaternion setRandomUniform(MersenneTwisterFast rng)
+	{
+		double u1 = rng.nextDouble();
+		double u2 = rng.nextDouble();
+		double u3 = rng.nextDouble();
+		return set(
 			Math.sqrt(1.0-u1) * Math.sin(2.0 * Math.PI * u2), 	// w.
 			Math.sqrt(1.0-u1) * Math.cos(2.0 * Math.PI * u2), 	// x.
 			Math.sqrt(u1) * Math.sin(2.0 * Math.PI * u3),		// y.
 			Math.sqrt(u1) * Math.cos(2.0 * Math.PI * u3));		// z.
-		return q;
 	}	
 	
 	/** Returns a quaternion that if set as a cell's orientation will make the cell face the desired vector. 
@@ -282,6 +364,20 @@ public class Quaternion
 		return new Double3D(new_x, new_y, new_z);		
 	}
 	
+	/** As transform(vec), but the transformed vector is written into `result` rather than a new object. 
+	 * 
+	 * @return result. 
+	 */
+	public MutableDouble3D transform(Double3D vec, MutableDouble3D result)
+	{
+		double vecX = vec.x, vecY = vec.y, vecZ = vec.z;
+		double new_x =   w*w*vecX + 2*y*w*vecZ - 2*z*w*vecY +   x*x*vecX + 2*y*x*vecY + 2*z*x*vecZ -   z*z*vecX - y*y*vecX;
+		double new_y = 2*x*y*vecX +   y*y*vecY + 2*z*y*vecZ + 2*w*z*vecX -   z*z*vecY +   w*w*vecY - 2*x*w*vecZ - x*x*vecY;
+		double new_z = 2*x*z*vecX + 2*y*z*vecY +   z*z*vecZ - 2*w*y*vecX -   y*y*vecZ + 2*w*x*vecY -   x*x*vecZ + w*w*vecZ;
+		result.setTo(new_x, new_y, new_z);
+		return result;
+	}
+	
 	public Quaternion clone()
 	{
 		return new Quaternion(this.w, this.x, this.y, this.z);
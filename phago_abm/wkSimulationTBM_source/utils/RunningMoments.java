@@ -0,0 +1,75 @@
+package utils;
+
+import java.io.Serializable;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+ *
+ * Running count, mean and variance of a stream of values, in constant memory. Values are added with Welford's update,
+ * which avoids the cancellation of summing squares; two accumulators are combined with the pairwise update of Chan,
+ * Golub and LeVeque, "Algorithms for computing the sample variance", The American Statistician 37(3), 1983.
+ *
+ * @author Mark N. Read and Wunna Kyaw
+ *
+ */
+public class RunningMoments implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private long n = 0;
+	private double mean = 0.0;
+	private double m2 = 0.0;		// sum of squared differences from the mean.
+
+	public void add(double x)
+	{
+		n++;
+		double delta = x - mean;
+		mean += delta / n;
+		m2 += delta * (x - mean);
+	}
+
+	/** Adds the values accumulated by another. */
+	public void add(RunningMoments other)
+	{
+		if (other.n == 0)
+			return;
+		if (n == 0)
+		{
+			n = other.n;
+			mean = other.mean;
+			m2 = other.m2;
+			return;
+		}
+		long total = n + other.n;
+		double delta = other.mean - mean;
+		mean += delta * other.n / total;
+		m2 += other.m2 + delta * delta * ((double) n * other.n / total);
+		n = total;
+	}
+
+	public long count()
+	{	return n;	}
+
+	/** NaN if there are no values. */
+	public double mean()
+	{	return n == 0 ? Double.NaN : mean;	}
+
+	/** Sample variance. NaN if there are fewer than two values. */
+	public double variance()
+	{	return n < 2 ? Double.NaN : m2 / (n - 1);	}
+
+	public double standardDeviation()
+	{	return Math.sqrt(variance());	}
+}
@@ -66,8 +66,14 @@ public class Utils
 	 */
 	public static double angleBetweenVectors(Double3D a, Double3D b)
 	{
-		double dp = dotProduct(a, b);
-		double cosAng = dp / (length(a) * length(b));
+		return angleBetweenVectors(a.x, a.y, a.z, b.x, b.y, b.z);
+	}
+	
+	/** As above, for the vectors (ax, ay, az) and (bx, by, bz). */
+	public static double angleBetweenVectors(double ax, double ay, double az, double bx, double by, double bz)
+	{
+		double dp = ax*bx + ay*by + az*bz;
+		double cosAng = dp / (length(ax, ay, az) * length(bx, by, bz));
 		// this can happen because of precision errors. Math.acos can't take abs(value) > 1.0 
 		// usually occurs when the vectors are parallel but pointing in opposite directions.  
 		if (Math.abs(cosAng) > 1.0)	 